@@ -60,6 +60,7 @@ public class BlueMapConfigManager implements BlueMapConfiguration {
 
     public static final String FILE_STORAGE_CONFIG_NAME = STORAGES_CONFIG_FOLDER_NAME + "/file";
     public static final String SQL_STORAGE_CONFIG_NAME = STORAGES_CONFIG_FOLDER_NAME + "/sql";
+    public static final String PACKED_FILE_STORAGE_CONFIG_NAME = STORAGES_CONFIG_FOLDER_NAME + "/packed-file";
 
     private final ConfigManager configManager;
 
@@ -342,6 +343,13 @@ private Map<String, StorageConfig> loadStorageConfigs(Path defaultWebroot) throw
                         configManager.loadConfigTemplate(SQL_STORAGE_CONFIG_NAME).build(),
                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING
                 );
+                Files.writeString(
+                        configManager.resolveConfigFile(PACKED_FILE_STORAGE_CONFIG_NAME),
+                        configManager.loadConfigTemplate(PACKED_FILE_STORAGE_CONFIG_NAME)
+                                .setVariable("root", formatPath(defaultWebroot.resolve("maps-packed")))
+                                .build(),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING
+                );
             } catch (IOException | NullPointerException ex) {
                 throw new ConfigurationException("BlueMap failed to create default storage-configuration-files in\n" +
                                 storageConfigFolder.toAbsolutePath().normalize() + "\n" +
@@ -84,6 +84,10 @@ public class MapConfig implements MapSettings {
 
     private boolean ignoreMissingLightData = false;
 
+    private boolean contentChangeDetection = false;
+
+    private int renderStateCacheSize = 32;
+
     @Nullable private ConfigurationNode markerSets = null;
 
     // hidden config fields
@@ -41,6 +41,12 @@ public class WebserverConfig {
     private String ip = "0.0.0.0";
     private int port = 8100;
 
+    private int workerThreads = 0;
+    private int ioThreads = 1;
+
+    private int tileCacheSize = 64;
+    private boolean tileExistenceIndex = true;
+
     private LogConfig log = new LogConfig();
 
     public boolean isEnabled() {
@@ -69,6 +75,28 @@ public int getPort() {
         return port;
     }
 
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * The size of the in-memory tile-cache in MiB
+     */
+    public int getTileCacheSize() {
+        return tileCacheSize;
+    }
+
+    /**
+     * Whether the webserver keeps an in-memory index of the existing tiles of the maps rendered by this process
+     */
+    public boolean isTileExistenceIndex() {
+        return tileExistenceIndex;
+    }
+
     public LogConfig getLog() {
         return log;
     }
@@ -39,15 +39,17 @@ public class FileConfig extends StorageConfig {
 
     private Path root = Path.of("bluemap", "web", "maps");
     private String compression = Compression.GZIP.getKey().getFormatted();
+    private int compressionLevel = -1;
     private boolean atomic = true;
+    private boolean deduplicate = false;
 
     public Compression getCompression() throws ConfigurationException {
-        return parseKey(Compression.REGISTRY, compression, "compression");
+        return parseCompression(compression, compressionLevel);
     }
 
     @Override
     public FileStorage createStorage() throws ConfigurationException {
-        return new FileStorage(root, getCompression(), atomic);
+        return new FileStorage(root, getCompression(), atomic, false, deduplicate);
     }
 
 }
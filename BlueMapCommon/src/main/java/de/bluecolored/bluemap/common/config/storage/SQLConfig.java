@@ -26,6 +26,7 @@
 
 import de.bluecolored.bluemap.common.config.ConfigurationException;
 import de.bluecolored.bluemap.common.debug.DebugDump;
+import de.bluecolored.bluemap.core.storage.GridStorageCache;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.storage.sql.Database;
 import de.bluecolored.bluemap.core.storage.sql.SQLStorage;
@@ -64,6 +65,9 @@ public class SQLConfig extends StorageConfig {
     private int maxConnections = -1;
 
     private String compression = Compression.GZIP.getKey().getFormatted();
+    private int compressionLevel = -1;
+
+    private int readCacheSize = 0;
 
     @Getter(AccessLevel.NONE)
     private transient URL driverJarURL = null;
@@ -91,7 +95,7 @@ public Optional<String> getDriverClass() {
     }
 
     public Compression getCompression() throws ConfigurationException {
-        return parseKey(Compression.REGISTRY, compression, "compression");
+        return parseCompression(compression, compressionLevel);
     }
 
     public Dialect getDialect() throws ConfigurationException {
@@ -125,7 +129,8 @@ public SQLStorage createStorage() throws ConfigurationException {
             database = new Database(getConnectionUrl(), getConnectionProperties(), getMaxConnections());
         }
         CommandSet commandSet = getDialect().createCommandSet(database);
-        return new SQLStorage(commandSet, getCompression());
+        GridStorageCache readCache = readCacheSize > 0 ? new GridStorageCache(readCacheSize * 1024L * 1024L) : null;
+        return new SQLStorage(commandSet, getCompression(), readCache);
     }
 
     private @Nullable Driver createDriver() throws ConfigurationException {
@@ -26,6 +26,7 @@
 
 import de.bluecolored.bluemap.common.config.ConfigurationException;
 import de.bluecolored.bluemap.core.storage.Storage;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.util.Keyed;
 import de.bluecolored.bluemap.core.util.Registry;
@@ -60,6 +61,17 @@ static <T extends Keyed> T parseKey(Registry<T> registry, String key, String typ
         return type;
     }
 
+    static Compression parseCompression(String key, int level) throws ConfigurationException {
+        Compression compression = parseKey(Compression.REGISTRY, key, "compression");
+        if (level < 0) return compression;
+
+        try {
+            return compression.withLevel(level);
+        } catch (IllegalArgumentException ex) {
+            throw new ConfigurationException("Invalid compression-level " + level + " for compression '" + key + "'!", ex);
+        }
+    }
+
     @ConfigSerializable
     public static class Base extends StorageConfig {
 
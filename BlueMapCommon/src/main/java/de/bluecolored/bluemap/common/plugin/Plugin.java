@@ -42,11 +42,13 @@
 import de.bluecolored.bluemap.common.web.*;
 import de.bluecolored.bluemap.common.web.http.HttpServer;
 import de.bluecolored.bluemap.common.metrics.Metrics;
+import de.bluecolored.bluemap.core.logger.AsyncLogger;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
 import de.bluecolored.bluemap.core.resources.MinecraftVersion;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.storage.Storage;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.util.FileHelper;
 import de.bluecolored.bluemap.core.util.Tristate;
 import de.bluecolored.bluemap.core.world.World;
@@ -58,8 +60,6 @@
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.net.BindException;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -69,9 +69,9 @@
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 
 @Getter
 public class Plugin implements ServerEventListener {
@@ -94,6 +94,10 @@ public class Plugin implements ServerEventListener {
 
     private HttpServer webServer;
     private RoutingRequestHandler webRequestHandler;
+    private TileResponseCache tileResponseCache;
+    private TileExistenceIndex tileExistenceIndex;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, CachedRateLimitDataSupplier> livePlayersData = new ConcurrentHashMap<>();
     private Logger webLogger;
 
     private Timer daemonTimer;
@@ -194,7 +198,15 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
                     this.webRequestHandler = new RoutingRequestHandler();
 
                     // default route
-                    webRequestHandler.register(".*", new FileRequestHandler(webroot));
+                    webRequestHandler.registerPrefix("", new FileRequestHandler(webroot));
+
+                    // tile-cache
+                    this.tileResponseCache = webserverConfig.getTileCacheSize() > 0 ?
+                            new TileResponseCache(webserverConfig.getTileCacheSize() * 1024L * 1024L) : null;
+
+                    // tile-index
+                    this.tileExistenceIndex = webserverConfig.isTileExistenceIndex() ?
+                            new TileExistenceIndex() : null;
 
                     // map route
                     for (var mapConfigEntry : configManager.getMapConfigs().entrySet()) {
@@ -204,15 +216,15 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
                         MapRequestHandler mapRequestHandler;
                         BmMap map = maps.get(id);
                         if (map != null) {
-                            mapRequestHandler = new MapRequestHandler(map, serverInterface, pluginConfig, Predicate.not(pluginState::isPlayerHidden));
+                            mapRequestHandler = new MapRequestHandler(map, getLivePlayersData(map), tileResponseCache, tileExistenceIndex);
                         } else {
                             Storage storage = blueMap.getOrLoadStorage(mapConfig.getStorage());
-                            mapRequestHandler = new MapRequestHandler(storage.map(id));
+                            // the map is not rendered by this server, so the tile-index can not be used
+                            mapRequestHandler = new MapRequestHandler(storage.map(id), tileResponseCache, null);
                         }
 
-                        webRequestHandler.register(
-                                "maps/" + Pattern.quote(id) + "/(.*)",
-                                "$1",
+                        webRequestHandler.registerPrefix(
+                                "maps/" + id + "/",
                                 new BlueMapResponseModifier(mapRequestHandler)
                         );
                     }
@@ -226,14 +238,14 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
                                 webserverConfig.getLog().isAppend()
                         ));
                     }
-                    webLogger = Logger.combine(webLoggerList);
+                    webLogger = new AsyncLogger(Logger.combine(webLoggerList));
 
                     try {
                         webServer = new HttpServer(new LoggingRequestHandler(
                                 webRequestHandler,
                                 webserverConfig.getLog().getFormat(),
                                 webLogger
-                        ));
+                        ), webserverConfig.getWorkerThreads(), webserverConfig.getIoThreads());
                         webServer.bind(new InetSocketAddress(
                                 webserverConfig.resolveIp(),
                                 webserverConfig.getPort()
@@ -474,6 +486,7 @@ public void unload(boolean keepWebserver) {
 
                 //clear resources
                 pluginState = null;
+                livePlayersData.clear();
 
                 //done
                 loaded = false;
@@ -547,25 +560,48 @@ public void savePlayerStates() {
 
         var maps = blueMap.getMaps();
         for (BmMap map : maps.values()) {
-            var serverWorld = serverInterface.getServerWorld(map.getWorld()).orElse(null);
-            if (serverWorld == null) continue;
-            var dataSupplier = new LivePlayersDataSupplier(
-                    serverInterface,
-                    getBlueMap().getConfig().getPluginConfig(),
-                    serverWorld,
-                    Predicate.not(pluginState::isPlayerHidden)
-            );
-            try (
-                    OutputStream out = map.getStorage().players().write();
-                    Writer writer = new OutputStreamWriter(out)
-            ) {
-                writer.write(dataSupplier.get());
+            var dataSupplier = getLivePlayersData(map);
+            if (dataSupplier == null) continue;
+            DataSnapshot data = dataSupplier.get();
+            if (data == null) continue;
+            try {
+                // write the already compressed data if the storage supports it
+                OutputStream out = map.getStorage().players().writeCompressed(Compression.GZIP);
+                if (out != null) {
+                    try (out) {
+                        out.write(data.gzipBytes());
+                    }
+                } else {
+                    try (OutputStream uncompressedOut = map.getStorage().players().write()) {
+                        uncompressedOut.write(data.bytes());
+                    }
+                }
             } catch (Exception ex) {
                 Logger.global.logError("Failed to save players for map '" + map.getId() + "'!", ex);
             }
         }
     }
 
+    /**
+     * Returns the live-players data for the world of the map, which is shared by all maps of the same world
+     * so it only needs to be created once for all of them.
+     */
+    private @Nullable CachedRateLimitDataSupplier getLivePlayersData(BmMap map) {
+        var serverWorld = serverInterface.getServerWorld(map.getWorld()).orElse(null);
+        if (serverWorld == null) return null;
+
+        PluginState pluginState = this.pluginState;
+        return livePlayersData.computeIfAbsent(map.getWorld().getId(), worldId -> new CachedRateLimitDataSupplier(
+                new LivePlayersDataSupplier(
+                        serverInterface,
+                        getBlueMap().getConfig().getPluginConfig(),
+                        serverWorld,
+                        Predicate.not(pluginState::isPlayerHidden)
+                ),
+                1000
+        ));
+    }
+
     public synchronized void startWatchingMap(BmMap map) {
         stopWatchingMap(map);
 
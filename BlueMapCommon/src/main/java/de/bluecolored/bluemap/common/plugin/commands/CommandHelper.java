@@ -30,6 +30,7 @@
 import de.bluecolored.bluemap.common.plugin.text.TextFormat;
 import de.bluecolored.bluemap.common.rendermanager.RenderManager;
 import de.bluecolored.bluemap.common.rendermanager.RenderTask;
+import de.bluecolored.bluemap.common.web.TileResponseCache;
 
 import java.lang.ref.WeakReference;
 import java.time.Duration;
@@ -135,6 +136,14 @@ public List<Text> createStatusMessage(){
             }
         }
 
+        TileResponseCache tileCache = plugin.getTileResponseCache();
+        if (tileCache != null) {
+            lines.add(Text.of(TextColor.WHITE, " Web Tile-Cache: ",
+                    TextColor.GRAY, tileCache.getSize() + " tiles (" + (tileCache.getByteSize() / 1024 / 1024) + " MiB), ",
+                    TextColor.WHITE, String.format("%.1f%%", tileCache.getHitRate() * 100),
+                    TextColor.GRAY, " hit-rate"));
+        }
+
         return lines;
     }
 
@@ -52,8 +52,10 @@
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
 import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
+import de.bluecolored.bluemap.core.storage.GridStorageCache;
 import de.bluecolored.bluemap.core.storage.MapStorage;
 import de.bluecolored.bluemap.core.storage.Storage;
+import de.bluecolored.bluemap.core.storage.sql.SQLStorage;
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
@@ -857,8 +859,7 @@ public int updateCommand(CommandContext<S> context, TileUpdateStrategy force) {
                     MapUpdateTask updateTask = new MapUpdateTask(map, center, radius, force);
                     plugin.getRenderManager().scheduleRenderTask(updateTask);
 
-                    source.sendMessage(Text.of(TextColor.GREEN, "Created new Update-Task for map '" + map.getId() + "' ",
-                            TextColor.GRAY, "(" + updateTask.getRegions().size() + " regions, ~" + updateTask.getRegions().size() * 1024L + " chunks)"));
+                    source.sendMessage(Text.of(TextColor.GREEN, "Created new Update-Task for map '" + map.getId() + "'"));
                 }
                 source.sendMessage(Text.of(TextColor.GREEN, "Use ", TextColor.GRAY, "/bluemap", TextColor.GREEN, " to see the progress."));
 
@@ -1042,6 +1043,16 @@ public int storagesInfoCommand(CommandContext<S> context) {
             }
         }
 
+        if (storage instanceof SQLStorage sqlStorage && sqlStorage.getReadCache() != null) {
+            GridStorageCache readCache = sqlStorage.getReadCache();
+            source.sendMessage(Text.of(TextColor.BLUE, "Read-Cache:"));
+            source.sendMessage(Text.of(TextColor.GRAY, " - size: ", TextColor.WHITE,
+                    readCache.getSize() + " tiles (" + (readCache.getByteSize() / 1024 / 1024) + " MiB)"));
+            source.sendMessage(Text.of(TextColor.GRAY, " - hit-rate: ", TextColor.WHITE,
+                    String.format("%.1f%%", readCache.getHitRate() * 100),
+                    TextColor.GRAY, " (" + readCache.getHitCount() + " hits, " + readCache.getMissCount() + " misses)"));
+        }
+
         return 1;
     }
 
@@ -64,6 +64,7 @@ public void doWork() throws Exception {
         map.resetTextureGallery();
         map.getMapTileState().reset();
         map.getMapChunkState().reset();
+        map.getMapRegionState().reset();
     }
 
     @Override
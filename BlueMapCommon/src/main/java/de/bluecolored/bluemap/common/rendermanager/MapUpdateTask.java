@@ -25,40 +25,33 @@
 package de.bluecolored.bluemap.common.rendermanager;
 
 import com.flowpowered.math.vector.Vector2i;
-import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
-import de.bluecolored.bluemap.core.map.renderstate.MapTileState;
-import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
-import de.bluecolored.bluemap.core.map.renderstate.TileState;
-import de.bluecolored.bluemap.core.storage.GridStorage;
-import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.util.Grid;
-import de.bluecolored.bluemap.core.world.World;
 
-import java.io.IOException;
-import java.util.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 
 public class MapUpdateTask extends CombinedRenderTask<RenderTask> {
 
     private final BmMap map;
-    private final Collection<Vector2i> regions;
+    private final StreamingRegionRenderTask regionTask;
 
     public MapUpdateTask(BmMap map) {
-        this(map, getRegions(map));
+        this(map, TileUpdateStrategy.FORCE_NONE);
     }
 
     public MapUpdateTask(BmMap map, TileUpdateStrategy force) {
-        this(map, getRegions(map), force);
+        this(map, new StreamingRegionRenderTask(map, r -> true, true, force));
     }
 
     public MapUpdateTask(BmMap map, Vector2i center, int radius) {
-        this(map, getRegions(map, center, radius));
+        this(map, center, radius, TileUpdateStrategy.FORCE_NONE);
     }
 
     public MapUpdateTask(BmMap map, Vector2i center, int radius, TileUpdateStrategy force) {
-        this(map, getRegions(map, center, radius), force);
+        this(map, new StreamingRegionRenderTask(map, createRadiusFilter(map, center, radius), false, force));
     }
 
     public MapUpdateTask(BmMap map, Collection<Vector2i> regions) {
@@ -66,103 +59,50 @@ public MapUpdateTask(BmMap map, Collection<Vector2i> regions) {
     }
 
     public MapUpdateTask(BmMap map, Collection<Vector2i> regions, TileUpdateStrategy force) {
-        super("Update map '" + map.getId() + "'", createTasks(map, regions, force));
+        this(map, new StreamingRegionRenderTask(map, regions, force));
+    }
+
+    private MapUpdateTask(BmMap map, StreamingRegionRenderTask regionTask) {
+        // save map before and after the whole update
+        super("Update map '" + map.getId() + "'", List.of(
+                new MapSaveTask(map),
+                regionTask,
+                new MapSaveTask(map)
+        ));
         this.map = map;
-        this.regions = Collections.unmodifiableCollection(new ArrayList<>(regions));
+        this.regionTask = regionTask;
     }
 
     public BmMap getMap() {
         return map;
     }
 
+    /**
+     * Returns all regions that this task has discovered so far.
+     * (Regions are discovered lazily once the task starts, so this might be empty for a task that has not started yet)
+     */
     public Collection<Vector2i> getRegions() {
-        return regions;
-    }
-
-    private static Collection<RenderTask> createTasks(BmMap map, Collection<Vector2i> regions, TileUpdateStrategy force) {
-        ArrayList<WorldRegionRenderTask> regionTasks = new ArrayList<>(regions.size());
-        regions.forEach(region -> regionTasks.add(new WorldRegionRenderTask(map, region, force)));
-
-        // get spawn region
-        World world = map.getWorld();
-        Vector2i spawnPoint = world.getSpawnPoint().toVector2(true);
-        Grid regionGrid = world.getRegionGrid();
-        Vector2i spawnRegion = regionGrid.getCell(spawnPoint);
-
-        // sort tasks by distance to the spawn region
-        regionTasks.sort(WorldRegionRenderTask.defaultComparator(spawnRegion));
-
-        // save map before and after the whole update
-        ArrayList<RenderTask> tasks = new ArrayList<>(regionTasks.size() + 2);
-        tasks.add(new MapSaveTask(map));
-        tasks.addAll(regionTasks);
-        tasks.add(new MapSaveTask(map));
-
-        return tasks;
+        return regionTask.getRegions();
     }
 
-    private static Collection<Vector2i> getRegions(BmMap map) {
-        return getRegions(map, null, -1);
+    @Override
+    public Optional<String> getDetail() {
+        Optional<String> detail = regionTask.getDetail();
+        if (detail.isPresent()) return detail;
+        return super.getDetail();
     }
 
-    private static Collection<Vector2i> getRegions(BmMap map, Vector2i center, int radius) {
-        World world = map.getWorld();
-        Grid regionGrid = world.getRegionGrid();
-
-        Predicate<Vector2i> regionBoundsFilter = map.getMapSettings().getCellRenderBoundariesFilter(regionGrid, true);
-        Predicate<Vector2i> regionRadiusFilter;
-        if (center == null || radius < 0) {
-            regionRadiusFilter = r -> true;
-        } else {
-            Vector2i halfCell = regionGrid.getGridSize().div(2);
-            long increasedRadiusSquared = (long) Math.pow(radius + Math.ceil(halfCell.length()), 2);
-            regionRadiusFilter = r -> {
-                Vector2i min = regionGrid.getCellMin(r);
-                Vector2i regionCenter = min.add(halfCell);
-                return regionCenter.toLong().distanceSquared(center.toLong()) <= increasedRadiusSquared;
-            };
-        }
-
-        Set<Vector2i> regions = new HashSet<>();
-
-        // update all regions in the world-files
-        world.listRegions().stream()
-                .filter(regionBoundsFilter)
-                .filter(regionRadiusFilter)
-                .forEach(regions::add);
-
-        // also update regions that are present as map-tile-state files (they might have been rendered before but deleted now)
-        // (a little hacky as we are operating on raw tile-state files -> maybe find a better way?)
-        Grid tileGrid = map.getHiresModelManager().getTileGrid();
-        Grid cellGrid = MapTileState.GRID.multiply(tileGrid);
-        try (Stream<GridStorage.Cell> stream = map.getStorage().tileState().stream()) {
-            stream
-                    .filter(c -> {
-                        // filter out files that are fully UNKNOWN/NOT_GENERATED
-                        // this avoids unnecessarily converting UNKNOWN tiles into NOT_GENERATED tiles on force-updates
-                        try (CompressedInputStream in = c.read()) {
-                            if (in == null) return false;
-                            TileState[] states = TileInfoRegion.loadPalette(in.decompress());
-                            for (TileState state : states) {
-                                if (
-                                        state != TileState.UNKNOWN &&
-                                        state != TileState.NOT_GENERATED
-                                ) return true;
-                            }
-                            return false;
-                        } catch (IOException ignore) {
-                            return true;
-                        }
-                    })
-                    .map(c -> new Vector2i(c.getX(), c.getZ()))
-                    .flatMap(v -> cellGrid.getIntersecting(v, regionGrid).stream())
-                    .filter(regionRadiusFilter)
-                    .forEach(regions::add);
-        } catch (IOException ex) {
-            Logger.global.logError("Failed to load map tile state!", ex);
-        }
-
-        return regions;
+    private static Predicate<Vector2i> createRadiusFilter(BmMap map, Vector2i center, int radius) {
+        if (center == null || radius < 0) return r -> true;
+
+        Grid regionGrid = map.getWorld().getRegionGrid();
+        Vector2i halfCell = regionGrid.getGridSize().div(2);
+        long increasedRadiusSquared = (long) Math.pow(radius + Math.ceil(halfCell.length()), 2);
+        return r -> {
+            Vector2i min = regionGrid.getCellMin(r);
+            Vector2i regionCenter = min.add(halfCell);
+            return regionCenter.toLong().distanceSquared(center.toLong()) <= increasedRadiusSquared;
+        };
     }
 
 }
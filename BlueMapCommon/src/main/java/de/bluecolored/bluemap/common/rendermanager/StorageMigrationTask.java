@@ -0,0 +1,382 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.rendermanager;
+
+import de.bluecolored.bluemap.common.debug.DebugDump;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.MapStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.util.FileHelper;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Copies all data of a map from one {@link MapStorage} to another.<br>
+ * The single items and assets are copied first, then the grid-storages are copied one after another, the items of
+ * each grid-storage are copied in batches by all threads working on this task. Items are copied as they are
+ * (without recompressing them) if the target-storage supports the compression of the source-storage.<br>
+ * If a checkpoint-file is provided, the task records each completed grid-storage in it and continues
+ * from there if it is restarted.
+ */
+public class StorageMigrationTask implements RenderTask {
+
+    private static final int BATCH_SIZE = 64;
+    private static final String CHECKPOINT_MAP_KEY = "map";
+    private static final String CHECKPOINT_STAGE_KEY = "completed-stages";
+
+    private final MapStorage source;
+    private final MapStorage target;
+    private final String mapId;
+    private final @Nullable Path checkpointFile;
+
+    private final LongAdder copiedItems = new LongAdder();
+    private final LongAdder copiedBytes = new LongAdder();
+    private final LongAdder failedItems = new LongAdder();
+
+    // guarded by this
+    private @Nullable List<Stage> stages;
+    private boolean skipExisting;
+    private @Nullable Stream<GridStorage.Cell> cellStream;
+    private @Nullable Iterator<GridStorage.Cell> cells;
+    private int runningBatches;
+
+    private volatile int stageIndex, stageCount;
+    private volatile long stageSize, stageProgress;
+    private volatile long startTime, endTime;
+    private volatile boolean hasMoreWork;
+    private volatile boolean cancelled;
+
+    public StorageMigrationTask(MapStorage source, MapStorage target, String mapId, @Nullable Path checkpointFile) {
+        this.source = Objects.requireNonNull(source);
+        this.target = Objects.requireNonNull(target);
+        this.mapId = Objects.requireNonNull(mapId);
+        this.checkpointFile = checkpointFile;
+        this.hasMoreWork = true;
+        this.cancelled = false;
+    }
+
+    @Override
+    public void doWork() throws Exception {
+        if (this.cancelled) return;
+
+        Stage stage;
+        List<GridStorage.Cell> batch;
+        boolean skipExisting;
+
+        synchronized (this) {
+            if (!this.hasMoreWork) return;
+
+            try {
+                if (stages == null) init();
+                batch = nextBatch();
+            } catch (IOException | RuntimeException ex) {
+                this.hasMoreWork = false;
+                closeStage();
+                throw ex;
+            }
+
+            if (batch == null) return;
+            stage = stages.get(stageIndex);
+            skipExisting = this.skipExisting;
+            runningBatches++;
+        }
+
+        try {
+            for (GridStorage.Cell cell : batch) {
+                if (this.cancelled) break;
+
+                ItemStorage targetCell = stage.target().cell(cell.getX(), cell.getZ());
+                if (skipExisting && targetCell.exists()) continue;
+
+                try {
+                    copy(cell, targetCell);
+                } catch (IOException ex) {
+                    failedItems.increment();
+                    Logger.global.logError("Failed to migrate " + stage.name() + " item " + cell.getX() + "," +
+                            cell.getZ() + " of map '" + mapId + "'", ex);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                stageProgress += batch.size();
+                runningBatches--;
+                if (this.cancelled && runningBatches <= 0) closeStage();
+                this.notifyAll();
+            }
+        }
+    }
+
+    private void init() throws IOException {
+        startTime = System.currentTimeMillis();
+
+        // single items
+        copy(source.settings(), target.settings());
+        copy(source.textures(), target.textures());
+        copy(source.markers(), target.markers());
+        copy(source.players(), target.players());
+
+        // assets (this includes the compression-dictionaries that copied items might have been compressed with)
+        List<String> assets;
+        try (Stream<String> assetNames = source.listAssets()) {
+            assets = assetNames.toList();
+        }
+        for (String asset : assets) {
+            try {
+                copy(source.asset(asset), target.asset(asset));
+            } catch (IOException ex) {
+                failedItems.increment();
+                Logger.global.logError("Failed to migrate asset '" + asset + "' of map '" + mapId + "'", ex);
+            }
+        }
+
+        // grid-storages
+        List<Stage> stages = new ArrayList<>();
+        stages.add(new Stage("hires", source.hiresTiles(), target.hiresTiles()));
+        for (int lod = 1;; lod++) {
+            GridStorage lowres = source.lowresTiles(lod);
+            try (Stream<GridStorage.Cell> lowresCells = lowres.stream()) {
+                if (lowresCells.findAny().isEmpty()) break;
+            }
+            stages.add(new Stage("lowres/" + lod, lowres, target.lowresTiles(lod)));
+        }
+        stages.add(new Stage("tile-state", source.tileState(), target.tileState()));
+        stages.add(new Stage("chunk-state", source.chunkState(), target.chunkState()));
+        stages.add(new Stage("region-state", source.regionState(), target.regionState()));
+
+        // continue from the last checkpoint
+        stageIndex = 0;
+        skipExisting = false;
+        if (checkpointFile != null && Files.exists(checkpointFile)) {
+            Properties checkpoint = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+                checkpoint.load(reader);
+            }
+
+            if (mapId.equals(checkpoint.getProperty(CHECKPOINT_MAP_KEY))) {
+                try {
+                    stageIndex = Math.min(Integer.parseInt(checkpoint.getProperty(CHECKPOINT_STAGE_KEY, "0")), stages.size());
+                } catch (NumberFormatException ex) {
+                    Logger.global.logWarning("Invalid migration checkpoint '" + checkpointFile + "', starting from the beginning.");
+                }
+
+                // items of an interrupted stage might already have been copied
+                skipExisting = true;
+                Logger.global.logInfo("Continuing migration of map '" + mapId + "' from checkpoint " + stageIndex + "/" + stages.size());
+            } else {
+                Logger.global.logWarning("Migration checkpoint '" + checkpointFile + "' belongs to map '" +
+                        checkpoint.getProperty(CHECKPOINT_MAP_KEY) + "' and not to map '" + mapId + "', starting from the beginning.");
+            }
+        }
+
+        this.stages = stages;
+        this.stageCount = stages.size();
+        writeCheckpoint();
+    }
+
+    private @Nullable List<GridStorage.Cell> nextBatch() throws IOException, InterruptedException {
+        assert stages != null;
+
+        while (!this.cancelled) {
+            if (stageIndex >= stages.size()) {
+                finish();
+                return null;
+            }
+
+            if (cells == null) openStage(stages.get(stageIndex));
+            assert cells != null;
+
+            if (cells.hasNext()) {
+                List<GridStorage.Cell> batch = new ArrayList<>(BATCH_SIZE);
+                while (batch.size() < BATCH_SIZE && cells.hasNext())
+                    batch.add(cells.next());
+                return batch;
+            }
+
+            // wait for the other threads to complete this stage
+            if (runningBatches > 0) {
+                this.wait(TimeUnit.SECONDS.toMillis(1));
+                continue;
+            }
+
+            closeStage();
+            target.flush();
+
+            stageIndex++;
+            skipExisting = false;
+            writeCheckpoint();
+        }
+
+        return null;
+    }
+
+    private void openStage(Stage stage) throws IOException {
+        try (Stream<GridStorage.Cell> counting = stage.source().stream()) {
+            stageSize = counting.count();
+        }
+        stageProgress = 0;
+
+        cellStream = stage.source().stream();
+        cells = cellStream.iterator();
+    }
+
+    private void closeStage() {
+        if (cellStream != null) cellStream.close();
+        cellStream = null;
+        cells = null;
+    }
+
+    private void finish() throws IOException {
+        this.hasMoreWork = false;
+        this.endTime = System.currentTimeMillis();
+        target.flush();
+
+        if (checkpointFile != null) Files.deleteIfExists(checkpointFile);
+    }
+
+    private void writeCheckpoint() throws IOException {
+        if (checkpointFile == null) return;
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(CHECKPOINT_MAP_KEY, mapId);
+        checkpoint.setProperty(CHECKPOINT_STAGE_KEY, String.valueOf(stageIndex));
+
+        try (Writer writer = new OutputStreamWriter(FileHelper.createFilepartOutputStream(checkpointFile), StandardCharsets.UTF_8)) {
+            checkpoint.store(writer, "BlueMap storage-migration checkpoint");
+        }
+    }
+
+    private void copy(ItemStorage from, ItemStorage to) throws IOException {
+        try (CompressedInputStream in = from.read()) {
+            if (in == null) return;
+
+            // copy the compressed data as it is if possible
+            OutputStream compressedOut = to.writeCompressed(in.getCompression());
+            if (compressedOut != null) {
+                try (compressedOut) {
+                    copiedBytes.add(in.transferTo(compressedOut));
+                }
+            } else {
+                try (InputStream data = in.decompress(); OutputStream out = to.write()) {
+                    copiedBytes.add(data.transferTo(out));
+                }
+            }
+
+            copiedItems.increment();
+        }
+    }
+
+    @Override
+    public boolean hasMoreWork() {
+        return this.hasMoreWork && !this.cancelled;
+    }
+
+    @Override
+    @DebugDump
+    public double estimateProgress() {
+        int stageCount = this.stageCount, stageIndex = this.stageIndex;
+        if (stageCount <= 0) return 0d;
+        if (stageIndex >= stageCount) return 1d;
+
+        long stageSize = this.stageSize;
+        double stage = stageSize > 0 ? Math.min((double) stageProgress / stageSize, 1d) : 0d;
+        return (stageIndex + stage) / stageCount;
+    }
+
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+
+        synchronized (this) {
+            if (runningBatches <= 0) closeStage();
+            this.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean contains(RenderTask task) {
+        if (task == this) return true;
+        if (task instanceof StorageMigrationTask) {
+            StorageMigrationTask mTask = (StorageMigrationTask) task;
+            return source.equals(mTask.source) && target.equals(mTask.target) && mapId.equals(mTask.mapId);
+        }
+
+        return false;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Migrate map " + mapId;
+    }
+
+    @Override
+    public Optional<String> getDetail() {
+        return Optional.of(getThroughput());
+    }
+
+    /**
+     * Returns a human-readable summary of the amount of data copied so far and the average throughput
+     */
+    @DebugDump
+    public String getThroughput() {
+        long items = copiedItems.sum();
+        long bytes = copiedBytes.sum();
+        long end = endTime > 0 ? endTime : System.currentTimeMillis();
+        double seconds = startTime > 0 ? Math.max(end - startTime, 1) / 1000d : 1d;
+
+        String summary = String.format("%d items (%.1f MiB) copied, %.0f items/s, %.2f MiB/s",
+                items,
+                bytes / 1048576d,
+                items / seconds,
+                bytes / 1048576d / seconds
+        );
+
+        long failed = failedItems.sum();
+        if (failed > 0) summary += ", " + failed + " failed";
+        return summary;
+    }
+
+    private record Stage (String name, GridStorage source, GridStorage target) {}
+
+}
@@ -0,0 +1,426 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.rendermanager;
+
+import com.flowpowered.math.vector.Vector2i;
+import de.bluecolored.bluemap.common.debug.DebugDump;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.map.renderstate.MapTileState;
+import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
+import de.bluecolored.bluemap.core.map.renderstate.TileState;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.util.Grid;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * A {@link RenderTask} that renders many regions of a map, one {@link WorldRegionRenderTask} after another.<br>
+ * <br>
+ * The regions are discovered when this task starts working (not when it is created), and the
+ * {@link WorldRegionRenderTask}s are only created once they are actually being worked on.
+ * Regions are processed in a spiral around a center-region, so that consecutive regions are neighbours and can share
+ * their loaded border-chunks.<br>
+ * <br>
+ * If no fixed set of regions is given, the regions are discovered from the world-files first, and rendering
+ * starts right away. Once those regions are processed, the render-threads scan the tile-state files of the map
+ * (one file per {@link #doWork()}-call) for regions that have been rendered before but are no longer present in the
+ * world (so they can be cleaned up). Those regions are processed as soon as they are found.
+ */
+public class StreamingRegionRenderTask implements RenderTask {
+
+    private static final long[] EMPTY = new long[0];
+
+    @Getter private final BmMap map;
+    @Getter private final TileUpdateStrategy force;
+    private final Vector2i centerRegion;
+    private final Predicate<Vector2i> regionFilter;
+    private final boolean fullMap;
+
+    private long[] regions;
+    private int regionCount;
+    private int nextRegion;
+
+    private final Set<Long> lateRegions = new HashSet<>(); // all regions found by the tile-state scan
+    private final Set<Long> pendingLateRegions = new LinkedHashSet<>();
+    private @Nullable Stream<GridStorage.Cell> tileStateScan;
+    private @Nullable Iterator<GridStorage.Cell> tileStateCells;
+    private int activeScans;
+
+    private @Nullable WorldRegionRenderTask currentTask;
+    private int finishedTasks;
+
+    private volatile boolean initialized, completed, cancelled;
+
+    /**
+     * Creates a task rendering exactly the given regions
+     */
+    public StreamingRegionRenderTask(BmMap map, Collection<Vector2i> regions, TileUpdateStrategy force) {
+        this.map = map;
+        this.force = force;
+        this.centerRegion = spawnRegion(map);
+        this.regionFilter = r -> true;
+        this.fullMap = false;
+
+        long[] keys = new long[regions.size()];
+        int i = 0;
+        for (Vector2i region : regions)
+            keys[i++] = spiralKey(region.getX() - centerRegion.getX(), region.getY() - centerRegion.getY());
+        setRegions(keys, i);
+
+        this.initialized = true;
+    }
+
+    /**
+     * Creates a task that discovers and renders all regions of the map that match the given filter
+     */
+    public StreamingRegionRenderTask(BmMap map, Predicate<Vector2i> regionFilter, boolean fullMap, TileUpdateStrategy force) {
+        this.map = map;
+        this.force = force;
+        this.centerRegion = spawnRegion(map);
+        this.regionFilter = regionFilter;
+        this.fullMap = fullMap;
+
+        this.regions = EMPTY;
+        this.regionCount = 0;
+
+        this.initialized = false;
+    }
+
+    private synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+
+        Grid regionGrid = map.getWorld().getRegionGrid();
+        Predicate<Vector2i> regionBoundsFilter = map.getMapSettings().getCellRenderBoundariesFilter(regionGrid, true);
+
+        // collect all regions from the world-files
+        Collection<Vector2i> worldRegions = map.getWorld().listRegions();
+        long[] keys = new long[worldRegions.size()];
+        int i = 0;
+        for (Vector2i region : worldRegions) {
+            if (!regionBoundsFilter.test(region) || !regionFilter.test(region)) continue;
+            keys[i++] = spiralKey(region.getX() - centerRegion.getX(), region.getY() - centerRegion.getY());
+        }
+        setRegions(keys, i);
+
+        // the tile-state files are scanned for additional regions once the world-regions are processed
+        try {
+            tileStateScan = map.getStorage().tileState().stream();
+            tileStateCells = tileStateScan.iterator();
+        } catch (IOException | RuntimeException ex) {
+            Logger.global.logError("Failed to load map tile state!", ex);
+        }
+    }
+
+    private void setRegions(long[] keys, int count) {
+        Arrays.sort(keys, 0, count);
+
+        // remove duplicates
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique > 0 && keys[unique - 1] == keys[i]) continue;
+            keys[unique++] = keys[i];
+        }
+
+        this.regions = keys;
+        this.regionCount = unique;
+        this.nextRegion = 0;
+    }
+
+    /**
+     * Also update regions that are present as map-tile-state files (they might have been rendered before but deleted now).
+     * This scans the next tile-state file and adds the regions it covers to the late regions.
+     */
+    private void scanNextTileState() {
+        GridStorage.Cell cell = null;
+        try {
+            synchronized (this) {
+                if (tileStateCells != null && tileStateCells.hasNext())
+                    cell = tileStateCells.next();
+                else
+                    closeTileStateScan();
+            }
+            if (cell == null || cancelled || !containsRenderedTiles(cell)) return;
+
+            Grid regionGrid = map.getWorld().getRegionGrid();
+            Grid cellGrid = MapTileState.GRID.multiply(map.getHiresModelManager().getTileGrid());
+            Collection<Vector2i> cellRegions = cellGrid.getIntersecting(new Vector2i(cell.getX(), cell.getZ()), regionGrid);
+
+            synchronized (this) {
+                for (Vector2i region : cellRegions) {
+                    if (!regionFilter.test(region)) continue;
+                    long key = spiralKey(region.getX() - centerRegion.getX(), region.getY() - centerRegion.getY());
+                    if (Arrays.binarySearch(regions, 0, regionCount, key) >= 0) continue;
+                    if (lateRegions.add(key)) pendingLateRegions.add(key);
+                }
+            }
+        } catch (RuntimeException ex) {
+            // (a little hacky as we are operating on raw tile-state files -> maybe find a better way?)
+            Logger.global.logError("Failed to load map tile state!", ex);
+            synchronized (this) {
+                closeTileStateScan();
+            }
+        } finally {
+            synchronized (this) {
+                activeScans--;
+            }
+        }
+    }
+
+    private synchronized void closeTileStateScan() {
+        Stream<GridStorage.Cell> scan = tileStateScan;
+        tileStateScan = null;
+        tileStateCells = null;
+        if (scan != null) scan.close();
+    }
+
+    /**
+     * Filter out files that are fully UNKNOWN/NOT_GENERATED.
+     * This avoids unnecessarily converting UNKNOWN tiles into NOT_GENERATED tiles on force-updates
+     */
+    private static boolean containsRenderedTiles(GridStorage.Cell cell) {
+        try (CompressedInputStream in = cell.read()) {
+            if (in == null) return false;
+            TileState[] states = TileInfoRegion.loadPalette(in.decompress());
+            for (TileState state : states) {
+                if (
+                        state != TileState.UNKNOWN &&
+                        state != TileState.NOT_GENERATED
+                ) return true;
+            }
+            return false;
+        } catch (IOException ignore) {
+            return true;
+        }
+    }
+
+    @Override
+    public void doWork() throws Exception {
+        if (cancelled || completed) return;
+
+        WorldRegionRenderTask task;
+
+        synchronized (this) {
+            if (cancelled || completed) return;
+            if (!initialized) init();
+
+            task = currentTask;
+            if (task == null || !task.hasMoreWork()) {
+                if (task != null) finishedTasks++;
+                task = currentTask = nextTask();
+
+                if (task == null) {
+                    // other threads might still find regions in the tile-state files they are scanning
+                    if (tileStateScan == null) {
+                        if (activeScans <= 0) completed = true;
+                        return;
+                    }
+                    activeScans++;
+                }
+            }
+        }
+
+        // no region to render right now, scan for more regions instead
+        if (task == null) {
+            scanNextTileState();
+            return;
+        }
+
+        task.doWork();
+    }
+
+    private @Nullable WorldRegionRenderTask nextTask() {
+        if (nextRegion < regionCount)
+            return createTask(regions[nextRegion++]);
+
+        Iterator<Long> lateRegionIterator = pendingLateRegions.iterator();
+        if (lateRegionIterator.hasNext()) {
+            long key = lateRegionIterator.next();
+            lateRegionIterator.remove();
+            return createTask(key);
+        }
+
+        return null;
+    }
+
+    private WorldRegionRenderTask createTask(long key) {
+        return new WorldRegionRenderTask(map, centerRegion.add(spiralX(key), spiralZ(key)), force);
+    }
+
+    @Override
+    public boolean hasMoreWork() {
+        return !completed && !cancelled;
+    }
+
+    @Override
+    @DebugDump
+    public synchronized double estimateProgress() {
+        int total = regionCount + lateRegions.size();
+        if (total <= 0) return 0;
+
+        double progress = finishedTasks;
+        if (currentTask != null) progress += currentTask.estimateProgress();
+        return Math.min(progress / total, 1);
+    }
+
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+
+        WorldRegionRenderTask task = currentTask;
+        if (task != null) task.cancel();
+
+        closeTileStateScan();
+    }
+
+    @Override
+    public synchronized boolean contains(RenderTask task) {
+        if (task == this) return true;
+
+        if (task instanceof WorldRegionRenderTask regionTask) {
+            if (regionTask.getForce() != force) return false;
+            if (!regionTask.getMap().getId().equals(map.getId())) return false;
+            return willProcess(regionTask.getRegionPos());
+        }
+
+        if (task instanceof StreamingRegionRenderTask other) {
+            if (other.force != force) return false;
+            if (!other.map.getId().equals(map.getId())) return false;
+
+            if (!other.initialized) {
+                if (!other.fullMap) return false;
+                return !initialized && fullMap;
+            }
+
+            for (Vector2i region : other.getRegions()) {
+                if (!willProcess(region)) return false;
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the given region is one that this task still has to process
+     */
+    private boolean willProcess(Vector2i region) {
+        if (!initialized) {
+            Grid regionGrid = map.getWorld().getRegionGrid();
+            return
+                    map.getMapSettings().getCellRenderBoundariesFilter(regionGrid, true).test(region) &&
+                    regionFilter.test(region);
+        }
+
+        long key = spiralKey(region.getX() - centerRegion.getX(), region.getY() - centerRegion.getY());
+        if (nextRegion < regionCount && Arrays.binarySearch(regions, nextRegion, regionCount, key) >= 0)
+            return true;
+        return pendingLateRegions.contains(key);
+    }
+
+    /**
+     * Returns all regions that this task has discovered so far.
+     * (This is empty if the task has not started discovering regions yet)
+     */
+    public synchronized Collection<Vector2i> getRegions() {
+        List<Vector2i> list = new ArrayList<>(regionCount + lateRegions.size());
+        for (int i = 0; i < regionCount; i++)
+            list.add(centerRegion.add(spiralX(regions[i]), spiralZ(regions[i])));
+        for (long key : lateRegions)
+            list.add(centerRegion.add(spiralX(key), spiralZ(key)));
+        return list;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Update regions for map '" + map.getId() + "'";
+    }
+
+    @Override
+    public Optional<String> getDetail() {
+        WorldRegionRenderTask task = currentTask;
+        if (task == null) return Optional.empty();
+        return Optional.of(task.getDescription());
+    }
+
+    private static Vector2i spawnRegion(BmMap map) {
+        Vector2i spawnPoint = map.getWorld().getSpawnPoint().toVector2(true);
+        return map.getWorld().getRegionGrid().getCell(spawnPoint);
+    }
+
+    /**
+     * Creates a key for a position relative to the center, so that sorting the keys orders the positions
+     * in a spiral around the center.<br>
+     * The upper 32 bits are the square-ring around the center, the lower 32 bits are the index on that ring.
+     */
+    static long spiralKey(int x, int z) {
+        int ring = Math.max(Math.abs(x), Math.abs(z));
+        if (ring == 0) return 0;
+
+        int index;
+        if (x == ring && z > -ring) index = z + ring - 1;
+        else if (z == ring && x < ring) index = 2 * ring + (ring - 1 - x);
+        else if (x == -ring && z < ring) index = 4 * ring + (ring - 1 - z);
+        else index = 6 * ring + (x + ring - 1);
+
+        return (long) ring << 32 | index;
+    }
+
+    static int spiralX(long key) {
+        int ring = (int) (key >>> 32);
+        if (ring == 0) return 0;
+
+        int index = (int) key;
+        int offset = index % (2 * ring);
+        return switch (index / (2 * ring)) {
+            case 0 -> ring;
+            case 1 -> ring - 1 - offset;
+            case 2 -> -ring;
+            default -> offset - ring + 1;
+        };
+    }
+
+    static int spiralZ(long key) {
+        int ring = (int) (key >>> 32);
+        if (ring == 0) return 0;
+
+        int index = (int) key;
+        int offset = index % (2 * ring);
+        return switch (index / (2 * ring)) {
+            case 0 -> offset - ring + 1;
+            case 1 -> ring;
+            case 2 -> ring - 1 - offset;
+            default -> -ring;
+        };
+    }
+
+}
@@ -29,9 +29,9 @@
 import de.bluecolored.bluemap.common.debug.DebugDump;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.map.renderstate.RegionInfoRegion.RegionInfo;
 import de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.ActionAndNextState;
 import de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.BoundsSituation;
-import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
 import de.bluecolored.bluemap.core.map.renderstate.TileState;
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.world.Chunk;
@@ -40,6 +40,8 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.concurrent.TimeUnit;
 
@@ -58,6 +60,11 @@ public class WorldRegionRenderTask implements RenderTask {
 
     private int[] chunkHashes;
     private ActionAndNextState[] tileActions;
+    private boolean[] forcedTiles;
+
+    private @Nullable BasicFileAttributes regionFileAttributes;
+    private long headerDigest;
+    private volatile boolean hadRenderErrors;
 
     private volatile int nextTileX, nextTileZ;
     private volatile int atWork;
@@ -97,36 +104,75 @@ private synchronized void init() {
         this.tileMax = regionGrid.getCellMax(regionPos, tileGrid);
         this.tileSize = tileMax.sub(tileMin).add(1, 1);
 
-        // load chunk-hash array
-        int chunkMaxCount = chunksSize.getX() * chunksSize.getY();
+        // skip the region if the region-file did not change since the last successful update
+        // (the file-attributes are read before the header, so changes during this update are detected next time)
+        RegionInfo lastRegionInfo = map.getMapRegionState().get(regionPos.getX(), regionPos.getY());
         try {
-            chunkHashes = new int[chunkMaxCount];
-            map.getWorld().getRegion(regionPos.getX(), regionPos.getY())
-                    .iterateAllChunks( (ChunkConsumer.ListOnly) (x, z, timestamp) -> {
-                        chunkHashes[chunkIndex(
-                                x - chunkMin.getX(),
-                                z - chunkMin.getY()
-                        )] = timestamp;
-                        map.getWorld().invalidateChunkCache(x, z);
-                    });
+            regionFileAttributes = map.getWorld().readRegionFileAttributes(regionPos.getX(), regionPos.getY());
         } catch (IOException ex) {
-            Logger.global.logError("Failed to load chunks for region " + regionPos, ex);
-            cancel();
+            Logger.global.logDebug("Failed to read region-file attributes for region " + regionPos + ": " + ex);
+            regionFileAttributes = null;
         }
+        if (
+                force == TileUpdateStrategy.FORCE_NONE &&
+                lastRegionInfo != null &&
+                regionFileAttributes != null &&
+                lastRegionInfo.getFileSize() == regionFileAttributes.size() &&
+                lastRegionInfo.getLastModified() == regionFileAttributes.lastModifiedTime().toMillis()
+        ) {
+            completed = true;
+            return;
+        }
+
+        // load chunk-hash array
+        int chunkMaxCount = chunksSize.getX() * chunksSize.getY();
+        chunkHashes = new int[chunkMaxCount];
+        boolean contentHashesLoaded = false;
+        if (map.getMapSettings().isContentChangeDetection()) {
+            try {
+                loadChunkContentHashes();
+                contentHashesLoaded = true;
+            } catch (IOException ex) {
+                Logger.global.logWarning("Failed to load chunk-contents for region " + regionPos + ", falling back to chunk-timestamps: " + ex);
+            }
+        }
+        if (!contentHashesLoaded) {
+            try {
+                Arrays.fill(chunkHashes, 0);
+                map.getWorld().getRegion(regionPos.getX(), regionPos.getY())
+                        .iterateAllChunks( (ChunkConsumer.ListOnly) (x, z, timestamp) -> {
+                            chunkHashes[chunkIndex(
+                                    x - chunkMin.getX(),
+                                    z - chunkMin.getY()
+                            )] = timestamp;
+                            map.getWorld().invalidateChunkCache(x, z);
+                        });
+            } catch (IOException ex) {
+                Logger.global.logError("Failed to load chunks for region " + regionPos, ex);
+                cancel();
+            }
+        }
+
+        // if the header is unchanged, none of the chunks have changed and there is no need to compare each chunk
+        headerDigest = digest(chunkHashes);
+        boolean headerUnchanged = lastRegionInfo != null && lastRegionInfo.getHeaderDigest() == headerDigest;
 
         // check tile actions
         int tileMaxCount = tileSize.getX() * tileSize.getY();
         int tileRenderCount = 0;
         int tileDeleteCount = 0;
         tileActions = new ActionAndNextState[tileMaxCount];
+        forcedTiles = new boolean[tileMaxCount];
         for (int x = 0; x < tileSize.getX(); x++) {
             for (int z = 0; z < tileSize.getY(); z++) {
                 Vector2i tile = new Vector2i(tileMin.getX() + x, tileMin.getY() + z);
-                TileState tileState = map.getMapTileState().get(tile.getX(), tile.getY()).getState();
+                TileState tileState = map.getMapTileState().getState(tile.getX(), tile.getY());
 
                 int tileIndex = tileIndex(x, z);
+                boolean forced = force.test(tileState);
+                forcedTiles[tileIndex] = forced;
                 tileActions[tileIndex] = tileState.findActionAndNextState(
-                        force.test(tileState) || checkChunksHaveChanges(tile),
+                        forced || (!headerUnchanged && checkChunksHaveChanges(tile)),
                         checkTileBounds(tile)
                 );
 
@@ -140,8 +186,10 @@ private synchronized void init() {
         if (tileRenderCount >= tileMaxCount * 0.75)
             map.getWorld().preloadRegionChunks(regionPos.getX(), regionPos.getY());
 
-        if (tileRenderCount + tileDeleteCount == 0)
+        if (tileRenderCount + tileDeleteCount == 0 && !cancelled) {
             completed = true;
+            complete();
+        }
 
     }
 
@@ -203,7 +251,8 @@ private void processTile(int x, int z) {
                         yield failedState;
                     }
 
-                    map.renderTile(tile);
+                    // forced tiles are saved even if their content did not change, the stored tile might be outdated
+                    map.renderTile(tile, forcedTiles[tileIndex(x, z)]);
                     yield action.state();
                 }
 
@@ -220,11 +269,15 @@ private void processTile(int x, int z) {
 
         } finally {
 
+            if (resultState == TileState.RENDER_ERROR)
+                hadRenderErrors = true;
+
             // mark tile with new state
-            map.getMapTileState().set(tile.getX(), tile.getY(), new TileInfoRegion.TileInfo(
+            map.getMapTileState().set(
+                    tile.getX(), tile.getY(),
                     (int) (System.currentTimeMillis() / 1000),
                     resultState
-            ));
+            );
 
         }
 
@@ -242,6 +295,17 @@ private synchronized void complete() {
             chunkHashes = null;
         }
 
+        // save region-file state, tiles with render-errors need to be retried so we don't remember the state then
+        RegionInfo regionInfo = null;
+        if (regionFileAttributes != null && !hadRenderErrors) {
+            regionInfo = new RegionInfo(
+                    regionFileAttributes.size(),
+                    regionFileAttributes.lastModifiedTime().toMillis(),
+                    headerDigest
+            );
+        }
+        map.getMapRegionState().set(regionPos.getX(), regionPos.getY(), regionInfo);
+
         // save map (at most, every minute)
         map.save(TimeUnit.MINUTES.toMillis(1));
     }
@@ -282,6 +346,37 @@ public int hashCode() {
         return regionPos.hashCode();
     }
 
+    /**
+     * Fills the chunk-hash array with a hash of each chunks render-relevant contents instead of the chunks timestamp.
+     * This way, chunks that got saved without any visible changes won't cause their tiles to be re-rendered.
+     */
+    private void loadChunkContentHashes() throws IOException {
+        long minInhabitedTime = map.getMapSettings().getMinInhabitedTime();
+        map.getWorld().getRegion(regionPos.getX(), regionPos.getY())
+                .iterateAllChunks((x, z, chunk) -> {
+                    long hash = chunk.getContentHash();
+
+                    // the inhabited-time is not part of the content-hash, but crossing the threshold changes the render-result
+                    if (minInhabitedTime > 0 && chunk.getInhabitedTime() >= minInhabitedTime)
+                        hash = ~hash;
+
+                    chunkHashes[chunkIndex(
+                            x - chunkMin.getX(),
+                            z - chunkMin.getY()
+                    )] = (int) (hash ^ (hash >>> 32));
+                    map.getWorld().invalidateChunkCache(x, z);
+                });
+    }
+
+    private static long digest(int[] chunkHashes) {
+        long digest = 0xcbf29ce484222325L;
+        for (int hash : chunkHashes) {
+            digest ^= hash;
+            digest *= 0x100000001b3L;
+        }
+        return digest;
+    }
+
     private int chunkIndex(int x, int z) {
         return z * chunksSize.getX() + x;
     }
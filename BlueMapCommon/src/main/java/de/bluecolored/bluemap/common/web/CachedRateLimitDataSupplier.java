@@ -24,10 +24,17 @@
  */
 package de.bluecolored.bluemap.common.web;
 
+import de.bluecolored.bluemap.core.logger.Logger;
+import org.jetbrains.annotations.Nullable;
+
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
-public class CachedRateLimitDataSupplier implements Supplier<String> {
+/**
+ * Caches the data of a supplier as a {@link DataSnapshot}, so it is serialized and encoded at most once per
+ * rate-limit interval, no matter how many requests (for how many maps) are using it.
+ */
+public class CachedRateLimitDataSupplier implements Supplier<DataSnapshot> {
 
     private final ReentrantLock lock = new ReentrantLock();
 
@@ -35,29 +42,40 @@ public class CachedRateLimitDataSupplier implements Supplier<String> {
     private final long rateLimitMillis;
 
     private long updateTime = -1;
-    private String data = null;
+    private volatile @Nullable DataSnapshot snapshot = null;
 
     public CachedRateLimitDataSupplier(Supplier<String> delegate, long rateLimitMillis) {
         this.delegate = delegate;
         this.rateLimitMillis = rateLimitMillis;
     }
 
+    /**
+     * Returns the latest data, or null if there is no data yet because the delegate failed to supply it
+     */
     @Override
-    public String get() {
+    public @Nullable DataSnapshot get() {
         update();
-        return data;
+        return snapshot;
     }
 
     protected void update() {
-        if (lock.tryLock()) {
+        // if there is no data yet, wait for it to be created, otherwise keep using the old data while it is updated
+        if (snapshot == null) lock.lock();
+        else if (!lock.tryLock()) return;
+
+        try {
+            long now = System.currentTimeMillis();
+            if (updateTime >= 0 && now < updateTime + this.rateLimitMillis) return;
+            this.updateTime = now;
+
+            // if the update fails, keep using the old data (if there is any) and try again after the rate-limit
             try {
-                long now = System.currentTimeMillis();
-                if (data != null && now < updateTime + this.rateLimitMillis) return;
-                this.data = delegate.get();
-                this.updateTime = now;
-            } finally {
-                lock.unlock();
+                this.snapshot = DataSnapshot.of(delegate.get());
+            } catch (RuntimeException ex) {
+                Logger.global.noFloodError("cached-data-update-fail", "Failed to update cached data!", ex);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
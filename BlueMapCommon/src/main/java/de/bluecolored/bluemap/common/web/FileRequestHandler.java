@@ -32,8 +32,10 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.ZoneOffset;
@@ -151,9 +153,9 @@ private HttpResponse generateResponse(HttpRequest request) throws IOException {
 
         //send response
         try {
-            response.setData(Files.newInputStream(filePath));
+            response.setData(FileChannel.open(filePath));
             return response;
-        } catch (FileNotFoundException e) {
+        } catch (FileNotFoundException | NoSuchFileException e) {
             return new HttpResponse(HttpStatusCode.NOT_FOUND);
         }
     }
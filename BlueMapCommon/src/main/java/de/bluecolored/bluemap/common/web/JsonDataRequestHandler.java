@@ -24,10 +24,8 @@
  */
 package de.bluecolored.bluemap.common.web;
 
-import de.bluecolored.bluemap.common.web.http.HttpRequest;
-import de.bluecolored.bluemap.common.web.http.HttpRequestHandler;
-import de.bluecolored.bluemap.common.web.http.HttpResponse;
-import de.bluecolored.bluemap.common.web.http.HttpStatusCode;
+import de.bluecolored.bluemap.common.web.http.*;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -37,18 +35,48 @@
 @Getter @Setter
 public class JsonDataRequestHandler implements HttpRequestHandler {
 
-    private @NonNull Supplier<String> dataSupplier;
+    private @NonNull Supplier<DataSnapshot> dataSupplier;
 
-    public JsonDataRequestHandler(Supplier<String> dataSupplier) {
+    public JsonDataRequestHandler(Supplier<DataSnapshot> dataSupplier) {
         this.dataSupplier = dataSupplier;
     }
 
     @Override
     public HttpResponse handle(HttpRequest request) {
+        DataSnapshot snapshot = dataSupplier.get();
+        if (snapshot == null) {
+            // the data could not be created (yet), the client should just try again later
+            HttpResponse response = new HttpResponse(HttpStatusCode.SERVICE_UNAVAILABLE);
+            response.addHeader("Cache-Control", "no-cache");
+            response.addHeader("Retry-After", "1");
+            return response;
+        }
+
+        String eTag = "\"" + snapshot.eTag() + "\"";
+
         HttpResponse response = new HttpResponse(HttpStatusCode.OK);
         response.addHeader("Cache-Control", "no-cache");
         response.addHeader("Content-Type", "application/json");
-        response.setData(dataSupplier.get());
+        response.addHeader("ETag", "W/" + eTag); // weak, since the data might be sent with different content-encodings
+
+        HttpHeader noneMatchHeader = request.getHeader("If-None-Match");
+        if (noneMatchHeader != null) {
+            for (String tag : noneMatchHeader.getValues()) {
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals(eTag)) {
+                    response.setStatusCode(HttpStatusCode.NOT_MODIFIED);
+                    return response;
+                }
+            }
+        }
+
+        if (request.hasHeaderValue("Accept-Encoding", Compression.GZIP.getId())) {
+            response.addHeader("Content-Encoding", Compression.GZIP.getId());
+            response.setData(snapshot.gzipBytes());
+        } else {
+            response.setData(snapshot.bytes());
+        }
+
         return response;
     }
 
@@ -0,0 +1,264 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import de.bluecolored.bluemap.common.web.http.*;
+import de.bluecolored.bluemap.core.logger.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Streams live-data (e.g. players and markers) to all subscribed clients using server-sent events.<br>
+ * Each event-source is only serialized once per update-interval for all subscribers, and is only sent if it changed
+ * (compared using the {@link DataSnapshot#eTag()}).
+ * New subscribers receive the current data of all event-sources right away.<br>
+ * A subscriber that can not keep up only receives the newest data of each event-source, older data that has not been
+ * sent yet is dropped.
+ */
+public class LiveEventsRequestHandler implements HttpRequestHandler {
+
+    private static final Timer TIMER = new Timer("BlueMap-LiveEvents-Timer", true);
+    private static final long TICK_INTERVAL = 500;
+    private static final long KEEP_ALIVE_INTERVAL = TimeUnit.SECONDS.toMillis(15);
+    private static final String KEEP_ALIVE_EVENT = "keep-alive";
+
+    private final List<EventSource> eventSources = new CopyOnWriteArrayList<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private @Nullable TimerTask updateTask;
+    private long lastEventTime;
+
+    /**
+     * Adds an event-source, the data of the supplier will be checked for changes in the given interval and sent as an
+     * event with the given name to all subscribers.
+     */
+    public void addEventSource(String event, Supplier<DataSnapshot> dataSupplier, long intervalMillis) {
+        eventSources.add(new EventSource(event, dataSupplier, intervalMillis));
+    }
+
+    @Override
+    public HttpResponse handle(HttpRequest request) {
+        if (!request.getMethod().equalsIgnoreCase("GET"))
+            return new HttpResponse(HttpStatusCode.BAD_REQUEST);
+
+        Subscriber subscriber = new Subscriber();
+        subscribe(subscriber);
+
+        // send the current data to the new subscriber
+        long now = System.currentTimeMillis();
+        for (EventSource source : eventSources) {
+            synchronized (source) {
+                source.update(now);
+                if (source.event != null) subscriber.send(source.name, source.event);
+            }
+        }
+
+        HttpResponse response = new HttpResponse(HttpStatusCode.OK);
+        response.addHeader("Cache-Control", "no-cache");
+        response.addHeader("Content-Type", "text/event-stream");
+        response.addHeader("X-Accel-Buffering", "no"); // disable buffering of reverse-proxies (nginx)
+        response.setData(subscriber);
+        return response;
+    }
+
+    private synchronized void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+
+        if (updateTask == null) {
+            updateTask = new TimerTask() {
+                @Override
+                public void run() {
+                    update();
+                }
+            };
+            lastEventTime = System.currentTimeMillis();
+            TIMER.scheduleAtFixedRate(updateTask, TICK_INTERVAL, TICK_INTERVAL);
+        }
+    }
+
+    private synchronized void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+
+        // stop updating if there are no more subscribers
+        if (subscribers.isEmpty() && updateTask != null) {
+            updateTask.cancel();
+            updateTask = null;
+        }
+    }
+
+    private void update() {
+        try {
+            long now = System.currentTimeMillis();
+            boolean sent = false;
+
+            for (EventSource source : eventSources) {
+                synchronized (source) {
+                    if (!source.update(now)) continue;
+                    for (Subscriber subscriber : subscribers)
+                        subscriber.send(source.name, source.event);
+                    sent = true;
+                }
+            }
+
+            // send a comment from time to time, so the connections are not closed by proxies for being idle
+            if (sent) {
+                lastEventTime = now;
+            } else if (now - lastEventTime >= KEEP_ALIVE_INTERVAL) {
+                ByteBuffer keepAlive = ByteBuffer.wrap(": \n\n".getBytes(StandardCharsets.UTF_8));
+                for (Subscriber subscriber : subscribers)
+                    subscriber.send(KEEP_ALIVE_EVENT, keepAlive);
+                lastEventTime = now;
+            }
+        } catch (Exception ex) {
+            Logger.global.logError("Failed to update live-events", ex);
+        }
+    }
+
+    private static class EventSource {
+
+        private final String name;
+        private final Supplier<DataSnapshot> dataSupplier;
+        private final long interval;
+
+        private long updateTime = -1;
+        private @Nullable String eTag;
+        private @Nullable ByteBuffer event;
+
+        private EventSource(String name, Supplier<DataSnapshot> dataSupplier, long interval) {
+            this.name = name;
+            this.dataSupplier = dataSupplier;
+            this.interval = interval;
+        }
+
+        /**
+         * Updates the data if the update-interval has passed.
+         * @return true if the data changed
+         */
+        private boolean update(long now) {
+            if (updateTime >= 0 && now < updateTime + interval) return false;
+            updateTime = now;
+
+            DataSnapshot snapshot = dataSupplier.get();
+            if (snapshot == null || snapshot.eTag().equals(this.eTag)) return false;
+
+            this.eTag = snapshot.eTag();
+            this.event = ByteBuffer.wrap(serializeEvent(name, snapshot.data()));
+            return true;
+        }
+
+        private static byte[] serializeEvent(String name, String data) {
+            StringBuilder sb = new StringBuilder(data.length() + name.length() + 16);
+            sb.append("event: ").append(name).append('\n');
+            for (String line : data.split("\n", -1))
+                sb.append("data: ").append(line).append('\n');
+            sb.append('\n');
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+    }
+
+    private class Subscriber implements StreamingChannel {
+
+        // the newest event of each event-source that has not been sent yet
+        private final Map<String, ByteBuffer> pending = new LinkedHashMap<>();
+        private @Nullable ByteBuffer current;
+        private @Nullable Runnable listener;
+        private boolean closed = false;
+
+        /**
+         * Queues the event to be sent, replacing any not yet sent event of the same source
+         */
+        void send(String name, ByteBuffer event) {
+            Runnable listener;
+            synchronized (this) {
+                if (closed) return;
+                pending.put(name, event.duplicate());
+                listener = this.listener;
+            }
+            if (listener != null) listener.run();
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) {
+            if (closed) return -1;
+
+            int read = 0;
+            while (dst.hasRemaining()) {
+                if (current == null || !current.hasRemaining()) {
+                    Iterator<ByteBuffer> iterator = pending.values().iterator();
+                    if (!iterator.hasNext()) break;
+                    current = iterator.next();
+                    iterator.remove();
+                }
+
+                int length = Math.min(dst.remaining(), current.remaining());
+                dst.put(dst.position(), current, current.position(), length);
+                dst.position(dst.position() + length);
+                current.position(current.position() + length);
+                read += length;
+            }
+
+            return read;
+        }
+
+        @Override
+        public synchronized boolean isDataAvailable() {
+            return closed || (current != null && current.hasRemaining()) || !pending.isEmpty();
+        }
+
+        @Override
+        public void setDataAvailableListener(Runnable listener) {
+            synchronized (this) {
+                this.listener = listener;
+            }
+            if (isDataAvailable()) listener.run();
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                pending.clear();
+                current = null;
+            }
+            unsubscribe(this);
+        }
+
+    }
+
+}
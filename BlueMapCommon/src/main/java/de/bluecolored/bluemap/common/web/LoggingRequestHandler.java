@@ -26,19 +26,28 @@
 
 import de.bluecolored.bluemap.common.web.http.*;
 import de.bluecolored.bluemap.core.logger.Logger;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Getter @Setter
-@AllArgsConstructor
 public class LoggingRequestHandler implements HttpRequestHandler {
 
     private @NonNull HttpRequestHandler delegate;
     private @NonNull String format;
     private @NonNull Logger logger;
 
+    // the number of arguments passed to the format
+    private static final int ARGUMENT_COUNT = 7;
+
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private @Nullable CompiledFormat compiledFormat;
+
     public LoggingRequestHandler(HttpRequestHandler delegate) {
         this(delegate, Logger.global);
     }
@@ -51,6 +60,21 @@ public LoggingRequestHandler(HttpRequestHandler delegate, String format) {
         this(delegate, format, Logger.global);
     }
 
+    /**
+     * @param logger the logger that the messages are logged to, this should be an
+     * {@link de.bluecolored.bluemap.core.logger.AsyncLogger} to not block the request-handling with slow logging
+     */
+    public LoggingRequestHandler(@NonNull HttpRequestHandler delegate, @NonNull String format, @NonNull Logger logger) {
+        this.delegate = delegate;
+        this.logger = logger;
+        setFormat(format);
+    }
+
+    public void setFormat(@NonNull String format) {
+        this.format = format;
+        this.compiledFormat = CompiledFormat.compile(format, ARGUMENT_COUNT);
+    }
+
     @Override
     public HttpResponse handle(HttpRequest request) {
 
@@ -75,7 +99,7 @@ public HttpResponse handle(HttpRequest request) {
         String statusMessage = status.getMessage();
 
         // format log message
-        String log = String.format(this.format,
+        Object[] args = {
                 source,
                 xffSource,
                 method,
@@ -83,7 +107,9 @@ public HttpResponse handle(HttpRequest request) {
                 version,
                 statusCode,
                 statusMessage
-        );
+        };
+        CompiledFormat compiledFormat = this.compiledFormat;
+        String log = compiledFormat != null ? compiledFormat.format(args) : String.format(this.format, args);
 
         // do the logging
         if (statusCode < 500) {
@@ -96,4 +122,87 @@ public HttpResponse handle(HttpRequest request) {
         return response;
     }
 
+    /**
+     * A format-string that has been parsed once, so it can be formatted quickly without parsing it again.
+     * Only supports plain string-arguments (<code>%s</code> and <code>%1$s</code>), <code>%%</code> and <code>%n</code>.
+     * @param literals the literal text before each argument, and after the last argument
+     * @param arguments the argument-indices
+     */
+    private record CompiledFormat (String[] literals, int[] arguments) {
+
+        String format(Object[] args) {
+            StringBuilder sb = new StringBuilder(64);
+            for (int i = 0; i < arguments.length; i++) {
+                sb.append(literals[i]);
+                sb.append(args[arguments[i]]);
+            }
+            sb.append(literals[arguments.length]);
+            return sb.toString();
+        }
+
+        /**
+         * Compiles the format, or returns null if it uses features that are not supported or references an argument
+         * beyond the given argument-count
+         */
+        static @Nullable CompiledFormat compile(String format, int argumentCount) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> arguments = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int nextArgument = 0;
+
+            int i = 0;
+            while (i < format.length()) {
+                char c = format.charAt(i++);
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+
+                if (i >= format.length()) return null;
+                c = format.charAt(i++);
+
+                if (c == '%') {
+                    literal.append('%');
+                    continue;
+                }
+
+                if (c == 'n') {
+                    literal.append(System.lineSeparator());
+                    continue;
+                }
+
+                int argument;
+                if (c == 's') {
+                    argument = nextArgument++;
+                } else if (c >= '0' && c <= '9') {
+                    // explicit argument-index: %<index>$s
+                    long index = c - '0';
+                    while (i < format.length() && format.charAt(i) >= '0' && format.charAt(i) <= '9') {
+                        index = index * 10 + (format.charAt(i++) - '0');
+                        if (index > argumentCount) return null;
+                    }
+                    if (i + 1 >= format.length() || format.charAt(i) != '$' || format.charAt(i + 1) != 's')
+                        return null;
+                    argument = (int) index - 1;
+                    i += 2;
+                } else {
+                    return null;
+                }
+
+                if (argument < 0 || argument >= argumentCount) return null;
+
+                literals.add(literal.toString());
+                literal.setLength(0);
+                arguments.add(argument);
+            }
+            literals.add(literal.toString());
+
+            return new CompiledFormat(
+                    literals.toArray(String[]::new),
+                    arguments.stream().mapToInt(Integer::intValue).toArray()
+            );
+        }
+
+    }
+
 }
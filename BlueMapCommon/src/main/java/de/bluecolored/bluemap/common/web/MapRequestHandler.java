@@ -41,38 +41,69 @@
 public class MapRequestHandler extends RoutingRequestHandler {
 
     public MapRequestHandler(BmMap map, Server serverInterface, PluginConfig pluginConfig, Predicate<UUID> playerFilter) {
+        this(map, createPlayersDataSupplier(map, serverInterface, pluginConfig, playerFilter), null, null);
+    }
+
+    /**
+     * @param livePlayersData the live-players data of the maps world, which can be shared with all other maps of
+     *                        the same world
+     */
+    public MapRequestHandler(BmMap map, @Nullable Supplier<DataSnapshot> livePlayersData,
+                             @Nullable TileResponseCache tileCache, @Nullable TileExistenceIndex tileIndex) {
         this(map.getStorage(),
-                createPlayersDataSupplier(map, serverInterface, pluginConfig, playerFilter),
-                new LiveMarkersDataSupplier(map.getMarkerSets()));
+                livePlayersData,
+                new CachedRateLimitDataSupplier(new LiveMarkersDataSupplier(map.getMarkerSets()), 10000),
+                tileCache, tileIndex);
     }
 
     public MapRequestHandler(MapStorage mapStorage) {
-        this(mapStorage, null, null);
+        this(mapStorage, (TileResponseCache) null, null);
+    }
+
+    public MapRequestHandler(MapStorage mapStorage,
+                             @Nullable TileResponseCache tileCache, @Nullable TileExistenceIndex tileIndex) {
+        this(mapStorage, null, null, tileCache, tileIndex);
     }
 
     public MapRequestHandler(MapStorage mapStorage,
                              @Nullable Supplier<String> livePlayersDataSupplier,
                              @Nullable Supplier<String> liveMarkerDataSupplier) {
+        this(mapStorage,
+                livePlayersDataSupplier != null ? new CachedRateLimitDataSupplier(livePlayersDataSupplier, 1000) : null,
+                liveMarkerDataSupplier != null ? new CachedRateLimitDataSupplier(liveMarkerDataSupplier, 10000) : null,
+                null, null);
+    }
+
+    public MapRequestHandler(MapStorage mapStorage,
+                             @Nullable Supplier<DataSnapshot> livePlayersData,
+                             @Nullable Supplier<DataSnapshot> liveMarkerData,
+                             @Nullable TileResponseCache tileCache, @Nullable TileExistenceIndex tileIndex) {
 
-        register(".*", new MapStorageRequestHandler(mapStorage));
+        registerPrefix("", new MapStorageRequestHandler(mapStorage, tileCache, tileIndex));
+
+        if (livePlayersData != null) {
+            registerExact("live/players.json", "", new JsonDataRequestHandler(livePlayersData));
+        }
 
-        if (livePlayersDataSupplier != null) {
-            register("live/players\\.json", "", new JsonDataRequestHandler(
-                    new CachedRateLimitDataSupplier(livePlayersDataSupplier,1000)
-            ));
+        if (liveMarkerData != null) {
+            registerExact("live/markers.json", "", new JsonDataRequestHandler(liveMarkerData));
         }
 
-        if (liveMarkerDataSupplier != null) {
-            register("live/markers\\.json", "", new JsonDataRequestHandler(
-                    new CachedRateLimitDataSupplier(liveMarkerDataSupplier,10000)
-            ));
+        // push the live-data to subscribed clients instead of them polling it
+        if (livePlayersData != null || liveMarkerData != null) {
+            LiveEventsRequestHandler liveEventsHandler = new LiveEventsRequestHandler();
+            if (livePlayersData != null)
+                liveEventsHandler.addEventSource("players", livePlayersData, 1000);
+            if (liveMarkerData != null)
+                liveEventsHandler.addEventSource("markers", liveMarkerData, 10000);
+            registerExact("live/events", "", liveEventsHandler);
         }
     }
 
-    private static @Nullable LivePlayersDataSupplier createPlayersDataSupplier(BmMap map, Server serverInterface, PluginConfig pluginConfig, Predicate<UUID> playerFilter) {
+    private static @Nullable Supplier<DataSnapshot> createPlayersDataSupplier(BmMap map, Server serverInterface, PluginConfig pluginConfig, Predicate<UUID> playerFilter) {
         ServerWorld world = serverInterface.getServerWorld(map.getWorld()).orElse(null);
         if (world == null) return null;
-        return new LivePlayersDataSupplier(serverInterface, pluginConfig, world, playerFilter);
+        return new CachedRateLimitDataSupplier(new LivePlayersDataSupplier(serverInterface, pluginConfig, world, playerFilter), 1000);
     }
 
 }
@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.common.web;
 
 import de.bluecolored.bluemap.api.ContentTypeRegistry;
+import de.bluecolored.bluemap.common.web.http.HttpHeader;
 import de.bluecolored.bluemap.common.web.http.HttpRequest;
 import de.bluecolored.bluemap.common.web.http.HttpRequestHandler;
 import de.bluecolored.bluemap.common.web.http.HttpResponse;
@@ -36,59 +37,90 @@
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-@RequiredArgsConstructor
 @Getter @Setter
 public class MapStorageRequestHandler implements HttpRequestHandler {
 
-    private static final Pattern TILE_PATTERN = Pattern.compile("tiles/([\\d/]+)/x(-?[\\d/]+)z(-?[\\d/]+).*");
-
     private @NonNull MapStorage mapStorage;
+    private @Nullable TileResponseCache tileCache;
+    private @Nullable TileExistenceIndex tileIndex;
+
+    public MapStorageRequestHandler(@NonNull MapStorage mapStorage) {
+        this(mapStorage, null, null);
+    }
+
+    public MapStorageRequestHandler(
+            @NonNull MapStorage mapStorage,
+            @Nullable TileResponseCache tileCache,
+            @Nullable TileExistenceIndex tileIndex
+    ) {
+        this.mapStorage = mapStorage;
+        this.tileCache = tileCache;
+        this.tileIndex = tileIndex;
+    }
 
     @SuppressWarnings("resource")
     @Override
     public HttpResponse handle(HttpRequest request) {
         String path = request.getPath();
 
-        //normalize path
-        if (path.startsWith("/")) path = path.substring(1);
-        if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
-
         try {
 
             // provide map-tiles
-            Matcher tileMatcher = TILE_PATTERN.matcher(path);
-            if (tileMatcher.matches()) {
-                int lod = Integer.parseInt(tileMatcher.group(1));
-                int x = Integer.parseInt(tileMatcher.group(2).replace("/", ""));
-                int z = Integer.parseInt(tileMatcher.group(3).replace("/", ""));
+            TilePosition tilePosition = parseTilePath(path);
+            if (tilePosition != null) {
+                int lod = tilePosition.lod();
+                int x = tilePosition.x();
+                int z = tilePosition.z();
+
+                TileExistenceIndex tileIndex = this.tileIndex;
+                if (tileIndex != null && !tileIndex.mayExist(mapStorage, lod, x, z))
+                    return new HttpResponse(HttpStatusCode.NO_CONTENT);
+
+                TileResponseCache tileCache = this.tileCache;
+                if (tileCache != null) {
+                    TileResponseCache.CachedTile tile = tileCache.get(mapStorage, lod, x, z);
+                    if (tile == null) return new HttpResponse(HttpStatusCode.NO_CONTENT);
+
+                    HttpResponse response = createTileResponse(lod);
+                    if (checkNotModified(tile.lastModified(), tile.eTag(), response, request)) {
+                        response.setStatusCode(HttpStatusCode.NOT_MODIFIED);
+                        return response;
+                    }
+
+                    if (shouldTranscodeToGzip(tile.compression(), response, request))
+                        tile = tileCache.getGzipTranscoded(mapStorage, lod, x, z, tile);
+
+                    writeToResponse(tile, response, request);
+                    return response;
+                }
 
                 GridStorage gridStorage = lod == 0 ? mapStorage.hiresTiles() : mapStorage.lowresTiles(lod);
                 CompressedInputStream in = gridStorage.read(x, z);
                 if (in == null) return new HttpResponse(HttpStatusCode.NO_CONTENT);
 
-                HttpResponse response = new HttpResponse(HttpStatusCode.OK);
-                response.addHeader("Cache-Control", "public");
-                response.addHeader("Cache-Control", "max-age=" + TimeUnit.DAYS.toSeconds(1));
-
-                if (lod == 0) response.addHeader("Content-Type", "application/octet-stream");
-                else response.addHeader("Content-Type", "image/png");
-
+                HttpResponse response = createTileResponse(lod);
+                if (checkNotModified(in, response, request)) return response;
                 writeToResponse(in, response, request);
                 return response;
             }
 
+            //normalize path
+            if (path.startsWith("/")) path = path.substring(1);
+            if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+
             // provide meta-data
             CompressedInputStream in = switch (path) {
                 case "settings.json" -> mapStorage.settings().read();
@@ -102,6 +134,7 @@ public HttpResponse handle(HttpRequest request) {
                 response.addHeader("Cache-Control", "public");
                 response.addHeader("Cache-Control", "max-age=" + TimeUnit.DAYS.toSeconds(1));
                 response.addHeader("Content-Type", ContentTypeRegistry.fromFileName(path));
+                if (checkNotModified(in, response, request)) return response;
                 writeToResponse(in, response, request);
                 return response;
             }
@@ -115,29 +148,178 @@ public HttpResponse handle(HttpRequest request) {
         return new HttpResponse(HttpStatusCode.NOT_FOUND);
     }
 
+    /**
+     * Parses the lod and tile-coordinates of a tile-path like <code>tiles/1/x-1/2/z3/4.png</code>
+     * without using regular expressions or creating any intermediate strings.
+     * @return the parsed {@link TilePosition}, or null if the path is not a (valid) tile-path
+     */
+    static @Nullable TilePosition parseTilePath(String path) {
+        int i = path.startsWith("/") ? 1 : 0;
+        if (!path.startsWith("tiles/", i)) return null;
+        i += 6;
+
+        // lod
+        int lodStart = i;
+        long lod = 0;
+        for (; i < path.length() && isDigit(path.charAt(i)); i++) {
+            lod = lod * 10 + path.charAt(i) - '0';
+            if (lod > Integer.MAX_VALUE) return null; // overflow
+        }
+        if (i == lodStart || !path.startsWith("/x", i)) return null;
+        i += 2;
+
+        // x
+        long x = 0;
+        boolean negative = i < path.length() && path.charAt(i) == '-';
+        if (negative) i++;
+        int digitCount = 0;
+        for (; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/') continue;
+            if (!isDigit(c)) break;
+            x = x * 10 + c - '0';
+            if (x > 1L << 31) return null; // overflow
+            digitCount++;
+        }
+        if (digitCount == 0 || i == path.length() || path.charAt(i) != 'z') return null;
+        if (negative) x = -x;
+        if (x > Integer.MAX_VALUE) return null;
+        i++;
+
+        // z (anything after the digits is ignored, e.g. the file-extension)
+        long z = 0;
+        negative = i < path.length() && path.charAt(i) == '-';
+        if (negative) i++;
+        digitCount = 0;
+        for (; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/') continue;
+            if (!isDigit(c)) break;
+            z = z * 10 + c - '0';
+            if (z > 1L << 31) return null; // overflow
+            digitCount++;
+        }
+        if (digitCount == 0) return null;
+        if (negative) z = -z;
+        if (z > Integer.MAX_VALUE) return null;
+
+        return new TilePosition((int) lod, (int) x, (int) z);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    record TilePosition (int lod, int x, int z) {}
+
+    private HttpResponse createTileResponse(int lod) {
+        HttpResponse response = new HttpResponse(HttpStatusCode.OK);
+        response.addHeader("Cache-Control", "public");
+        response.addHeader("Cache-Control", "max-age=" + TimeUnit.DAYS.toSeconds(1));
+
+        if (lod == 0) response.addHeader("Content-Type", "application/octet-stream");
+        else response.addHeader("Content-Type", "image/png");
+
+        return response;
+    }
+
+    /**
+     * Like {@link #checkNotModified(long, String, HttpResponse, HttpRequest)}, but also sets the status of the response
+     * to {@link HttpStatusCode#NOT_MODIFIED} and closes the data if the client already has the current version of it.
+     */
+    private boolean checkNotModified(CompressedInputStream data, HttpResponse response, HttpRequest request) throws IOException {
+        if (!checkNotModified(data.getLastModified(), data.getETag(), response, request)) return false;
+        data.close();
+        response.setStatusCode(HttpStatusCode.NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Adds the ETag and Last-Modified headers of the data to the response, and checks them against the
+     * If-None-Match and If-Modified-Since headers of the request.
+     * @return true if the client already has the current version of the data
+     */
+    private boolean checkNotModified(long lastModified, @Nullable String eTag, HttpResponse response, HttpRequest request) {
+        // the tag is weak since the same data might be sent with different content-encodings
+        if (eTag != null) response.addHeader("ETag", "W/\"" + eTag + "\"");
+        if (lastModified > 0) response.addHeader("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant
+                .ofEpochMilli(lastModified)
+                .atOffset(ZoneOffset.UTC)
+        ));
+
+        // If-None-Match takes precedence over If-Modified-Since
+        HttpHeader noneMatchHeader = request.getHeader("If-None-Match");
+        if (noneMatchHeader != null) {
+            if (eTag == null) return false;
+            for (String tag : noneMatchHeader.getValues()) {
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals("\"" + eTag + "\"")) return true;
+            }
+            return false;
+        }
+
+        HttpHeader modHeader = request.getHeader("If-Modified-Since");
+        if (modHeader != null && lastModified > 0) {
+            try {
+                long since = Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(modHeader.getValue())).toEpochMilli();
+                return since + 1000 > lastModified; // the header only has a precision of seconds
+            } catch (DateTimeParseException ignored) {}
+        }
+
+        return false;
+    }
+
+    private void writeToResponse(TileResponseCache.CachedTile tile, HttpResponse response, HttpRequest request) throws IOException {
+        Compression compression = tile.compression();
+        if (Compression.NONE.equals(compression)) {
+            response.setData(tile.data());
+        } else if (request.hasHeaderValue("Accept-Encoding", compression.getId())) {
+            response.addHeader("Content-Encoding", compression.getId());
+            response.setData(tile.data());
+        } else {
+            response.setData(compression.decompress(new ByteArrayInputStream(tile.data())));
+        }
+    }
+
     private void writeToResponse(CompressedInputStream data, HttpResponse response, HttpRequest request) throws IOException {
         Compression compression = data.getCompression();
         if (
-                compression != Compression.NONE &&
+                !Compression.NONE.equals(compression) &&
                 request.hasHeaderValue("Accept-Encoding", compression.getId())
         ) {
             response.addHeader("Content-Encoding", compression.getId());
-            response.setData(data);
-        } else if (
-                compression != Compression.GZIP &&
-                !response.hasHeaderValue("Content-Type", "image/png") &&
-                request.hasHeaderValue("Accept-Encoding", Compression.GZIP.getId())
-        ) {
+            setRawData(data, response);
+        } else if (shouldTranscodeToGzip(compression, response, request)) {
             response.addHeader("Content-Encoding", Compression.GZIP.getId());
-            ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-            try (data; OutputStream os = Compression.GZIP.compress(byteOut)) {
-                data.decompress().transferTo(os);
-            }
-            byte[] compressedData = byteOut.toByteArray();
-            response.setData(new ByteArrayInputStream(compressedData));
+            response.setData(TileResponseCache.transcodeToGzip(data));
+        } else if (Compression.NONE.equals(compression)) {
+            setRawData(data, response);
         } else {
             response.setData(data.decompress());
         }
     }
 
+    /**
+     * Checks if the data needs to be re-compressed with gzip, because the client does not accept the data's compression
+     * but accepts gzip
+     */
+    private boolean shouldTranscodeToGzip(Compression compression, HttpResponse response, HttpRequest request) {
+        if (Compression.GZIP.equals(compression)) return false;
+        if (!Compression.NONE.equals(compression) && request.hasHeaderValue("Accept-Encoding", compression.getId()))
+            return false;
+        return
+                !response.hasHeaderValue("Content-Type", "image/png") &&
+                request.hasHeaderValue("Accept-Encoding", Compression.GZIP.getId());
+    }
+
+    /**
+     * Sets the data to the response without decompressing it.
+     * If the data comes directly from a file, it will be transferred from the file without copying.
+     */
+    private void setRawData(CompressedInputStream data, HttpResponse response) throws IOException {
+        FileChannel fileChannel = data.getFileChannel();
+        if (fileChannel != null) response.setData(fileChannel);
+        else response.setData(data);
+    }
+
 }
@@ -28,24 +28,47 @@
 import de.bluecolored.bluemap.common.web.http.HttpRequestHandler;
 import de.bluecolored.bluemap.common.web.http.HttpResponse;
 import de.bluecolored.bluemap.common.web.http.HttpStatusCode;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import org.intellij.lang.annotations.Language;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Passes requests on to other handlers based on the path of the request.<br>
+ * Routes with a literal prefix or path are looked up in a prefix-trie, without evaluating any regular expressions.
+ * Routes with a regular expression are only evaluated if they have been registered after the best matching literal
+ * route.<br>
+ * If multiple routes match a path, the route that has been registered last is used.
+ */
 @Getter
 public class RoutingRequestHandler implements HttpRequestHandler {
 
     private final Deque<Route> routes;
 
+    @Getter(AccessLevel.NONE)
+    private final List<LiteralRoute> literalRoutes;
+
+    @Getter(AccessLevel.NONE)
+    private volatile TrieNode trie;
+
+    @Getter(AccessLevel.NONE)
+    private int routeCount;
+
     public RoutingRequestHandler() {
         this.routes = new ConcurrentLinkedDeque<>();
+        this.literalRoutes = new ArrayList<>();
+        this.trie = new TrieNode();
+        this.routeCount = 0;
     }
 
     public void register(@Language("RegExp") String pattern, HttpRequestHandler handler) {
@@ -57,11 +80,45 @@ public void register(@Language("RegExp") String pattern, String replacementRoute
     }
 
     public void register(Pattern pattern, HttpRequestHandler handler) {
-        this.routes.addFirst(new Route(pattern, handler));
+        register(pattern, "$0", handler);
+    }
+
+    public synchronized void register(Pattern pattern, String replacementRoute, HttpRequestHandler handler) {
+        Route route = new Route(pattern, replacementRoute, handler);
+        route.order = routeCount++;
+        this.routes.addFirst(route);
+    }
+
+    /**
+     * Registers a route for all paths starting with the given prefix.
+     * The prefix is removed from the path before the request is passed on to the handler.
+     */
+    public synchronized void registerPrefix(String prefix, HttpRequestHandler handler) {
+        registerLiteral(new LiteralRoute(prefix, true, null, handler, routeCount++));
     }
 
-    public void register(Pattern pattern, String replacementRoute, HttpRequestHandler handler) {
-        this.routes.addFirst(new Route(pattern, replacementRoute, handler));
+    /**
+     * Registers a route for exactly the given path.
+     * The path is replaced with the replacementRoute before the request is passed on to the handler.
+     */
+    public synchronized void registerExact(String path, String replacementRoute, HttpRequestHandler handler) {
+        registerLiteral(new LiteralRoute(path, false, replacementRoute, handler, routeCount++));
+    }
+
+    private void registerLiteral(LiteralRoute route) {
+        literalRoutes.add(route);
+
+        // rebuild the trie, so it never changes while requests are using it
+        TrieNode trie = new TrieNode();
+        for (LiteralRoute literalRoute : literalRoutes) {
+            TrieNode node = trie;
+            for (int i = 0; i < literalRoute.path.length(); i++)
+                node = node.getOrCreateChild(literalRoute.path.charAt(i));
+
+            if (literalRoute.prefix) node.prefixRoute = literalRoute;
+            else node.exactRoute = literalRoute;
+        }
+        this.trie = trie;
     }
 
     @Override
@@ -69,21 +126,54 @@ public HttpResponse handle(HttpRequest request) {
         String path = request.getPath();
 
         // normalize path
-        if (path.startsWith("/")) path = path.substring(1);
-        if (path.isEmpty()) path = "/";
+        int start = path.startsWith("/") ? 1 : 0;
+        if (start == path.length()) {
+            path = "/";
+            start = 0;
+        }
+
+        // find the latest registered literal route matching the path
+        LiteralRoute literalRoute = null;
+        int literalEnd = start;
+        TrieNode node = trie;
+        for (int i = start;; i++) {
+            if (node.prefixRoute != null && (literalRoute == null || node.prefixRoute.order > literalRoute.order)) {
+                literalRoute = node.prefixRoute;
+                literalEnd = i;
+            }
 
+            if (i == path.length()) {
+                if (node.exactRoute != null && (literalRoute == null || node.exactRoute.order > literalRoute.order))
+                    literalRoute = node.exactRoute;
+                break;
+            }
+
+            node = node.getChild(path.charAt(i));
+            if (node == null) break;
+        }
+
+        // try all regex-routes that have been registered after that literal route
+        int minOrder = literalRoute != null ? literalRoute.order : -1;
+        String normalizedPath = null;
         for (Route route : routes) {
-            Matcher matcher = route.getRoutePattern().matcher(path);
+            if (route.order < minOrder) break; // routes are sorted from the latest to the earliest registered route
+            if (normalizedPath == null) normalizedPath = path.substring(start);
+
+            Matcher matcher = route.getRoutePattern().matcher(normalizedPath);
             if (matcher.matches()) {
                 request.setPath(matcher.replaceFirst(route.getReplacementRoute()));
                 return route.getHandler().handle(request);
             }
         }
 
+        if (literalRoute != null) {
+            request.setPath(literalRoute.prefix ? path.substring(literalEnd) : literalRoute.replacementRoute);
+            return literalRoute.handler.handle(request);
+        }
+
         return new HttpResponse(HttpStatusCode.BAD_REQUEST);
     }
 
-    @AllArgsConstructor
     @Getter @Setter
     public static class Route {
 
@@ -91,12 +181,70 @@ public static class Route {
         private @NonNull String replacementRoute;
         private @NonNull HttpRequestHandler handler;
 
+        @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+        private int order;
+
         public Route(@NonNull Pattern routePattern, @NonNull HttpRequestHandler handler) {
+            this(routePattern, "$0", handler);
+        }
+
+        public Route(@NonNull Pattern routePattern, @NonNull String replacementRoute, @NonNull HttpRequestHandler handler) {
             this.routePattern = routePattern;
-            this.replacementRoute = "$0";
+            this.replacementRoute = replacementRoute;
             this.handler = handler;
         }
 
     }
 
+    /**
+     * @param path the literal prefix or path of the route
+     * @param prefix true if the route matches all paths starting with the path, false if it only matches the exact path
+     * @param replacementRoute the path that is passed on to the handler for exact routes
+     * @param order the order in which the routes have been registered
+     */
+    private record LiteralRoute (
+            String path,
+            boolean prefix,
+            @Nullable String replacementRoute,
+            HttpRequestHandler handler,
+            int order
+    ) {}
+
+    /**
+     * A node of the prefix-trie, the children are stored in arrays sorted by their character
+     */
+    private static class TrieNode {
+
+        private char[] keys = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        private @Nullable LiteralRoute prefixRoute;
+        private @Nullable LiteralRoute exactRoute;
+
+        @Nullable TrieNode getChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        TrieNode getOrCreateChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) return children[index];
+
+            index = -index - 1;
+            char[] keys = new char[this.keys.length + 1];
+            TrieNode[] children = new TrieNode[this.children.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.keys, index, keys, index + 1, this.keys.length - index);
+            System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+
+            TrieNode child = new TrieNode();
+            keys[index] = c;
+            children[index] = child;
+            this.keys = keys;
+            this.children = children;
+            return child;
+        }
+
+    }
+
 }
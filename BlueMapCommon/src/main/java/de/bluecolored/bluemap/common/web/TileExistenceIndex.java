@@ -0,0 +1,199 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.MapStorage;
+import de.bluecolored.bluemap.core.storage.TileChangeListener;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory index of the tiles that exist in a {@link MapStorage}, used to answer requests for tiles that do not
+ * exist without accessing the storage.<br>
+ * The index of a lod is built in the background (using {@link GridStorage#stream()}) when a tile of that lod is
+ * requested the first time, until then all tiles are assumed to possibly exist. If building the index fails, it is
+ * retried on a later request (with an increasing delay). While and after building, the index is kept up to date by
+ * listening to the tile-changes of the {@link MapStorage}.<br>
+ * <b>Changes to the tiles that are not made through the same {@link MapStorage} instance (e.g. by another process)
+ * are not noticed, so the index should only be used if all tiles are written by this process!</b>
+ */
+public class TileExistenceIndex {
+
+    private final Map<MapStorage, StorageIndex> storageIndices = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Checks if the tile might exist in the storage.
+     * @return false if the tile is known to not exist, true if it exists or if this is not known (yet)
+     */
+    public boolean mayExist(MapStorage mapStorage, int lod, int x, int z) {
+        StorageIndex storageIndex = storageIndices.get(mapStorage);
+        if (storageIndex == null) storageIndex = register(mapStorage);
+
+        LodIndex lodIndex = storageIndex.lods.get(lod);
+        if (lodIndex == null) lodIndex = storageIndex.createLodIndex(lod);
+        if (!lodIndex.isReady() && lodIndex.needsBuild()) storageIndex.build(mapStorage, lod, lodIndex);
+
+        return !lodIndex.isReady() || lodIndex.get(x, z);
+    }
+
+    private StorageIndex register(MapStorage mapStorage) {
+        synchronized (storageIndices) {
+            StorageIndex storageIndex = storageIndices.get(mapStorage);
+            if (storageIndex != null) return storageIndex;
+
+            // the index must not hold a reference to the storage, or the storage would never be removed from the map
+            storageIndex = new StorageIndex();
+            storageIndices.put(mapStorage, storageIndex);
+            mapStorage.addTileChangeListener(storageIndex);
+            return storageIndex;
+        }
+    }
+
+    private static class StorageIndex implements TileChangeListener {
+
+        private final Map<Integer, LodIndex> lods = new ConcurrentHashMap<>();
+
+        LodIndex createLodIndex(int lod) {
+            LodIndex lodIndex = new LodIndex();
+            LodIndex existing = lods.putIfAbsent(lod, lodIndex);
+            return existing != null ? existing : lodIndex;
+        }
+
+        void build(MapStorage mapStorage, int lod, LodIndex lodIndex) {
+            if (!lodIndex.startBuild()) return;
+
+            // the index is registered before the tiles are listed, so no change during the build can be missed
+            GridStorage gridStorage = lod == 0 ? mapStorage.hiresTiles() : mapStorage.lowresTiles(lod);
+            BlueMap.THREAD_POOL.execute(() -> {
+                try (Stream<GridStorage.Cell> cells = gridStorage.stream()) {
+                    cells.forEach(cell -> lodIndex.set(cell.getX(), cell.getZ()));
+                    lodIndex.buildCompleted();
+                } catch (IOException | RuntimeException ex) {
+                    long retryDelay = lodIndex.buildFailed();
+                    Logger.global.logWarning("Failed to build the tile-index for lod " + lod +
+                            " (retrying in " + retryDelay / 1000 + "s): " + ex);
+                }
+            });
+        }
+
+        @Override
+        public void tileChanged(int lod, int x, int z) {
+            // a change might also be a deletion, but marking a deleted tile as existing is harmless
+            LodIndex lodIndex = lods.get(lod);
+            if (lodIndex != null) lodIndex.set(x, z);
+        }
+
+        @Override
+        public void allTilesChanged() {
+            // drop all indices, they will be rebuilt once they are needed again
+            lods.clear();
+        }
+
+    }
+
+    /**
+     * A sparse bitmap of the existing tiles of one lod.<br>
+     * Like a roaring-bitmap, the grid is split into blocks of 64x64 tiles and only blocks containing at least one tile
+     * are allocated, each being a dense bitmap with one long per tile-row.
+     */
+    private static class LodIndex {
+
+        private static final int BLOCK_SHIFT = 6;
+        private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+        private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+        private static final long MIN_RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+        private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+        private final Map<Long, AtomicLongArray> blocks = new ConcurrentHashMap<>();
+        private volatile boolean ready = false;
+
+        // guarded by this
+        private boolean building = false;
+        private long retryDelay = MIN_RETRY_DELAY;
+        private long retryTime = 0;
+
+        boolean isReady() {
+            return ready;
+        }
+
+        synchronized boolean needsBuild() {
+            return !ready && !building && System.currentTimeMillis() >= retryTime;
+        }
+
+        /**
+         * @return false if the index is already built or being built
+         */
+        synchronized boolean startBuild() {
+            if (!needsBuild()) return false;
+            building = true;
+            return true;
+        }
+
+        synchronized void buildCompleted() {
+            building = false;
+            ready = true;
+        }
+
+        /**
+         * Schedules the next build-attempt, each failed attempt doubles the delay until the next one
+         * @return the delay in milliseconds until the build is retried
+         */
+        synchronized long buildFailed() {
+            long delay = retryDelay;
+            building = false;
+            retryTime = System.currentTimeMillis() + delay;
+            retryDelay = Math.min(delay * 2, MAX_RETRY_DELAY);
+            return delay;
+        }
+
+        boolean get(int x, int z) {
+            AtomicLongArray block = blocks.get(blockKey(x, z));
+            if (block == null) return false;
+            return (block.get(z & BLOCK_MASK) & 1L << (x & BLOCK_MASK)) != 0;
+        }
+
+        void set(int x, int z) {
+            AtomicLongArray block = blocks.computeIfAbsent(blockKey(x, z), k -> new AtomicLongArray(BLOCK_SIZE));
+            block.accumulateAndGet(z & BLOCK_MASK, 1L << (x & BLOCK_MASK), (a, b) -> a | b);
+        }
+
+        private static long blockKey(int x, int z) {
+            return (long) (x >> BLOCK_SHIFT) << 32 | (z >> BLOCK_SHIFT) & 0xFFFFFFFFL;
+        }
+
+    }
+
+}
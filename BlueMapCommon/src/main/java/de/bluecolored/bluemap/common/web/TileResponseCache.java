@@ -0,0 +1,211 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.MapStorage;
+import de.bluecolored.bluemap.core.storage.TileChangeListener;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache holding the (still compressed) data of frequently requested map-tiles, ready to be sent as a response.<br>
+ * The size of the cache is limited by the total amount of cached bytes, and the cache-policy considers the
+ * access-frequency of the tiles, so a few very popular tiles stay cached even if many other tiles are requested.<br>
+ * Tiles that need to be re-compressed with gzip for clients not accepting the tiles original compression are also
+ * cached in their re-compressed form, so the same tile never needs to be re-compressed twice.<br>
+ * Writes and deletes through a registered {@link MapStorage} invalidate the cached tiles. Since other processes might
+ * also change the tiles, cached tiles additionally expire after a short while.
+ */
+public class TileResponseCache {
+
+    private final Cache<TileKey, CachedTile> cache;
+    private final Set<MapStorage> registeredStorages;
+
+    /**
+     * @param maxBytes the maximum number of bytes cached in total
+     */
+    public TileResponseCache(long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .executor(BlueMap.THREAD_POOL)
+                .maximumWeight(maxBytes)
+                .weigher((TileKey key, CachedTile tile) -> tile.data().length)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        this.registeredStorages = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    }
+
+    /**
+     * Returns the data of the tile, loading it from the map-storage if it is not cached.
+     * @return the cached tile, or null if the tile does not exist
+     */
+    public @Nullable CachedTile get(MapStorage mapStorage, int lod, int x, int z) throws IOException {
+        register(mapStorage);
+        try {
+            return cache.get(new TileKey(mapStorage, lod, x, z, false), this::load);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Returns the data of the tile re-compressed with gzip, re-compressing it only if it is not cached yet.
+     * @param tile the current (cached) data of the tile, as returned by {@link #get(MapStorage, int, int, int)}
+     */
+    public CachedTile getGzipTranscoded(MapStorage mapStorage, int lod, int x, int z, CachedTile tile) throws IOException {
+        if (Compression.GZIP.equals(tile.compression())) return tile;
+
+        TileKey key = new TileKey(mapStorage, lod, x, z, true);
+        CachedTile transcoded;
+        try {
+            transcoded = cache.get(key, k -> {
+                try {
+                    CompressedInputStream in = new CompressedInputStream(new ByteArrayInputStream(tile.data()), tile.compression());
+                    return new CachedTile(transcodeToGzip(in), Compression.GZIP, tile.lastModified(), tile.eTag());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        // the tile might have changed while we were transcoding it
+        if (cache.getIfPresent(new TileKey(mapStorage, lod, x, z, false)) != tile)
+            cache.invalidate(key);
+
+        return transcoded;
+    }
+
+    /**
+     * Decompresses the data and compresses it again using gzip
+     */
+    static byte[] transcodeToGzip(CompressedInputStream data) throws IOException {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        try (data; OutputStream os = Compression.GZIP.compress(byteOut)) {
+            data.decompress().transferTo(os);
+        }
+        return byteOut.toByteArray();
+    }
+
+    private @Nullable CachedTile load(TileKey key) {
+        GridStorage gridStorage = key.lod() == 0 ? key.storage().hiresTiles() : key.storage().lowresTiles(key.lod());
+        try (CompressedInputStream in = gridStorage.read(key.x(), key.z())) {
+            if (in == null) return null;
+            byte[] data = in.readAllBytes();
+            String eTag = in.getETag();
+            if (eTag == null) eTag = CompressedInputStream.contentTag(data);
+            return new CachedTile(data, in.getCompression(), in.getLastModified(), eTag);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void register(MapStorage mapStorage) {
+        if (registeredStorages.add(mapStorage))
+            mapStorage.addTileChangeListener(new InvalidatingListener(mapStorage));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Returns the number of cached tiles
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Returns the total number of bytes currently cached
+     */
+    public long getByteSize() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    /**
+     * The cached data of a tile
+     * @param data the tile-data, compressed with the given compression
+     * @param compression the compression of the data
+     * @param lastModified the time the tile has last been modified in milliseconds since the epoch, or -1 if unknown
+     * @param eTag a tag identifying this version of the tile (the same for the original and the re-compressed data)
+     */
+    public record CachedTile (byte[] data, Compression compression, long lastModified, String eTag) {}
+
+    /**
+     * @param gzipTranscoded whether the key is for the data re-compressed with gzip, instead of the original data
+     */
+    private record TileKey (MapStorage storage, int lod, int x, int z, boolean gzipTranscoded) {}
+
+    @RequiredArgsConstructor
+    private class InvalidatingListener implements TileChangeListener {
+
+        private final MapStorage mapStorage;
+
+        @Override
+        public void tileChanged(int lod, int x, int z) {
+            cache.invalidate(new TileKey(mapStorage, lod, x, z, false));
+            cache.invalidate(new TileKey(mapStorage, lod, x, z, true));
+        }
+
+        @Override
+        public void allTilesChanged() {
+            cache.asMap().keySet().removeIf(key -> key.storage() == mapStorage);
+        }
+
+    }
+
+}
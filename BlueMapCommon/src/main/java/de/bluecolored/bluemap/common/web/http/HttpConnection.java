@@ -30,6 +30,7 @@
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Channel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -43,7 +44,7 @@ public class HttpConnection implements SelectionConsumer {
     private final Executor responseHandlerExecutor;
     private HttpRequest request;
     private CompletableFuture<HttpResponse> futureResponse;
-    private HttpResponse response;
+    private volatile HttpResponse response;
 
     public HttpConnection(HttpRequestHandler requestHandler) {
         this(requestHandler, Runnable::run); //run synchronously
@@ -83,6 +84,10 @@ public void accept(SelectionKey selectionKey) {
 
             // process request
             if (futureResponse == null) {
+                // don't select this connection until the response is ready
+                selectionKey.interestOps(0);
+
+                final HttpRequest request = this.request;
                 futureResponse = CompletableFuture.supplyAsync(
                         () -> requestHandler.handle(request),
                         responseHandlerExecutor
@@ -93,22 +98,46 @@ public void accept(SelectionKey selectionKey) {
                         response = new HttpResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
                     }
 
-                    try {
-                        response.read(channel); // do an initial read to trigger response sending intent
-                        this.response = response;
-                    } catch (IOException e) {
-                        handleIOException(channel, e);
+                    // hand the response back to the selector-thread, which does the actual sending
+                    this.response = response;
+
+                    // wake up the connection whenever a streamed response has new data
+                    StreamingChannel streamingData = response.getStreamingData();
+                    if (streamingData != null) {
+                        final HttpResponse streamedResponse = response;
+                        streamingData.setDataAvailableListener(() -> {
+                            if (!selectionKey.isValid()) {
+                                // the connection has been closed, so nobody is going to read the stream anymore
+                                closeResponse(streamedResponse);
+                                return;
+                            }
+                            wakeup(selectionKey);
+                        });
                     }
 
+                    wakeup(selectionKey);
                     return null;
                 });
             }
 
+            HttpResponse response = this.response;
             if (response == null) return;
             if (!selectionKey.isValid()) return;
 
             // send response
             if (!response.read(channel)){
+                if (response.isWaitingForData()) {
+                    // don't select this connection until the streamed response has new data
+                    selectionKey.interestOps(0);
+
+                    // data might have become available before the interest was removed
+                    StreamingChannel streamingData = response.getStreamingData();
+                    if (streamingData != null && streamingData.isDataAvailable())
+                        selectionKey.interestOps(SelectionKey.OP_WRITE);
+
+                    return;
+                }
+
                 selectionKey.interestOps(SelectionKey.OP_WRITE);
                 return;
             }
@@ -117,7 +146,7 @@ public void accept(SelectionKey selectionKey) {
             request.clear();
             response.close();
             futureResponse = null;
-            response = null;
+            this.response = null;
             selectionKey.interestOps(SelectionKey.OP_READ);
 
         } catch (IOException e) {
@@ -129,22 +158,12 @@ private void handleIOException(Channel channel, IOException e) {
         request.clear();
 
         if (response != null) {
-            try {
-                response.close();
-            } catch (IOException e2) {
-                Logger.global.logWarning("Failed to close response: " + e2);
-            }
+            closeResponse(response);
             response = null;
         }
 
         if (futureResponse != null) {
-            futureResponse.thenAccept(response -> {
-                try {
-                    response.close();
-                } catch (IOException e2) {
-                    Logger.global.logWarning("Failed to close response: " + e2);
-                }
-            });
+            futureResponse.thenAccept(HttpConnection::closeResponse);
             futureResponse = null;
         }
 
@@ -156,4 +175,24 @@ private void handleIOException(Channel channel, IOException e) {
         }
     }
 
+    private static void closeResponse(HttpResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            Logger.global.logWarning("Failed to close response: " + e);
+        }
+    }
+
+    /**
+     * Makes the selector-thread select this connection for writing
+     */
+    private static void wakeup(SelectionKey selectionKey) {
+        try {
+            if (selectionKey.isValid()) {
+                selectionKey.interestOps(SelectionKey.OP_WRITE);
+                selectionKey.selector().wakeup();
+            }
+        } catch (CancelledKeyException ignore) {}
+    }
+
 }
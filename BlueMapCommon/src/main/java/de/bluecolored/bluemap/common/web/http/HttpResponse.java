@@ -24,9 +24,12 @@
  */
 package de.bluecolored.bluemap.common.web.http;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
@@ -42,6 +45,7 @@ public class HttpResponse implements Closeable {
     private HttpStatusCode statusCode;
     private final Map<String, HttpHeader> headers;
     private ReadableByteChannel data;
+    private long dataLength = -1;
 
     private ByteBuffer headerData;
     private ByteBuffer dataBuffer;
@@ -49,6 +53,7 @@ public class HttpResponse implements Closeable {
     private boolean headerComplete = false;
     private boolean dataChannelComplete = false;
     private boolean dataComplete = false;
+    private boolean waitingForData = false;
 
     public HttpResponse(HttpStatusCode statusCode) {
         this.version = "HTTP/1.1";
@@ -77,7 +82,15 @@ public synchronized boolean read(WritableByteChannel channel) throws IOException
             return true;
         }
 
+        // send data with known length
+        if (dataLength >= 0) {
+            if (!readSized(channel)) return false;
+            complete = true;
+            return true;
+        }
+
         // send data chunked
+        waitingForData = false;
         if (dataBuffer == null) dataBuffer = ByteBuffer.allocate(1024 + 200).flip(); // 200 extra bytes
         while (true) {
             if (dataBuffer.hasRemaining()) channel.write(dataBuffer);
@@ -94,11 +107,19 @@ public synchronized boolean read(WritableByteChannel channel) throws IOException
                 int read = 0;
                 while (dataBuffer.hasRemaining() && (read = data.read(dataBuffer)) != -1) {
                     readTotal += read;
+                    if (read == 0 && data instanceof StreamingChannel) break; // no more data available right now
                 }
 
                 if (read == -1) dataChannelComplete = true;
             }
 
+            if (readTotal == 0 && !dataChannelComplete && data instanceof StreamingChannel) {
+                // wait for more data to become available
+                dataBuffer.limit(0);
+                waitingForData = true;
+                return false;
+            }
+
             if (readTotal == 0) dataComplete = true;
 
             byte[] chunkPrefix = (Integer.toHexString(readTotal) + "\r\n")
@@ -118,10 +139,48 @@ public synchronized boolean read(WritableByteChannel channel) throws IOException
         return true;
     }
 
+    private boolean readSized(WritableByteChannel channel) throws IOException {
+
+        // transfer directly from the file to the channel, without copying the data through a buffer
+        if (data instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel) data;
+            while (dataLength > 0) {
+                long position = fileChannel.position();
+                long transferred = fileChannel.transferTo(position, dataLength, channel);
+                if (transferred <= 0) {
+                    if (position >= fileChannel.size())
+                        throw new EOFException("File ended before all announced data has been sent");
+                    return false;
+                }
+
+                fileChannel.position(position + transferred);
+                dataLength -= transferred;
+            }
+            return true;
+        }
+
+        if (dataBuffer == null) dataBuffer = ByteBuffer.allocate(8192).flip();
+        while (true) {
+            if (dataBuffer.hasRemaining()) channel.write(dataBuffer);
+            if (dataBuffer.hasRemaining()) return false;
+            if (dataLength <= 0) return true;
+
+            // fill data buffer from channel
+            dataBuffer.clear();
+            if (dataBuffer.remaining() > dataLength) dataBuffer.limit((int) dataLength);
+            int read = data.read(dataBuffer);
+            if (read == -1) throw new EOFException("Data ended before all announced data has been sent");
+            dataLength -= read;
+            dataBuffer.flip();
+        }
+    }
+
     private void writeHeaderData() {
         ByteArrayOutputStream headerDataOut = new ByteArrayOutputStream();
 
-        if (hasData()){
+        if (hasData() && dataLength >= 0) {
+            headers.put("Content-Length", new HttpHeader("Content-Length", Long.toString(dataLength)));
+        } else if (hasData()){
             headers.put("Transfer-Encoding", new HttpHeader("Transfer-Encoding", "chunked"));
         } else {
             headers.put("Content-Length", new HttpHeader("Content-Length", "0"));
@@ -154,20 +213,57 @@ public void addHeader(String key, String value){
 
     public void setData(ReadableByteChannel channel){
         this.data = channel;
+        this.dataLength = -1;
+    }
+
+    /**
+     * Sets the data of this response to the given channel, with a known length.
+     * The response will be sent with a Content-Length header instead of using chunked transfer-encoding.
+     */
+    public void setData(ReadableByteChannel channel, long length){
+        this.data = channel;
+        this.dataLength = length;
+    }
+
+    /**
+     * Sets the data of this response to the remaining content of the given file-channel.
+     * The data will be transferred directly from the file to the connection.
+     */
+    public void setData(FileChannel channel) throws IOException {
+        setData(channel, Math.max(channel.size() - channel.position(), 0));
     }
 
     public void setData(InputStream dataStream){
-        this.data = Channels.newChannel(dataStream);
+        setData(Channels.newChannel(dataStream));
+    }
+
+    public void setData(byte[] data){
+        setData(Channels.newChannel(new ByteArrayInputStream(data)), data.length);
     }
 
     public void setData(String data){
-        setData(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+        setData(data.getBytes(StandardCharsets.UTF_8));
     }
 
     public boolean hasData() {
         return this.data != null;
     }
 
+    /**
+     * Returns the data of this response if it is a {@link StreamingChannel}, otherwise null
+     */
+    public @Nullable StreamingChannel getStreamingData() {
+        return data instanceof StreamingChannel ? (StreamingChannel) data : null;
+    }
+
+    /**
+     * Checks if the last {@link #read(WritableByteChannel)} stopped because the {@link StreamingChannel} of this
+     * response had no more data available (instead of the target-channel not accepting any more data)
+     */
+    public synchronized boolean isWaitingForData() {
+        return waitingForData;
+    }
+
     public boolean isComplete() {
         return complete;
     }
@@ -24,23 +24,83 @@
  */
 package de.bluecolored.bluemap.common.web.http;
 
+import de.bluecolored.bluemap.core.logger.Logger;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class HttpServer extends Server {
 
     @Getter @Setter
     private HttpRequestHandler requestHandler;
 
+    private final ExecutorService requestHandlerExecutor;
+
     public HttpServer(HttpRequestHandler requestHandler) throws IOException {
+        this(requestHandler, 0);
+    }
+
+    /**
+     * @param workerThreads the number of threads handling requests,
+     *                      or 0 to use virtual threads if available (or one thread per available core otherwise)
+     */
+    public HttpServer(HttpRequestHandler requestHandler, int workerThreads) throws IOException {
+        this(requestHandler, workerThreads, 1);
+    }
+
+    /**
+     * @param workerThreads the number of threads handling requests,
+     *                      or 0 to use virtual threads if available (or one thread per available core otherwise)
+     * @param ioThreads the number of threads reading requests and sending responses,
+     *                  or 0 to use one thread per available core
+     */
+    public HttpServer(HttpRequestHandler requestHandler, int workerThreads, int ioThreads) throws IOException {
+        super(ioThreads);
         this.requestHandler = requestHandler;
+        this.requestHandlerExecutor = createWorkerExecutor(workerThreads);
     }
 
     @Override
     public SelectionConsumer createConnectionHandler() {
-        return new HttpConnection(requestHandler);
+        return new HttpConnection(requestHandler, requestHandlerExecutor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            requestHandlerExecutor.shutdown();
+        }
+    }
+
+    private static ExecutorService createWorkerExecutor(int workerThreads) {
+        if (workerThreads <= 0) {
+            try {
+                // virtual threads are only available on java 21+
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                Logger.global.logDebug("Virtual threads are not available, using a thread-pool for the webserver: " + ex);
+            }
+
+            workerThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "BlueMap-WebServer-Worker-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return Executors.newFixedThreadPool(workerThreads, threadFactory);
     }
 
 }
@@ -0,0 +1,110 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web.http;
+
+import de.bluecolored.bluemap.core.logger.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * An I/O thread with its own {@link Selector}, handling all reads and writes of the connections registered to it.<br>
+ * Connections are only ever selected by the reactor they have been registered to,
+ * so the state of a connection is confined to that reactor's thread.
+ */
+class Reactor extends Thread implements Closeable {
+
+    private final Selector selector;
+    private final Supplier<SelectionConsumer> connectionHandlerFactory;
+    private final Queue<SocketChannel> pendingChannels;
+
+    public Reactor(String name, Supplier<SelectionConsumer> connectionHandlerFactory) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.connectionHandlerFactory = connectionHandlerFactory;
+        this.pendingChannels = new ConcurrentLinkedQueue<>();
+        this.setDaemon(true);
+    }
+
+    /**
+     * Hands an accepted channel over to this reactor.
+     * The channel will be registered by the reactor-thread itself on its next iteration.
+     */
+    public void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (this.selector.isOpen()) {
+            try {
+                registerPendingChannels();
+                this.selector.select(this::selection);
+            } catch (IOException e) {
+                Logger.global.logDebug("Failed to select channel: " + e);
+            } catch (ClosedSelectorException ignore) {}
+        }
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+
+                // responses are written in multiple parts (header and data), don't delay them
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, connectionHandlerFactory.get());
+            } catch (IOException e) {
+                Logger.global.logDebug("Failed to register connection: " + e);
+                try {
+                    channel.close();
+                } catch (IOException e2) {
+                    Logger.global.logWarning("Failed to close channel" + e2);
+                }
+            }
+        }
+    }
+
+    private void selection(SelectionKey selectionKey) {
+        Object attachment = selectionKey.attachment();
+        if (attachment instanceof SelectionConsumer) {
+            ((SelectionConsumer) attachment).accept(selectionKey);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.selector.close();
+        this.selector.wakeup();
+    }
+
+}
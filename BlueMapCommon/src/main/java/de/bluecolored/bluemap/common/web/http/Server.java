@@ -39,10 +39,26 @@ public abstract class Server extends Thread implements Closeable, Runnable {
 
     private final Selector selector;
     private final Collection<ServerSocketChannel> server;
+    private final Reactor[] reactors;
+    private int nextReactor;
 
     public Server() throws IOException {
+        this(1);
+    }
+
+    /**
+     * @param ioThreads the number of I/O threads (each with their own selector) that the accepted connections are
+     *                  spread over, or 0 to use one thread per available processor-core
+     */
+    public Server(int ioThreads) throws IOException {
+        if (ioThreads <= 0) ioThreads = Runtime.getRuntime().availableProcessors();
+
         this.selector = Selector.open();
         this.server = new ArrayList<>();
+        this.reactors = new Reactor[ioThreads];
+        for (int i = 0; i < ioThreads; i++)
+            this.reactors[i] = new Reactor("BlueMap-WebServer-IO-" + i, this::createConnectionHandler);
+        this.nextReactor = 0;
     }
 
     public abstract SelectionConsumer createConnectionHandler();
@@ -72,6 +88,9 @@ private boolean checkIfBoundToAllInterfaces(SocketAddress address) {
 
     @Override
     public void run() {
+        for (Reactor reactor : reactors)
+            reactor.start();
+
         Logger.global.logInfo("WebServer started.");
         while (this.selector.isOpen()) {
             try {
@@ -95,8 +114,10 @@ private void accept(SelectionKey selectionKey) {
             ServerSocketChannel serverSocketChannel = (ServerSocketChannel) selectionKey.channel();
             SocketChannel channel = serverSocketChannel.accept();
             if (channel == null) return;
-            channel.configureBlocking(false);
-            channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, createConnectionHandler());
+
+            // spread the connections round-robin over all reactors
+            reactors[nextReactor].register(channel);
+            nextReactor = (nextReactor + 1) % reactors.length;
         } catch (IOException e) {
             Logger.global.logDebug("Failed to accept connection: " + e);
         }
@@ -113,6 +134,15 @@ public void close() throws IOException {
             exception = ex;
         }
 
+        for (Reactor reactor : this.reactors) {
+            try {
+                reactor.close();
+            } catch (IOException ex) {
+                if (exception == null) exception = ex;
+                else exception.addSuppressed(ex);
+            }
+        }
+
         for (ServerSocketChannel server : this.server) {
             try {
                 server.close();
@@ -0,0 +1,103 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.rendermanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static de.bluecolored.bluemap.common.rendermanager.StreamingRegionRenderTask.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingRegionRenderTaskTest {
+
+    @Test
+    public void testSpiralKeyRoundTrip() {
+        for (int x = -50; x <= 50; x++) {
+            for (int z = -50; z <= 50; z++) {
+                long key = spiralKey(x, z);
+                assertEquals(x, spiralX(key), "x of " + x + ", " + z);
+                assertEquals(z, spiralZ(key), "z of " + x + ", " + z);
+            }
+        }
+    }
+
+    @Test
+    public void testSpiralKeyCenter() {
+        assertEquals(0, spiralKey(0, 0));
+        assertEquals(0, spiralX(0));
+        assertEquals(0, spiralZ(0));
+    }
+
+    @Test
+    public void testSpiralKeyRing() {
+        int ring = 7;
+        Set<Integer> indices = new HashSet<>();
+        for (int x = -ring; x <= ring; x++) {
+            for (int z = -ring; z <= ring; z++) {
+                if (Math.max(Math.abs(x), Math.abs(z)) != ring) continue;
+                long key = spiralKey(x, z);
+                assertEquals(ring, (int) (key >>> 32));
+
+                int index = (int) key;
+                assertTrue(index >= 0 && index < 8 * ring, "index " + index + " out of range");
+                assertTrue(indices.add(index), "duplicate index " + index);
+            }
+        }
+        assertEquals(8 * ring, indices.size());
+    }
+
+    @Test
+    public void testSpiralKeyOrder() {
+        int radius = 20;
+        int size = 2 * radius + 1;
+        long[] keys = new long[size * size];
+        int i = 0;
+        for (int x = -radius; x <= radius; x++) {
+            for (int z = -radius; z <= radius; z++) {
+                keys[i++] = spiralKey(x, z);
+            }
+        }
+        Arrays.sort(keys);
+
+        // sorted keys walk the positions as a continuous spiral, ordered by their distance to the center
+        for (i = 1; i < keys.length; i++) {
+            int lastX = spiralX(keys[i - 1]), lastZ = spiralZ(keys[i - 1]);
+            int x = spiralX(keys[i]), z = spiralZ(keys[i]);
+
+            assertTrue(
+                    Math.max(Math.abs(x), Math.abs(z)) >= Math.max(Math.abs(lastX), Math.abs(lastZ)),
+                    "position " + x + ", " + z + " is closer to the center than its predecessor"
+            );
+            assertTrue(
+                    Math.abs(x - lastX) <= 1 && Math.abs(z - lastZ) <= 1,
+                    "position " + x + ", " + z + " is not next to " + lastX + ", " + lastZ
+            );
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import de.bluecolored.bluemap.common.web.MapStorageRequestHandler.TilePosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapStorageRequestHandlerTest {
+
+    // the regex-based tile-path parsing that parseTilePath has replaced, used as the reference
+    private static final Pattern TILE_PATTERN = Pattern.compile("tiles/([\\d/]+)/x(-?[\\d/]+)z(-?[\\d/]+).*");
+
+    private static final String[] TILE_PATHS = {
+            // plain
+            "tiles/0/x0z0", "/tiles/0/x0z0", "tiles/0/x12z-7", "tiles/3/x-1z-1", "/tiles/1/x-25z48/",
+            // extensions and trailing text
+            "tiles/0/x1z2.prbm", "tiles/1/x1z2.png", "tiles/0/x1z2.prbm.gz", "tiles/0/x1z2abc", "tiles/0/x1z2/",
+            // slashes between digits
+            "tiles/0/x1/2/3z4/5/6", "tiles/0/x-1/2z-3/4.prbm", "tiles/0/x/1z/2", "tiles/0/x1/z2", "tiles/0/x1z2/3/",
+            "tiles/1/2/x3z4", "tiles/0/x-/1z2", "tiles/0/x/z/", "tiles/0//x1z2", "tiles//0/x1z2",
+            // integer limits
+            "tiles/0/x2147483647z-2147483648", "tiles/0/x2147483648z0", "tiles/0/x0z2147483648",
+            "tiles/0/x-2147483648z0", "tiles/0/x-2147483649z0", "tiles/0/x0z-2147483649",
+            "tiles/2147483647/x0z0", "tiles/2147483648/x0z0", "tiles/0/x00000000000000000001z0",
+            "tiles/0/x99999999999999999999z0", "tiles/0/x21474836/47z0",
+            // missing or invalid parts
+            "tiles/0/x1", "tiles/0/x1z", "tiles/0/x1z-", "tiles/0/xz1", "tiles/0/x-z1", "tiles/0/1z2", "tiles/x1z2",
+            "tiles//x1z2", "tiles/0/y1z2", "tiles/0/x1y2", "tiles/0/x+1z2", "tiles/0/x--1z2", "tiles/-1/x1z2",
+            "tile/0/x1z2", "tiles0/x1z2", "/", "", "tiles/", "tiles/0", "tiles/0/", "tiles/0/x",
+            "settings.json", "assets/tiles/0/x1z2", "//tiles/0/x1z2", "tiles/0/x1z2?x=1", "tiles/\u0663/x1z2"
+    };
+
+    @Test
+    public void testParseTilePath() {
+        assertEquals(new TilePosition(0, 0, 0), MapStorageRequestHandler.parseTilePath("tiles/0/x0z0"));
+        assertEquals(new TilePosition(3, -12, 45), MapStorageRequestHandler.parseTilePath("/tiles/3/x-12z45.png"));
+        assertEquals(new TilePosition(0, 123, -456), MapStorageRequestHandler.parseTilePath("tiles/0/x1/2/3z-4/5/6.prbm"));
+        assertEquals(new TilePosition(0, Integer.MIN_VALUE, Integer.MAX_VALUE),
+                MapStorageRequestHandler.parseTilePath("tiles/0/x-2147483648z2147483647"));
+        assertNull(MapStorageRequestHandler.parseTilePath("tiles/0/x2147483648z0"));
+        assertNull(MapStorageRequestHandler.parseTilePath("tiles/0/x1.prbm"));
+    }
+
+    @Test
+    public void testParseTilePathMatchesRegex() {
+        for (String path : TILE_PATHS) {
+            assertEquals(parseWithRegex(path), MapStorageRequestHandler.parseTilePath(path), path);
+        }
+    }
+
+    @Test
+    public void testParseTilePathMatchesRegexFuzzed() {
+        char[] alphabet = "0123456789/-xz.".toCharArray();
+        Random random = new Random(42);
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            path.setLength(0);
+            path.append(random.nextBoolean() ? "tiles/" : "/tiles/");
+            int length = random.nextInt(24);
+            for (int j = 0; j < length; j++)
+                path.append(alphabet[random.nextInt(alphabet.length)]);
+
+            String p = path.toString();
+            assertEquals(parseWithRegex(p), MapStorageRequestHandler.parseTilePath(p), p);
+        }
+    }
+
+    private static TilePosition parseWithRegex(String path) {
+        if (path.startsWith("/")) path = path.substring(1);
+        if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+
+        Matcher matcher = TILE_PATTERN.matcher(path);
+        if (!matcher.matches()) return null;
+
+        try {
+            return new TilePosition(
+                    Integer.parseInt(matcher.group(1)),
+                    Integer.parseInt(matcher.group(2).replace("/", "")),
+                    Integer.parseInt(matcher.group(3).replace("/", ""))
+            );
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+}
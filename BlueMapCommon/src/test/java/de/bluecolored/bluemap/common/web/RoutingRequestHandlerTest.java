@@ -0,0 +1,142 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web;
+
+import de.bluecolored.bluemap.common.web.http.HttpRequest;
+import de.bluecolored.bluemap.common.web.http.HttpRequestHandler;
+import de.bluecolored.bluemap.common.web.http.HttpResponse;
+import de.bluecolored.bluemap.common.web.http.HttpStatusCode;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingRequestHandlerTest {
+
+    @Test
+    public void testPrefixRoute() {
+        RoutingRequestHandler router = new RoutingRequestHandler();
+        router.registerPrefix("maps/world/", handler("world"));
+
+        assertEquals("world:tiles/0/x1z2", route(router, "/maps/world/tiles/0/x1z2"));
+        assertEquals("world:tiles/0/x1z2", route(router, "maps/world/tiles/0/x1z2"));
+        assertEquals("world:", route(router, "/maps/world/"));
+        assertNull(route(router, "/maps/world"));
+        assertNull(route(router, "/maps/other/tiles/0/x1z2"));
+    }
+
+    @Test
+    public void testExactRoute() {
+        RoutingRequestHandler router = new RoutingRequestHandler();
+        router.registerExact("live/players.json", "", handler("players"));
+
+        assertEquals("players:", route(router, "/live/players.json"));
+        assertNull(route(router, "/live/players.jsonx"));
+        assertNull(route(router, "/live/players"));
+    }
+
+    @Test
+    public void testRootPath() {
+        RoutingRequestHandler router = new RoutingRequestHandler();
+        router.registerPrefix("", handler("root"));
+
+        assertEquals("root:/", route(router, "/"));
+        assertEquals("root:/", route(router, ""));
+        assertEquals("root:index.html", route(router, "/index.html"));
+    }
+
+    @Test
+    public void testLatestLiteralRouteWins() {
+        RoutingRequestHandler router = new RoutingRequestHandler();
+        router.registerPrefix("", handler("root"));
+        router.registerPrefix("maps/world/", handler("world"));
+
+        // a longer prefix that has been registered later wins
+        assertEquals("world:settings.json", route(router, "/maps/world/settings.json"));
+        assertEquals("root:maps/other/settings.json", route(router, "/maps/other/settings.json"));
+
+        // an exact route registered after the prefix wins
+        router.registerExact("maps/world/live/players.json", "", handler("players"));
+        assertEquals("players:", route(router, "/maps/world/live/players.json"));
+        assertEquals("world:live/markers.json", route(router, "/maps/world/live/markers.json"));
+
+        // a shorter prefix that has been registered later wins as well
+        router.registerPrefix("maps/", handler("maps"));
+        assertEquals("maps:world/live/players.json", route(router, "/maps/world/live/players.json"));
+        assertEquals("root:index.html", route(router, "/index.html"));
+    }
+
+    @Test
+    public void testRegexRouteAfterPrefixRoute() {
+        RoutingRequestHandler router = new RoutingRequestHandler();
+        router.registerPrefix("maps/", handler("maps"));
+        router.register("maps/([^/]+)/live/.*", "$1", handler("live"));
+
+        assertEquals("live:world", route(router, "/maps/world/live/players.json"));
+        assertEquals("maps:world/tiles/0/x1z2", route(router, "/maps/world/tiles/0/x1z2"));
+    }
+
+    @Test
+    public void testRegexRouteBeforePrefixRoute() {
+        RoutingRequestHandler router = new RoutingRequestHandler();
+        router.register("maps/([^/]+)/live/.*", "$1", handler("live"));
+        router.registerPrefix("maps/", handler("maps"));
+
+        // the prefix-route has been registered later, so the regex is not even evaluated
+        assertEquals("maps:world/live/players.json", route(router, "/maps/world/live/players.json"));
+
+        // but it is still used for paths that the prefix-route does not match
+        router.registerPrefix("other/", handler("other"));
+        assertEquals("other:x", route(router, "/other/x"));
+    }
+
+    @Test
+    public void testNoRoute() {
+        RoutingRequestHandler router = new RoutingRequestHandler();
+        HttpRequest request = new HttpRequest(InetAddress.getLoopbackAddress());
+        request.setPath("/anything");
+        assertEquals(HttpStatusCode.BAD_REQUEST, router.handle(request).getStatusCode());
+    }
+
+    /**
+     * Routes the path and returns the name of the handler and the path it received, or null if no route matched
+     */
+    private static String route(RoutingRequestHandler router, String path) {
+        HttpRequest request = new HttpRequest(InetAddress.getLoopbackAddress());
+        request.setPath(path);
+        HttpResponse response = router.handle(request);
+        if (response.getStatusCode() == HttpStatusCode.BAD_REQUEST) return null;
+        return response.getStatusCode() == HttpStatusCode.OK ? request.getPath() : null;
+    }
+
+    private static HttpRequestHandler handler(String name) {
+        return request -> {
+            request.setPath(name + ":" + request.getPath());
+            return new HttpResponse(HttpStatusCode.OK);
+        };
+    }
+
+}
@@ -55,6 +55,8 @@ export class BlueMapApp {
         this.playerMarkerManager = null;
         /** @type {NormalMarkerManager} */
         this.markerFileManager = null;
+        /** @type {EventSource} */
+        this.liveEvents = null;
 
         /** @type {{
          *      version: string,
@@ -251,6 +253,7 @@ export class BlueMapApp {
         let map = this.mapsMap.get(mapId);
         if (!map) return Promise.reject(`There is no map with the id "${mapId}" loaded!`);
 
+        if (this.liveEvents) this.liveEvents.close();
         if (this.playerMarkerManager) this.playerMarkerManager.dispose();
         if (this.markerFileManager) this.markerFileManager.dispose();
 
@@ -265,6 +268,8 @@ export class BlueMapApp {
             this.initPlayerMarkerManager(),
             this.initMarkerFileManager()
         ]);
+
+        this.initLiveEvents();
     }
 
     resetCamera() {
@@ -437,6 +442,43 @@ export class BlueMapApp {
             });
     }
 
+    /**
+     * Subscribes to the live-events of the current map, so the player- and marker-updates are pushed by the server
+     * instead of being polled. If the server does not support live-events, the marker-managers keep polling.
+     */
+    initLiveEvents() {
+        if (this.liveEvents) this.liveEvents.close();
+        this.liveEvents = null;
+
+        const map = this.mapViewer.map;
+        if (!map || typeof EventSource === "undefined") return;
+
+        const playerMarkerManager = this.playerMarkerManager;
+        const markerFileManager = this.markerFileManager;
+        const isActive = manager => manager && !manager.disposed;
+
+        const liveEvents = new EventSource(map.data.liveDataRoot + "/live/events");
+        liveEvents.addEventListener("open", () => {
+            if (isActive(playerMarkerManager)) playerMarkerManager.setAutoUpdateInterval(0);
+            if (isActive(markerFileManager)) markerFileManager.setAutoUpdateInterval(0);
+        });
+        liveEvents.addEventListener("players", event => {
+            if (isActive(playerMarkerManager)) playerMarkerManager.updateFromData(JSON.parse(event.data));
+        });
+        liveEvents.addEventListener("markers", event => {
+            if (isActive(markerFileManager)) markerFileManager.updateFromData(JSON.parse(event.data));
+        });
+        liveEvents.addEventListener("error", () => {
+            // not supported or the connection has been lost, fall back to polling
+            liveEvents.close();
+            if (this.liveEvents === liveEvents) this.liveEvents = null;
+            if (isActive(playerMarkerManager)) playerMarkerManager.setAutoUpdateInterval(1000);
+            if (isActive(markerFileManager)) markerFileManager.setAutoUpdateInterval(1000 * 10);
+        });
+
+        this.liveEvents = liveEvents;
+    }
+
     updateControlsSettings() {
         let mouseInvert = this.appState.controls.invertMouse ? -1 : 1;
 
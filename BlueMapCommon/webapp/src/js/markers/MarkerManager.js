@@ -47,6 +47,9 @@ export class MarkerManager {
 
         /** @type {NodeJS.Timeout} */
         this._updateInterval = null;
+
+        // changes with every call to setAutoUpdateInterval, so updates that are still running can tell they are outdated
+        this._autoUpdateId = 0;
     }
 
     /**
@@ -56,11 +59,17 @@ export class MarkerManager {
      */
     setAutoUpdateInterval(ms) {
         if (this._updateInterval) clearTimeout(this._updateInterval);
+        this._updateInterval = null;
+
+        const autoUpdateId = ++this._autoUpdateId;
         if (ms > 0) {
             let autoUpdate = () => {
-                if (this.disposed) return;
+                if (this.disposed || this._autoUpdateId !== autoUpdateId) return;
                 this.update()
                     .then(success => {
+                        // the interval has been changed (or auto-updates disabled) while this update was running
+                        if (this._autoUpdateId !== autoUpdateId) return;
+
                         if (success) {
                             this._updateInterval = setTimeout(autoUpdate, ms);
                         } else {
@@ -69,6 +78,7 @@ export class MarkerManager {
                     })
                     .catch(e => {
                         alert(this.events, e, "warning");
+                        if (this._autoUpdateId !== autoUpdateId) return;
                         this._updateInterval = setTimeout(autoUpdate, Math.max(ms, 1000 * 15));
                     });
             };
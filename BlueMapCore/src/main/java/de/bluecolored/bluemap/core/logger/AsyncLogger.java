@@ -0,0 +1,218 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.logger;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A logger that passes all messages to a delegate-logger on a separate thread, so logging never blocks the calling
+ * thread, even if the delegate is slow (e.g. a slow disk or console).<br>
+ * The messages are buffered in a bounded ring-buffer and passed to the delegate in batches. If the buffer is full,
+ * new messages are dropped and counted instead. The number of dropped messages is logged to the delegate once it
+ * caught up again.
+ */
+public class AsyncLogger extends AbstractLogger {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger(0);
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final byte ERROR = 0, WARNING = 1, INFO = 2, DEBUG = 3;
+
+    private static final Logger FALLBACK_LOGGER = Logger.stdOut();
+
+    private final Logger delegate;
+
+    // ring-buffer, guarded by this
+    private final byte[] levels;
+    private final String[] messages;
+    private final Throwable[] throwables;
+    private int head = 0, size = 0;
+    private boolean closed = false;
+
+    private final LongAdder droppedCount = new LongAdder();
+    private long reportedDroppedCount = 0;
+
+    private final Thread thread;
+
+    public AsyncLogger(Logger delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of messages that are buffered
+     */
+    public AsyncLogger(Logger delegate, int capacity) {
+        this.delegate = delegate;
+
+        this.levels = new byte[capacity];
+        this.messages = new String[capacity];
+        this.throwables = new Throwable[capacity];
+
+        this.thread = new Thread(this::run, "BlueMap-AsyncLogger-" + THREAD_INDEX.getAndIncrement());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void logError(String message, Throwable throwable) {
+        offer(ERROR, message, throwable);
+    }
+
+    @Override
+    public void logWarning(String message) {
+        offer(WARNING, message, null);
+    }
+
+    @Override
+    public void logInfo(String message) {
+        offer(INFO, message, null);
+    }
+
+    @Override
+    public void logDebug(String message) {
+        offer(DEBUG, message, null);
+    }
+
+    /**
+     * Returns the total number of messages that have been dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private void offer(byte level, String message, @Nullable Throwable throwable) {
+        synchronized (this) {
+            if (!closed) {
+                if (size == levels.length) {
+                    droppedCount.increment();
+                    return;
+                }
+
+                int index = (head + size) % levels.length;
+                levels[index] = level;
+                messages[index] = message;
+                throwables[index] = throwable;
+                if (size++ == 0) notifyAll();
+                return;
+            }
+        }
+
+        // already closed, log synchronously
+        log(level, message, throwable);
+    }
+
+    private void run() {
+        byte[] batchLevels = new byte[levels.length];
+        String[] batchMessages = new String[levels.length];
+        Throwable[] batchThrowables = new Throwable[levels.length];
+
+        while (true) {
+            int batchSize;
+            synchronized (this) {
+                while (size == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (size == 0) return; // closed and everything is logged
+
+                // take all buffered messages at once
+                batchSize = size;
+                for (int i = 0; i < batchSize; i++) {
+                    int index = (head + i) % levels.length;
+                    batchLevels[i] = levels[index];
+                    batchMessages[i] = messages[index];
+                    batchThrowables[i] = throwables[index];
+                    messages[index] = null;
+                    throwables[index] = null;
+                }
+                head = (head + batchSize) % levels.length;
+                size = 0;
+            }
+
+            for (int i = 0; i < batchSize; i++) {
+                log(batchLevels[i], batchMessages[i], batchThrowables[i]);
+                batchMessages[i] = null;
+                batchThrowables[i] = null;
+            }
+
+            long dropped = droppedCount.sum();
+            if (dropped > reportedDroppedCount) {
+                delegate.logWarning((dropped - reportedDroppedCount) + " log-messages have been dropped, " +
+                        "because they could not be logged fast enough!");
+                reportedDroppedCount = dropped;
+            }
+        }
+    }
+
+    private void log(byte level, String message, @Nullable Throwable throwable) {
+        try {
+            switch (level) {
+                case ERROR -> delegate.logError(message, throwable);
+                case WARNING -> delegate.logWarning(message);
+                case INFO -> delegate.logInfo(message);
+                case DEBUG -> delegate.logDebug(message);
+            }
+        } catch (RuntimeException ex) {
+            // never let a failing delegate kill the logger-thread
+            reportFailure(ex);
+        }
+    }
+
+    /**
+     * Reports an exception of the delegate to the global logger, or to stdout if the delegate is the global logger
+     */
+    private void reportFailure(RuntimeException ex) {
+        Logger fallback = delegate != Logger.global ? Logger.global : FALLBACK_LOGGER;
+        try {
+            fallback.logError("Failed to pass a log-message to the delegate-logger!", ex);
+        } catch (RuntimeException ignore) {}
+    }
+
+    /**
+     * Logs all remaining messages and closes the delegate-logger.
+     */
+    @Override
+    public void close() throws Exception {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        thread.join(CLOSE_TIMEOUT_MILLIS);
+        delegate.close();
+    }
+
+}
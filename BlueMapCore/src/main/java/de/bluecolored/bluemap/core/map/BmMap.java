@@ -34,6 +34,7 @@
 import de.bluecolored.bluemap.core.map.hires.HiresModelManager;
 import de.bluecolored.bluemap.core.map.lowres.LowresTileManager;
 import de.bluecolored.bluemap.core.map.renderstate.MapChunkState;
+import de.bluecolored.bluemap.core.map.renderstate.MapRegionState;
 import de.bluecolored.bluemap.core.map.renderstate.MapTileState;
 import de.bluecolored.bluemap.core.resources.adapter.ResourcesGson;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
@@ -73,6 +74,7 @@ public class BmMap {
 
     private final MapTileState mapTileState;
     private final MapChunkState mapChunkState;
+    private final MapRegionState mapRegionState;
 
     private final HiresModelManager hiresModelManager;
     private final LowresTileManager lowresTileManager;
@@ -93,9 +95,17 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
         this.resourcePack = Objects.requireNonNull(resourcePack);
         this.mapSettings = Objects.requireNonNull(settings);
 
+        if (settings.isContentChangeDetection())
+            world.enableChunkContentHashing();
+
         Logger.global.logDebug("Loading render-state for map '" + id + "'");
-        this.mapTileState = new MapTileState(storage.tileState());
-        this.mapChunkState = new MapChunkState(storage.chunkState());
+        this.mapTileState = new MapTileState(storage.tileState(), settings.getRenderStateCacheSize());
+        this.mapChunkState = new MapChunkState(storage.chunkState(), settings.getRenderStateCacheSize());
+        this.mapRegionState = new MapRegionState(storage.regionState(), Objects.hash(
+                settings.getMinPos(),
+                settings.getMaxPos(),
+                settings.getHiresTileSize()
+        ));
 
         if (Thread.interrupted()) throw new InterruptedException();
 
@@ -131,11 +141,27 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
     }
 
     public void renderTile(Vector2i tile) {
+        renderTile(tile, false);
+    }
+
+    /**
+     * Renders the tile.
+     * @param force if true, the tile is saved and propagated to the lowres-layers even if its content did not change
+     *              (e.g. because the stored tile might be missing or outdated)
+     */
+    public void renderTile(Vector2i tile, boolean force) {
         if (!tileFilter.test(tile)) return;
 
         long start = System.nanoTime();
 
-        hiresModelManager.render(world, tile, lowresTileManager, mapSettings.isSaveHiresLayer());
+        // tiles that render to the same content as before are neither saved nor propagated to the lowres-layers,
+        // tiles that failed to save return a content-hash of 0 and are saved again on their next render
+        long previousContentHash = force ? 0 : mapTileState.getContentHash(tile.getX(), tile.getY());
+        long contentHash = hiresModelManager.render(
+                world, tile, lowresTileManager, mapSettings.isSaveHiresLayer(),
+                previousContentHash
+        );
+        mapTileState.setContentHash(tile.getX(), tile.getY(), contentHash);
 
         long end = System.nanoTime();
         long delta = end - start;
@@ -146,6 +172,7 @@ public void renderTile(Vector2i tile) {
 
     public void unrenderTile(Vector2i tile) {
         hiresModelManager.unrender(tile, lowresTileManager);
+        mapTileState.setContentHash(tile.getX(), tile.getY(), 0);
     }
 
     public synchronized boolean save(long minTimeSinceLastSave) {
@@ -159,8 +186,13 @@ public synchronized boolean save(long minTimeSinceLastSave) {
 
     public synchronized void save() {
         lowresTileManager.save();
+
+        // persist the tiles before the render-state that references them
+        flushStorage();
+
         mapTileState.save();
         mapChunkState.save();
+        mapRegionState.save();
         saveMarkerState();
         savePlayerState();
         saveMapSettings();
@@ -173,9 +205,20 @@ public synchronized void save() {
             Logger.global.logError("Failed to read texture gallery for map '" + getId() + "'!", e);
         }
 
+        // wait for any writes the storage might have queued up
+        flushStorage();
+
         lastSaveTime = System.currentTimeMillis();
     }
 
+    private void flushStorage() {
+        try {
+            storage.flush();
+        } catch (IOException e) {
+            Logger.global.logError("Failed to flush pending writes for map '" + getId() + "'!", e);
+        }
+    }
+
     private TextureGallery loadTextureGallery() throws IOException {
         try (CompressedInputStream in = storage.textures().read()){
             if (in != null)
@@ -60,6 +60,10 @@ public interface MapSettings extends RenderSettings {
 
     boolean isEnableHires();
 
+    boolean isContentChangeDetection();
+
+    int getRenderStateCacheSize();
+
     @Override
     default boolean isSaveHiresLayer() {
         return isEnableHires();
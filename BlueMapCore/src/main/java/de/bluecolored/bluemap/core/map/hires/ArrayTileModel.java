@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.map.hires;
 
 import com.flowpowered.math.TrigMath;
+import de.bluecolored.bluemap.core.util.Hash64;
 import de.bluecolored.bluemap.core.util.InstancePool;
 import de.bluecolored.bluemap.core.util.MergeSort;
 import de.bluecolored.bluemap.core.util.math.MatrixM3f;
@@ -430,6 +431,22 @@ public void sort() {
         }
     }
 
+    /**
+     * Feeds all face-data of this model into the given hash
+     */
+    public void hash(Hash64 hash) {
+        hash.put(size);
+
+        int i, n;
+        for (i = 0, n = size * FI_POSITION; i < n; i++) hash.put(position[i]);
+        for (i = 0, n = size * FI_UV; i < n; i++) hash.put(uv[i]);
+        for (i = 0, n = size * FI_AO; i < n; i++) hash.put(ao[i]);
+        for (i = 0, n = size * FI_COLOR; i < n; i++) hash.put(color[i]);
+        for (i = 0, n = size * FI_SUNLIGHT; i < n; i++) hash.put(sunlight[i]);
+        for (i = 0, n = size * FI_BLOCKLIGHT; i < n; i++) hash.put(blocklight[i]);
+        for (i = 0, n = size * FI_MATERIAL_INDEX; i < n; i++) hash.put(materialIndex[i]);
+    }
+
     private int compareMaterialIndex(int i1, int i2) {
         return Integer.compare(materialIndex[i1], materialIndex[i2]);
     }
@@ -32,6 +32,7 @@
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.util.Grid;
+import de.bluecolored.bluemap.core.util.Hash64;
 import de.bluecolored.bluemap.core.util.math.Color;
 import de.bluecolored.bluemap.core.world.World;
 import lombok.Getter;
@@ -62,25 +63,50 @@ public HiresModelManager(GridStorage storage, HiresModelRenderer renderer, Grid
      * Renders the given world tile with the provided render-settings
      */
     public void render(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer, boolean save) {
+        render(world, tile, tileMetaConsumer, save, 0);
+    }
+
+    /**
+     * Renders the given world tile with the provided render-settings.<br>
+     * If the rendered tile has the same content-hash as the provided previous one, the tile is not saved and the
+     * tileMetaConsumer (lowres) is not updated, since nothing changed.
+     * @return the content-hash of the rendered tile, or 0 if the tile could not be saved
+     */
+    public long render(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer, boolean save, long previousContentHash) {
         Vector2i tileMin = tileGrid.getCellMin(tile);
         Vector2i tileMax = tileGrid.getCellMax(tile);
 
         Vector3i modelMin = new Vector3i(tileMin.getX(), Integer.MIN_VALUE, tileMin.getY());
         Vector3i modelMax = new Vector3i(tileMax.getX(), Integer.MAX_VALUE, tileMax.getY());
 
+        TileMetaBuffer tileMeta = new TileMetaBuffer(tileMin, tileGrid.getGridSize());
+        Hash64 hash = new Hash64().put(save);
+        boolean saved = true;
+
         if (save) {
             ArrayTileModel model = ArrayTileModel.instancePool().claimInstance();
 
-            renderer.render(world, modelMin, modelMax, model, tileMetaConsumer);
+            renderer.render(world, modelMin, modelMax, model, tileMeta);
 
             model.sort();
-            save(model, tile);
+            model.hash(hash);
+            tileMeta.hash(hash);
+
+            if (hash.get() != previousContentHash)
+                saved = save(model, tile);
 
             ArrayTileModel.instancePool().recycleInstance(model);
         } else {
-            renderer.render(world, modelMin, modelMax, VoidTileModel.INSTANCE, tileMetaConsumer);
+            renderer.render(world, modelMin, modelMax, VoidTileModel.INSTANCE, tileMeta);
+            tileMeta.hash(hash);
         }
 
+        long contentHash = hash.get();
+        if (contentHash != previousContentHash)
+            tileMeta.apply(tileMetaConsumer);
+
+        // a tile that failed to save has no valid content-hash, so it will be saved again on the next render
+        return saved ? contentHash : 0;
     }
 
     /**
@@ -100,15 +126,79 @@ public void unrender(Vector2i tile, TileMetaConsumer tileMetaConsumer) {
         );
     }
 
-    private void save(final ArrayTileModel model, Vector2i tile) {
+    /**
+     * Saves the model of a tile
+     * @return true if the model has been saved successfully
+     */
+    private boolean save(final ArrayTileModel model, Vector2i tile) {
         try (
                 OutputStream out = storage.write(tile.getX(), tile.getY());
                 PRBMWriter modelWriter = new PRBMWriter(out)
         ) {
             modelWriter.write(model);
+            return true;
         } catch (IOException e){
             Logger.global.logError("Failed to save hires model: " + tile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Buffers the tile-meta of a rendered tile, so it can be hashed and only be applied if the tile changed
+     */
+    private static class TileMetaBuffer implements TileMetaConsumer {
+
+        private final int minX, minZ, sizeX, sizeZ;
+        private final float[] colors;
+        private final int[] heights, blockLights;
+
+        public TileMetaBuffer(Vector2i min, Vector2i size) {
+            this.minX = min.getX();
+            this.minZ = min.getY();
+            this.sizeX = size.getX();
+            this.sizeZ = size.getY();
+
+            this.colors = new float[sizeX * sizeZ * 4];
+            this.heights = new int[sizeX * sizeZ];
+            this.blockLights = new int[sizeX * sizeZ];
+        }
+
+        @Override
+        public void set(int x, int z, Color color, int height, int blockLight) {
+            int index = (z - minZ) * sizeX + (x - minX);
+
+            color.straight();
+            colors[index * 4    ] = color.r;
+            colors[index * 4 + 1] = color.g;
+            colors[index * 4 + 2] = color.b;
+            colors[index * 4 + 3] = color.a;
+            heights[index] = height;
+            blockLights[index] = blockLight;
+        }
+
+        public void hash(Hash64 hash) {
+            for (float c : colors) hash.put(c);
+            for (int h : heights) hash.put(h);
+            for (int l : blockLights) hash.put(l);
         }
+
+        public void apply(TileMetaConsumer consumer) {
+            Color color = new Color();
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    int index = z * sizeX + x;
+                    color.set(
+                            colors[index * 4],
+                            colors[index * 4 + 1],
+                            colors[index * 4 + 2],
+                            colors[index * 4 + 3],
+                            false
+                    );
+                    consumer.set(minX + x, minZ + z, color, heights[index], blockLights[index]);
+                }
+            }
+        }
+
     }
 
 }
@@ -26,20 +26,35 @@
 
 import com.flowpowered.math.vector.Vector2i;
 import com.google.gson.reflect.TypeToken;
+import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.util.PalettedArrayAdapter;
 import de.bluecolored.bluemap.core.util.RegistryAdapter;
+import de.bluecolored.bluemap.core.util.stream.PooledByteArrayOutputStream;
 import de.bluecolored.bluenbt.BlueNBT;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.LinkedHashMap;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Caches render-state cells of a {@link GridStorage} in memory.<br>
+ * The cache is split into lock-stripes, so threads working on different cells rarely block each other.
+ * Every access to the data of a cell needs to happen while holding the lock of its stripe
+ * (see {@link #lock(int, int)}).<br>
+ * Modified cells that are evicted from the cache are saved asynchronously.
+ */
 abstract class CellStorage<T extends CellStorage.Cell> {
 
     private static final BlueNBT BLUE_NBT = new BlueNBT();
@@ -48,58 +63,110 @@
         BLUE_NBT.register(TypeToken.get(TileState[].class), new PalettedArrayAdapter<>(BLUE_NBT, TileState.class));
     }
 
-    private static final int CACHE_SIZE = 4;
+    public static final int DEFAULT_CACHE_SIZE = 32;
+    private static final int MAX_STRIPE_COUNT = 16;
+    private static final int MIN_STRIPE_CAPACITY = 8;
 
     @Getter private final GridStorage storage;
     private final Class<T> type;
-    private final LinkedHashMap<Vector2i, T> cells = new LinkedHashMap<>(
-            8,
-            0.75f,
-            true
-    ) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Vector2i, T> eldest) {
-            if (this.size() <= CACHE_SIZE) return false;
-            saveCell(eldest.getKey(), eldest.getValue());
-            return true;
-        }
-    };
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final Map<Long, PendingSave<T>> pendingSaves = new ConcurrentHashMap<>();
+    private volatile int generation = 0;
 
     public CellStorage(GridStorage storage, Class<T> type) {
+        this(storage, type, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the (approximate) maximum number of cells that are kept in memory
+     */
+    @SuppressWarnings("unchecked")
+    public CellStorage(GridStorage storage, Class<T> type, int cacheSize) {
         this.storage = storage;
         this.type = type;
+
+        // use fewer stripes for small caches, so each stripe can still hold enough cells to be useful as a cache
+        int stripeCount = Integer.highestOneBit(Math.max(Math.min(cacheSize / MIN_STRIPE_CAPACITY, MAX_STRIPE_COUNT), 1));
+        int stripeCapacity = Math.max((cacheSize + stripeCount - 1) / stripeCount, 1);
+        this.stripes = (Stripe[]) Array.newInstance(Stripe.class, stripeCount);
+        for (int i = 0; i < stripeCount; i++)
+            this.stripes[i] = new Stripe(stripeCapacity);
+        this.stripeMask = stripeCount - 1;
     }
 
-    public synchronized void save() {
-        cells.forEach(this::saveCell);
+    /**
+     * Saves all modified cells, including the ones that are currently being saved asynchronously.
+     */
+    public void save() {
+        List<Map.Entry<Long, T>> toSave = new ArrayList<>();
+        pendingSaves.forEach((key, pending) -> toSave.add(Map.entry(key, pending.cell)));
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.size; i++)
+                    toSave.add(Map.entry(stripe.keys[i], stripe.cells[i]));
+            }
+        }
+
+        for (Map.Entry<Long, T> entry : toSave)
+            saveCell(entry.getKey(), entry.getValue(), generation);
     }
 
-    public synchronized void reset() {
-        cells.clear();
+    /**
+     * Discards all cached cells without saving them.
+     */
+    public void reset() {
+        generation++;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        pendingSaves.clear();
     }
 
-    T cell(int x, int z) {
-        return cell(new Vector2i(x, z));
+    /**
+     * Returns the lock that needs to be held while accessing the cell at the given cell-position.
+     */
+    Object lock(int x, int z) {
+        return stripe(key(x, z));
     }
 
-    synchronized T cell(Vector2i pos) {
-        return cells.computeIfAbsent(pos, this::loadCell);
+    /**
+     * Returns the cell at the given cell-position, loading it if necessary.<br>
+     * <b>The lock of the cell ({@link #lock(int, int)}) must be held while calling this method and
+     * while accessing the returned cell.</b>
+     */
+    T cell(int x, int z) {
+        long key = key(x, z);
+        Stripe stripe = stripe(key);
+
+        T cell = stripe.get(key);
+        if (cell != null) return cell;
+
+        // a cell that is still being saved is not yet (fully) written to storage, so reuse it instead of loading it
+        PendingSave<T> pending = pendingSaves.get(key);
+        cell = pending != null ? pending.cell : loadCell(x, z);
+
+        stripe.put(key, cell);
+        return cell;
     }
 
-    private synchronized T loadCell(Vector2i pos) {
-        try (CompressedInputStream in = storage.read(pos.getX(), pos.getY())) {
+    private T loadCell(int x, int z) {
+        try (CompressedInputStream in = storage.read(x, z)) {
             if (in != null)
                 return BLUE_NBT.read(in.decompress(), type);
         } catch (IOException ex) {
-            Logger.global.logError("Failed to load render-state cell " + pos, ex);
+            Logger.global.logError("Failed to load render-state cell " + new Vector2i(x, z), ex);
         } catch (RuntimeException ex) { // E.g. NoSuchElementException thrown by BlueNBT if there is a format error
-            Logger.global.logError("Failed to load render-state cell " + pos, ex);
+            Logger.global.logError("Failed to load render-state cell " + new Vector2i(x, z), ex);
 
             // try to delete the possibly corrupted file for self-healing
             try {
-                storage.delete(pos.getX(), pos.getY());
+                storage.delete(x, z);
             } catch (IOException e) {
-                Logger.global.logError("Failed to delete render-state cell " + pos, e);
+                Logger.global.logError("Failed to delete render-state cell " + new Vector2i(x, z), e);
             }
         }
 
@@ -108,13 +175,124 @@ private synchronized T loadCell(Vector2i pos) {
 
     protected abstract T createNewCell();
 
-    private synchronized void saveCell(Vector2i pos, T cell) {
+    private void scheduleSave(long key, T cell) {
         if (!cell.isModified()) return;
-        try (OutputStream in = storage.write(pos.getX(), pos.getY())) {
-            BLUE_NBT.write(cell, in, type);
-        } catch (IOException ex) {
-            Logger.global.logError("Failed to save render-state cell " + pos, ex);
+
+        int generation = this.generation;
+        pendingSaves.compute(key, (k, pending) -> {
+            if (pending == null || pending.cell != cell) pending = new PendingSave<>(cell);
+            pending.count++;
+            return pending;
+        });
+
+        BlueMap.THREAD_POOL.execute(() -> {
+            try {
+                saveCell(key, cell, generation);
+            } finally {
+                pendingSaves.computeIfPresent(key, (k, pending) -> {
+                    if (pending.cell != cell) return pending;
+                    return --pending.count > 0 ? pending : null;
+                });
+            }
+        });
+    }
+
+    private void saveCell(long key, T cell, int generation) {
+        if (!cell.isModified()) return;
+
+        int x = (int) (key >> 32), z = (int) key;
+        Object lock = stripe(key);
+
+        // synchronize on the cell to make sure multiple saves of the same cell are written in order
+        synchronized (cell) {
+            if (generation != this.generation) return; // storage has been reset in the meantime
+
+            // serialize the cell while holding its lock, but write it to storage without holding it
+            PooledByteArrayOutputStream buffer = new PooledByteArrayOutputStream();
+            try {
+                synchronized (lock) {
+                    BLUE_NBT.write(cell, buffer, type);
+                }
+
+                try (OutputStream out = storage.write(x, z)) {
+                    buffer.writeTo(out);
+                }
+            } catch (IOException ex) {
+                Logger.global.logError("Failed to save render-state cell " + new Vector2i(x, z), ex);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    private Stripe stripe(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 48) & stripeMask];
+    }
+
+    private static long key(int x, int z) {
+        return (long) x << 32 | z & 0xFFFFFFFFL;
+    }
+
+    /**
+     * A small LRU-cache of cells, doing a linear search on lookup to avoid any allocations.
+     */
+    private class Stripe {
+
+        private final long[] keys;
+        private final T[] cells;
+        private final long[] lastAccess;
+        private int size;
+        private long accessCounter;
+
+        @SuppressWarnings("unchecked")
+        Stripe(int capacity) {
+            this.keys = new long[capacity];
+            this.cells = (T[]) new Cell[capacity];
+            this.lastAccess = new long[capacity];
+            this.size = 0;
+            this.accessCounter = 0;
         }
+
+        @Nullable T get(long key) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    lastAccess[i] = ++accessCounter;
+                    return cells[i];
+                }
+            }
+            return null;
+        }
+
+        void put(long key, T cell) {
+            int index = size;
+            if (size < keys.length) {
+                size++;
+            } else {
+                // evict the least recently used cell
+                index = 0;
+                for (int i = 1; i < size; i++) {
+                    if (lastAccess[i] < lastAccess[index]) index = i;
+                }
+                scheduleSave(keys[index], cells[index]);
+            }
+
+            keys[index] = key;
+            cells[index] = cell;
+            lastAccess[index] = ++accessCounter;
+        }
+
+        void clear() {
+            Arrays.fill(cells, null);
+            size = 0;
+        }
+
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingSave<T> {
+        private final T cell;
+        private int count;
     }
 
     public interface Cell {
@@ -34,12 +34,25 @@ public MapChunkState(GridStorage storage) {
         super(storage, ChunkInfoRegion.class);
     }
 
+    /**
+     * @param cacheSize the maximum number of chunk-state cells (each covering 128x128 chunks) kept in memory
+     */
+    public MapChunkState(GridStorage storage, int cacheSize) {
+        super(storage, ChunkInfoRegion.class, cacheSize);
+    }
+
     public int get(int x, int z) {
-        return cell(x >> SHIFT, z >> SHIFT).get(x, z);
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            return cell(cx, cz).get(x, z);
+        }
     }
 
-    public synchronized int set(int x, int z, int hash) {
-        return cell(x >> SHIFT, z >> SHIFT).set(x, z, hash);
+    public int set(int x, int z, int hash) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            return cell(cx, cz).set(x, z, hash);
+        }
     }
 
     @Override
@@ -0,0 +1,69 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.renderstate;
+
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers the size, last-modified time and a digest of the header of each world-region file, as they were when the
+ * region has last been fully and successfully updated.<br>
+ * This allows skipping unchanged regions on a map-update without reading the region-file.
+ */
+public class MapRegionState extends CellStorage<RegionInfoRegion> {
+
+    static final int SHIFT = 5;
+
+    private final long settingsHash;
+
+    /**
+     * @param settingsHash a hash of all map-settings that affect which tiles need to be updated
+     *                     (e.g. the render-boundaries). Stored entries are ignored if this hash changes.
+     */
+    public MapRegionState(GridStorage storage, long settingsHash) {
+        super(storage, RegionInfoRegion.class);
+        this.settingsHash = settingsHash;
+    }
+
+    public @Nullable RegionInfoRegion.RegionInfo get(int x, int z) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            return cell(cx, cz).get(x, z, settingsHash);
+        }
+    }
+
+    public void set(int x, int z, @Nullable RegionInfoRegion.RegionInfo info) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            cell(cx, cz).set(x, z, settingsHash, info);
+        }
+    }
+
+    @Override
+    protected RegionInfoRegion createNewCell() {
+        return RegionInfoRegion.create();
+    }
+
+}
@@ -26,34 +26,97 @@
 
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.util.Grid;
-import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MapTileState extends CellStorage<TileInfoRegion> {
 
     static final int SHIFT = 5;
     public static final Grid GRID = new Grid(1 << SHIFT);
 
-    @Getter private int lastRenderTime = -1;
+    private final AtomicInteger lastRenderTime = new AtomicInteger(-1);
 
     public MapTileState(GridStorage storage) {
         super(storage, TileInfoRegion.class);
     }
 
+    /**
+     * @param cacheSize the maximum number of tile-state cells (each covering 32x32 tiles) kept in memory
+     */
+    public MapTileState(GridStorage storage, int cacheSize) {
+        super(storage, TileInfoRegion.class, cacheSize);
+    }
+
     public TileInfoRegion.TileInfo get(int x, int z) {
-        return cell(x >> SHIFT, z >> SHIFT).get(x, z);
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            return cell(cx, cz).get(x, z);
+        }
+    }
+
+    /**
+     * Returns the state of the tile without allocating a {@link TileInfoRegion.TileInfo}
+     */
+    public TileState getState(int x, int z) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            return cell(cx, cz).getState(x, z);
+        }
     }
 
-    public synchronized TileInfoRegion.TileInfo set(int x, int z, TileInfoRegion.TileInfo info) {
-        TileInfoRegion.TileInfo old = cell(x >> SHIFT, z >> SHIFT).set(x, z, info);
+    /**
+     * Returns the last render-time of the tile without allocating a {@link TileInfoRegion.TileInfo}
+     */
+    public int getRenderTime(int x, int z) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            return cell(cx, cz).getRenderTime(x, z);
+        }
+    }
 
-        if (info.getRenderTime() > lastRenderTime)
-            lastRenderTime = info.getRenderTime();
+    public TileInfoRegion.TileInfo set(int x, int z, TileInfoRegion.TileInfo info) {
+        TileInfoRegion.TileInfo old;
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            old = cell(cx, cz).set(x, z, info);
+        }
 
+        lastRenderTime.accumulateAndGet(info.getRenderTime(), Math::max);
         return old;
     }
 
+    /**
+     * Sets the render-time and state of the tile without allocating a {@link TileInfoRegion.TileInfo}
+     */
+    public void set(int x, int z, int renderTime, TileState state) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            cell(cx, cz).set(x, z, renderTime, state);
+        }
+
+        lastRenderTime.accumulateAndGet(renderTime, Math::max);
+    }
+
+    public long getContentHash(int x, int z) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            return cell(cx, cz).getContentHash(x, z);
+        }
+    }
+
+    public void setContentHash(int x, int z, long hash) {
+        int cx = x >> SHIFT, cz = z >> SHIFT;
+        synchronized (lock(cx, cz)) {
+            cell(cx, cz).setContentHash(x, z, hash);
+        }
+    }
+
+    public int getLastRenderTime() {
+        return lastRenderTime.get();
+    }
+
     @Override
-    protected synchronized TileInfoRegion createNewCell() {
+    protected TileInfoRegion createNewCell() {
         return TileInfoRegion.create();
     }
 
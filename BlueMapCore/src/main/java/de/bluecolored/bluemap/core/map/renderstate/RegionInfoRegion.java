@@ -0,0 +1,136 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.renderstate;
+
+import de.bluecolored.bluenbt.NBTName;
+import de.bluecolored.bluenbt.NBTPostDeserialize;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static de.bluecolored.bluemap.core.map.renderstate.MapRegionState.SHIFT;
+
+public class RegionInfoRegion implements CellStorage.Cell {
+
+    static final int REGION_LENGTH = 1 << SHIFT;
+    static final int REGION_MASK = REGION_LENGTH - 1;
+    static final int REGIONS_PER_REGION = REGION_LENGTH * REGION_LENGTH;
+
+    @NBTName("settings-hash")
+    private long settingsHash;
+
+    @NBTName("file-sizes")
+    private long[] fileSizes;
+
+    @NBTName("last-modified")
+    private long[] lastModified;
+
+    @NBTName("header-digests")
+    private long[] headerDigests;
+
+    @Getter
+    private transient boolean modified;
+
+    private RegionInfoRegion() {}
+
+    @NBTPostDeserialize
+    public void init() {
+        if (
+                fileSizes == null || fileSizes.length != REGIONS_PER_REGION ||
+                lastModified == null || lastModified.length != REGIONS_PER_REGION ||
+                headerDigests == null || headerDigests.length != REGIONS_PER_REGION
+        ) {
+            fileSizes = new long[REGIONS_PER_REGION];
+            lastModified = new long[REGIONS_PER_REGION];
+            headerDigests = new long[REGIONS_PER_REGION];
+        }
+    }
+
+    public @Nullable RegionInfo get(int x, int z, long settingsHash) {
+        if (this.settingsHash != settingsHash) return null;
+
+        int index = index(x, z);
+        if (lastModified[index] == 0) return null;
+
+        return new RegionInfo(
+                fileSizes[index],
+                lastModified[index],
+                headerDigests[index]
+        );
+    }
+
+    public void set(int x, int z, long settingsHash, @Nullable RegionInfo info) {
+        if (this.settingsHash != settingsHash) {
+            if (info == null) return;
+
+            // all stored entries are outdated
+            Arrays.fill(fileSizes, 0);
+            Arrays.fill(lastModified, 0);
+            Arrays.fill(headerDigests, 0);
+            this.settingsHash = settingsHash;
+            this.modified = true;
+        }
+
+        int index = index(x, z);
+        long fileSize = info != null ? info.getFileSize() : 0;
+        long lastModified = info != null ? info.getLastModified() : 0;
+        long headerDigest = info != null ? info.getHeaderDigest() : 0;
+
+        if (
+                this.fileSizes[index] == fileSize &&
+                this.lastModified[index] == lastModified &&
+                this.headerDigests[index] == headerDigest
+        ) return;
+
+        this.fileSizes[index] = fileSize;
+        this.lastModified[index] = lastModified;
+        this.headerDigests[index] = headerDigest;
+        this.modified = true;
+    }
+
+    private static int index(int x, int z) {
+        return (z & REGION_MASK) << SHIFT | (x & REGION_MASK);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RegionInfo {
+
+        private long fileSize;
+        private long lastModified;
+        private long headerDigest;
+
+    }
+
+    public static RegionInfoRegion create() {
+        RegionInfoRegion region = new RegionInfoRegion();
+        region.init();
+        return region;
+    }
+
+}
@@ -53,6 +53,9 @@ public class TileInfoRegion implements CellStorage.Cell {
     @NBTName("tile-states")
     private TileState[] tileStates;
 
+    @NBTName("content-hashes")
+    private long[] contentHashes;
+
     @Getter
     private transient boolean modified;
 
@@ -67,6 +70,9 @@ public void init() {
             tileStates = new TileState[TILES_PER_REGION];
             Arrays.fill(tileStates, TileState.UNKNOWN);
         }
+
+        if (contentHashes == null || contentHashes.length != TILES_PER_REGION)
+            contentHashes = new long[TILES_PER_REGION];
     }
 
     public TileInfo get(int x, int z) {
@@ -77,6 +83,25 @@ public TileInfo get(int x, int z) {
         );
     }
 
+    public TileState getState(int x, int z) {
+        return tileStates[index(x, z)];
+    }
+
+    public int getRenderTime(int x, int z) {
+        return lastRenderTimes[index(x, z)];
+    }
+
+    public void set(int x, int z, int renderTime, TileState state) {
+        int index = index(x, z);
+        Objects.requireNonNull(state);
+
+        if (lastRenderTimes[index] == renderTime && tileStates[index] == state) return;
+
+        lastRenderTimes[index] = renderTime;
+        tileStates[index] = state;
+        this.modified = true;
+    }
+
     public TileInfo set(int x, int z, TileInfo info) {
         int index = index(x, z);
 
@@ -94,6 +119,21 @@ public TileInfo set(int x, int z, TileInfo info) {
         return previous;
     }
 
+    /**
+     * Returns the content-hash of the last saved tile-model, or 0 if it is unknown
+     */
+    public long getContentHash(int x, int z) {
+        return contentHashes[index(x, z)];
+    }
+
+    public void setContentHash(int x, int z, long hash) {
+        int index = index(x, z);
+        if (contentHashes[index] == hash) return;
+
+        contentHashes[index] = hash;
+        this.modified = true;
+    }
+
     int findLatestRenderTime() {
         if (lastRenderTimes == null) return -1;
         return Arrays.stream(lastRenderTimes)
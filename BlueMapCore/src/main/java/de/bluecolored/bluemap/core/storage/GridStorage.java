@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.storage;
 
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Nullable;
@@ -45,6 +46,16 @@ public interface GridStorage {
      */
     OutputStream write(int x, int z) throws IOException;
 
+    /**
+     * Returns an {@link OutputStream} that can be used to write item-data that is <b>already compressed</b> with the
+     * given {@link Compression} into this storage at the given position (overwriting any existing item),
+     * or null if this storage can not store data with this compression as it is.
+     * The OutputStream is expected to be closed by the caller of this method.
+     */
+    default @Nullable OutputStream writeCompressed(int x, int z, Compression compression) throws IOException {
+        return null;
+    }
+
     /**
      * Returns a {@link CompressedInputStream} that can be used to read the item from this storage at the given position
      * or null if there is no item stored.
@@ -104,6 +115,11 @@ public OutputStream write() throws IOException {
             return storage.write(x, z);
         }
 
+        @Override
+        public @Nullable OutputStream writeCompressed(Compression compression) throws IOException {
+            return storage.writeCompressed(x, z, compression);
+        }
+
         @Override
         public CompressedInputStream read() throws IOException {
             return storage.read(x, z);
@@ -0,0 +1,192 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * A read-through cache holding the (still compressed) bytes of recently read {@link GridStorage}-items in memory.<br>
+ * Grid-storages need to be wrapped using {@link #wrap(GridStorage)}, all writes and deletes through the wrapped storage
+ * invalidate the cached item. One cache can be shared by many grid-storages, its size is limited by the total amount of
+ * cached bytes.
+ */
+public class GridStorageCache {
+
+    private final Cache<CacheKey, CachedItem> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public GridStorageCache(long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .executor(BlueMap.THREAD_POOL)
+                .maximumWeight(maxBytes)
+                .weigher((CacheKey key, CachedItem item) -> item.data().length)
+                .build();
+    }
+
+    /**
+     * Returns a {@link GridStorage} that reads through this cache from the given storage
+     */
+    public GridStorage wrap(GridStorage storage) {
+        return new CachedGridStorage(storage);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of cached items
+     */
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Returns the total number of bytes currently cached
+     */
+    public long getByteSize() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    @RequiredArgsConstructor
+    private class CachedGridStorage implements GridStorage {
+
+        private final GridStorage storage;
+
+        @Override
+        public OutputStream write(int x, int z) throws IOException {
+            CacheKey key = new CacheKey(storage, x, z);
+            cache.invalidate(key);
+            return new OnCloseOutputStream(storage.write(x, z), () -> cache.invalidate(key));
+        }
+
+        @Override
+        public @Nullable OutputStream writeCompressed(int x, int z, Compression compression) throws IOException {
+            CacheKey key = new CacheKey(storage, x, z);
+            cache.invalidate(key);
+            OutputStream out = storage.writeCompressed(x, z, compression);
+            if (out == null) return null;
+            return new OnCloseOutputStream(out, () -> cache.invalidate(key));
+        }
+
+        @Override
+        public @Nullable CompressedInputStream read(int x, int z) throws IOException {
+            CacheKey key = new CacheKey(storage, x, z);
+
+            CachedItem item = cache.getIfPresent(key);
+            if (item != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                try {
+                    item = cache.get(key, this::load);
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            }
+
+            if (item == null) return null;
+            return new CompressedInputStream(item.data(), item.compression(), item.lastModified(), item.eTag());
+        }
+
+        private @Nullable CachedItem load(CacheKey key) {
+            try (CompressedInputStream in = storage.read(key.x(), key.z())) {
+                if (in == null) return null;
+                // a lazy content-tag is computed from the cached data again if it is requested
+                String eTag = in.hasLazyContentTag() ? null : in.getETag();
+                return new CachedItem(in.readAllBytes(), in.getCompression(), in.getLastModified(), eTag);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public void delete(int x, int z) throws IOException {
+            try {
+                storage.delete(x, z);
+            } finally {
+                cache.invalidate(new CacheKey(storage, x, z));
+            }
+        }
+
+        @Override
+        public boolean exists(int x, int z) throws IOException {
+            if (cache.getIfPresent(new CacheKey(storage, x, z)) != null) return true;
+            return storage.exists(x, z);
+        }
+
+        @Override
+        public ItemStorage cell(int x, int z) {
+            return new GridStorageCell(this, x, z);
+        }
+
+        @Override
+        public Stream<Cell> stream() throws IOException {
+            return storage.stream()
+                    .map(cell -> new GridStorageCell(this, cell.getX(), cell.getZ()));
+        }
+
+        @Override
+        public boolean isClosed() {
+            return storage.isClosed();
+        }
+
+    }
+
+    private record CacheKey (GridStorage storage, int x, int z) {}
+
+    private record CachedItem (byte[] data, Compression compression, long lastModified, @Nullable String eTag) {}
+
+}
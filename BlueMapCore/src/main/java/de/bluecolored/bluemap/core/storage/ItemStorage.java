@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.storage;
 
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -39,6 +40,16 @@ public interface ItemStorage {
      */
     OutputStream write() throws IOException;
 
+    /**
+     * Returns an {@link OutputStream} that can be used to write item-data that is <b>already compressed</b> with the
+     * given {@link Compression} into this storage (overwriting any existing item), or null if this storage can not
+     * store data with this compression as it is.
+     * The OutputStream is expected to be closed by the caller of this method.
+     */
+    default @Nullable OutputStream writeCompressed(Compression compression) throws IOException {
+        return null;
+    }
+
     /**
      * Returns a {@link CompressedInputStream} that can be used to read the item-data from this storage
      * or null if there is nothing stored.
@@ -24,31 +24,49 @@
  */
 package de.bluecolored.bluemap.core.storage;
 
+import de.bluecolored.bluemap.core.storage.compression.BoundCompression;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.compression.CompressionDictionaries;
 import de.bluecolored.bluemap.core.util.Key;
-import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
 
-@RequiredArgsConstructor
 public abstract class KeyedMapStorage implements MapStorage {
 
     private static final Key HIRES_TILES_KEY = Key.bluemap("hires");
     private static final Key TILE_STATE_KEY = Key.bluemap("tile-state");
     private static final Key CHUNK_STATE_KEY = Key.bluemap("chunk-state");
+    private static final Key REGION_STATE_KEY = Key.bluemap("region-state");
     private static final Key SETTINGS_KEY = Key.bluemap("settings");
     private static final Key TEXTURES_KEY = Key.bluemap("textures");
     private static final Key MARKERS_KEY = Key.bluemap("markers");
     private static final Key PLAYERS_KEY = Key.bluemap("players");
 
     private final Compression compression;
+    private final @Nullable CompressionDictionaries compressionDictionaries;
+    protected final TileChangeNotifier tileChangeNotifier = new TileChangeNotifier();
+
+    public KeyedMapStorage(Compression compression) {
+        BoundCompression boundCompression = BoundCompression.bind(compression, this::asset);
+        this.compression = boundCompression.compression();
+        this.compressionDictionaries = boundCompression.dictionaries();
+    }
+
+    /**
+     * Tests if the key belongs to one of the render-state grid-storages. Those reference the data of the other
+     * storages (e.g. by content-hashes), so they should only be persisted after that data.
+     */
+    public static boolean isRenderStateKey(Key key) {
+        return key.equals(TILE_STATE_KEY) || key.equals(CHUNK_STATE_KEY) || key.equals(REGION_STATE_KEY);
+    }
 
     @Override
     public GridStorage hiresTiles() {
-        return grid(HIRES_TILES_KEY, compression);
+        return tileChangeNotifier.wrap(grid(HIRES_TILES_KEY, compression), 0);
     }
 
     @Override
     public GridStorage lowresTiles(int lod) {
-        return grid(Key.bluemap("lowres/" + lod), Compression.NONE);
+        return tileChangeNotifier.wrap(grid(Key.bluemap("lowres/" + lod), Compression.NONE), lod);
     }
 
     @Override
@@ -61,6 +79,11 @@ public GridStorage chunkState() {
         return grid(CHUNK_STATE_KEY, Compression.GZIP);
     }
 
+    @Override
+    public GridStorage regionState() {
+        return grid(REGION_STATE_KEY, Compression.GZIP);
+    }
+
     @Override
     public ItemStorage asset(String name) {
         return item(Key.bluemap("asset/" + MapStorage.escapeAssetName(name)), Compression.NONE);
@@ -86,6 +109,25 @@ public ItemStorage players() {
         return item(PLAYERS_KEY, Compression.NONE);
     }
 
+    @Override
+    public void addTileChangeListener(TileChangeListener listener) {
+        tileChangeNotifier.addListener(listener);
+    }
+
+    @Override
+    public void removeTileChangeListener(TileChangeListener listener) {
+        tileChangeNotifier.removeListener(listener);
+    }
+
+    /**
+     * Resets the state of this maps compression (e.g. trained compression-dictionaries),
+     * needs to be called after the map has been deleted.
+     */
+    protected void resetCompression() {
+        if (compressionDictionaries != null)
+            compressionDictionaries.reset();
+    }
+
     /**
      * Returns a {@link GridStorage} for the given {@link Key}.<br>
      * The compressionHint can be used if a new {@link GridStorage} needs to be created, but is not guaranteed.
@@ -26,6 +26,7 @@
 
 import java.io.IOException;
 import java.util.function.DoublePredicate;
+import java.util.stream.Stream;
 
 public interface MapStorage {
 
@@ -49,11 +50,22 @@ public interface MapStorage {
      */
     GridStorage chunkState();
 
+    /**
+     * Returns a {@link GridStorage} for the region-state (meta-) data of this map
+     */
+    GridStorage regionState();
+
     /**
      * Returns a {@link ItemStorage} for a map asset with the given name
      */
     ItemStorage asset(String name);
 
+    /**
+     * Returns a stream with the (escaped) names of all assets of this map.<br>
+     * <b>The returned stream has to be closed after use!</b>
+     */
+    Stream<String> listAssets() throws IOException;
+
     /**
      * Returns a {@link ItemStorage} for the settings (settings.json) of this map
      */
@@ -74,6 +86,17 @@ public interface MapStorage {
      */
     ItemStorage players();
 
+    /**
+     * Adds a {@link TileChangeListener} that will be notified about all writes and deletes of hires- and lowres-tiles
+     * through this storage
+     */
+    void addTileChangeListener(TileChangeListener listener);
+
+    /**
+     * Removes a {@link TileChangeListener} that has been added using {@link #addTileChangeListener(TileChangeListener)}
+     */
+    void removeTileChangeListener(TileChangeListener listener);
+
     /**
      * Deletes the entire map from the storage
      */
@@ -95,6 +118,12 @@ default void delete() throws IOException {
      */
     boolean exists() throws IOException;
 
+    /**
+     * Blocks until all writes to this map that might still be pending (e.g. queued to be written in batches)
+     * are persisted
+     */
+    default void flush() throws IOException {}
+
     /**
      * Checks if this storage is closed
      */
@@ -0,0 +1,129 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage;
+
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Holds the {@link TileChangeListener}s of a {@link MapStorage} and notifies them about all writes and deletes
+ * through the tile-{@link GridStorage}s that have been wrapped using {@link #wrap(GridStorage, int)}.
+ */
+public class TileChangeNotifier implements TileChangeListener {
+
+    private final Collection<TileChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(TileChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TileChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void tileChanged(int lod, int x, int z) {
+        for (TileChangeListener listener : listeners)
+            listener.tileChanged(lod, x, z);
+    }
+
+    @Override
+    public void allTilesChanged() {
+        for (TileChangeListener listener : listeners)
+            listener.allTilesChanged();
+    }
+
+    /**
+     * Returns a {@link GridStorage} that notifies this notifier's listeners about all writes and deletes of its tiles
+     */
+    public GridStorage wrap(GridStorage storage, int lod) {
+        return new NotifyingGridStorage(storage, lod);
+    }
+
+    @RequiredArgsConstructor
+    private class NotifyingGridStorage implements GridStorage {
+
+        private final GridStorage storage;
+        private final int lod;
+
+        @Override
+        public OutputStream write(int x, int z) throws IOException {
+            return new OnCloseOutputStream(storage.write(x, z), () -> tileChanged(lod, x, z));
+        }
+
+        @Override
+        public @Nullable OutputStream writeCompressed(int x, int z, Compression compression) throws IOException {
+            OutputStream out = storage.writeCompressed(x, z, compression);
+            if (out == null) return null;
+            return new OnCloseOutputStream(out, () -> tileChanged(lod, x, z));
+        }
+
+        @Override
+        public @Nullable CompressedInputStream read(int x, int z) throws IOException {
+            return storage.read(x, z);
+        }
+
+        @Override
+        public void delete(int x, int z) throws IOException {
+            try {
+                storage.delete(x, z);
+            } finally {
+                tileChanged(lod, x, z);
+            }
+        }
+
+        @Override
+        public boolean exists(int x, int z) throws IOException {
+            return storage.exists(x, z);
+        }
+
+        @Override
+        public ItemStorage cell(int x, int z) {
+            return new GridStorageCell(this, x, z);
+        }
+
+        @Override
+        public Stream<Cell> stream() throws IOException {
+            return storage.stream()
+                    .map(cell -> new GridStorageCell(this, cell.getX(), cell.getZ()));
+        }
+
+        @Override
+        public boolean isClosed() {
+            return storage.isClosed();
+        }
+
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/**
+ * The {@link Compression} of a map-storage, bound to the {@link CompressionDictionaries} of the map if the compression
+ * uses dictionaries.
+ *
+ * @param compression the compression that should be used by the storage
+ * @param dictionaries the dictionaries the compression is bound to, or null if the compression does not use any
+ */
+public record BoundCompression (Compression compression, @Nullable CompressionDictionaries dictionaries) {
+
+    /**
+     * Binds the given compression to new {@link CompressionDictionaries} stored as map-assets, if it is a
+     * {@link DictionaryCompression}. Other compressions are returned as they are.
+     * @param assets a function providing the {@link ItemStorage} of a map-asset with the given name
+     */
+    public static BoundCompression bind(Compression compression, Function<String, ItemStorage> assets) {
+        if (compression instanceof DictionaryCompression dictionaryCompression) {
+            CompressionDictionaries dictionaries = new CompressionDictionaries(assets);
+            return new BoundCompression(dictionaryCompression.withDictionaries(dictionaries), dictionaries);
+        }
+        return new BoundCompression(compression, null);
+    }
+
+}
@@ -24,10 +24,15 @@
  */
 package de.bluecolored.bluemap.core.storage.compression;
 
+import de.bluecolored.bluemap.core.util.Hash64;
 import de.bluecolored.bluemap.core.util.stream.DelegateInputStream;
+import de.bluecolored.bluemap.core.util.stream.FileChannelInputStream;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * An InputStream that is aware of the {@link Compression} that it's data is compressed with.
@@ -35,6 +40,9 @@
 public class CompressedInputStream extends DelegateInputStream {
 
     private final Compression compression;
+    private final long lastModified;
+    private @Nullable String eTag;
+    private final byte @Nullable [] eTagData; // the data to lazily compute a content-tag from
 
     /**
      * Creates a new CompressedInputStream with {@link Compression#NONE} from an (uncompressed) {@link InputStream}.
@@ -50,8 +58,37 @@ public CompressedInputStream(InputStream in) {
      * This does <b>not</b> compress the provided InputStream.
      */
     public CompressedInputStream(InputStream in, Compression compression) {
+        this(in, compression, -1, null);
+    }
+
+    /**
+     * Creates a new CompressedInputStream from an <b>already compressed</b> {@link InputStream}, the {@link Compression}
+     * it is compressed with and some metadata about the data.
+     * This does <b>not</b> compress the provided InputStream.
+     * @param lastModified the time the data has last been modified in milliseconds since the epoch, or -1 if unknown
+     * @param eTag a tag identifying this exact version of the data, or null if unknown
+     */
+    public CompressedInputStream(InputStream in, Compression compression, long lastModified, @Nullable String eTag) {
         super(in);
         this.compression = compression;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+        this.eTagData = null;
+    }
+
+    /**
+     * Creates a new CompressedInputStream reading the given <b>already compressed</b> data.
+     * This does <b>not</b> compress the provided data.
+     * @param lastModified the time the data has last been modified in milliseconds since the epoch, or -1 if unknown
+     * @param eTag a tag identifying this exact version of the data, or null to use a {@link #contentTag(byte[])} of
+     *             the data, which is only computed if it is requested
+     */
+    public CompressedInputStream(byte[] data, Compression compression, long lastModified, @Nullable String eTag) {
+        super(new ByteArrayInputStream(data));
+        this.compression = compression;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+        this.eTagData = eTag == null ? data : null;
     }
 
     /**
@@ -61,6 +98,15 @@ public InputStream decompress() throws IOException {
         return compression.decompress(in);
     }
 
+    /**
+     * Returns the {@link FileChannel} this stream is reading the (compressed) data from,
+     * or null if the data is not read directly from a file
+     */
+    public @Nullable FileChannel getFileChannel() {
+        if (in instanceof FileChannelInputStream) return ((FileChannelInputStream) in).getChannel();
+        return null;
+    }
+
     /**
      * Returns the {@link Compression} this InputStream's data is compressed with
      */
@@ -68,4 +114,37 @@ public Compression getCompression() {
         return compression;
     }
 
+    /**
+     * Returns the time this InputStream's data has last been modified in milliseconds since the epoch,
+     * or -1 if it is unknown
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns a tag identifying this exact version of this InputStream's data (e.g. a content-hash),
+     * or null if there is none.
+     * If the data changes, the tag changes as well.
+     */
+    public @Nullable String getETag() {
+        if (eTag == null && eTagData != null) eTag = contentTag(eTagData);
+        return eTag;
+    }
+
+    /**
+     * Returns true if the tag returned by {@link #getETag()} is a {@link #contentTag(byte[])} that is only computed
+     * when it is requested
+     */
+    public boolean hasLazyContentTag() {
+        return eTagData != null;
+    }
+
+    /**
+     * Creates a tag identifying the given data based on a hash of its content
+     */
+    public static String contentTag(byte[] data) {
+        return Long.toHexString(new Hash64().put(data).get());
+    }
+
 }
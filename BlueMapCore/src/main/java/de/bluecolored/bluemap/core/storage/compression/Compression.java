@@ -35,25 +35,23 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-import java.util.zip.InflaterInputStream;
 
 public interface Compression extends Keyed {
 
     Compression NONE = new NoCompression(Key.bluemap("none"), "none", "");
-    Compression GZIP = new BufferedCompression(Key.bluemap("gzip"), "gzip", ".gz", GZIPOutputStream::new, GZIPInputStream::new);
-    Compression DEFLATE = new BufferedCompression(Key.bluemap("deflate"), "deflate", ".deflate", DeflaterOutputStream::new, InflaterInputStream::new);
+    Compression GZIP = new ZlibCompression(Key.bluemap("gzip"), "gzip", ".gz", true);
+    Compression DEFLATE = new ZlibCompression(Key.bluemap("deflate"), "deflate", ".deflate", false);
     Compression ZSTD = new BufferedCompression(Key.bluemap("zstd"), "zstd", ".zst", ZstdOutputStream::new, ZstdInputStream::new);
     Compression LZ4 = new BufferedCompression(Key.bluemap("lz4"), "lz4", ".lz4", LZ4BlockOutputStream::new, LZ4BlockInputStream::new);
+    Compression DEFLATE_DICTIONARY = new DictionaryCompression(Key.bluemap("deflate-dictionary"), "deflate-dictionary", ".ddeflate");
 
     Registry<Compression> REGISTRY = new Registry<>(
             NONE,
             GZIP,
             DEFLATE,
             ZSTD,
-            LZ4
+            LZ4,
+            DEFLATE_DICTIONARY
     );
 
     String getId();
@@ -64,4 +62,13 @@ public interface Compression extends Keyed {
 
     InputStream decompress(InputStream in) throws IOException;
 
+    /**
+     * Returns a variant of this compression using the given compression-level,
+     * or this compression itself if it does not support different levels.
+     * @throws IllegalArgumentException if the level is not supported by this compression
+     */
+    default Compression withLevel(int level) {
+        return this;
+    }
+
 }
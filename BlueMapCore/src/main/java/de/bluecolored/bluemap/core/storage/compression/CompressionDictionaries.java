@@ -0,0 +1,216 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.Adler32;
+
+/**
+ * Manages the compression-dictionaries of a map, stored as map-assets.<br>
+ * If no dictionary exists yet, the first written items are sampled and a new dictionary is trained from those samples
+ * (see {@link DictionaryTrainer}). Each dictionary is identified by the Adler-32 checksum of its data (which is also
+ * the dictionary-id zlib records in the header of compressed data).
+ */
+public class CompressionDictionaries {
+
+    private static final String ASSET_PREFIX = "compression-dictionaries/";
+    private static final String CURRENT_ASSET = ASSET_PREFIX + "current";
+
+    private static final int DICTIONARY_SIZE = 32 * 1024; // the deflate-window size, a larger dictionary is useless
+    private static final int SAMPLE_COUNT = 64;
+    private static final int MAX_SAMPLE_SIZE = 128 * 1024;
+
+    private final Function<String, ItemStorage> assets;
+
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private final List<byte[]> samples = new ArrayList<>();
+
+    private volatile boolean loaded;
+    private volatile @Nullable Dictionary current;
+    private volatile boolean training;
+
+    /**
+     * @param assets a function providing the {@link ItemStorage} of a map-asset with the given name
+     */
+    public CompressionDictionaries(Function<String, ItemStorage> assets) {
+        this.assets = assets;
+    }
+
+    /**
+     * Returns the dictionary that should be used to compress new data, or null if there is none (yet)
+     */
+    public @Nullable Dictionary getCurrent() throws IOException {
+        if (!loaded) load();
+        return current;
+    }
+
+    /**
+     * Returns the dictionary-data for the given dictionary-id
+     * @throws IOException if there is no dictionary with this id
+     */
+    public byte[] get(int id) throws IOException {
+        byte[] dictionary = dictionaries.get(id);
+        if (dictionary != null) return dictionary;
+
+        dictionary = readAsset(ASSET_PREFIX + toHex(id));
+        if (dictionary == null)
+            throw new IOException("Compression-dictionary " + toHex(id) + " is missing!");
+
+        dictionaries.put(id, dictionary);
+        return dictionary;
+    }
+
+    /**
+     * Whether new data should be sampled for training a dictionary
+     */
+    public boolean isSampling() throws IOException {
+        return getCurrent() == null && !training;
+    }
+
+    /**
+     * Wraps the given {@link OutputStream} so that the (uncompressed) data written to it is collected as a sample
+     * for training a new dictionary
+     */
+    public OutputStream sample(OutputStream out) {
+        ByteArrayOutputStream sample = new ByteArrayOutputStream();
+        return new OnCloseOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                if (sample.size() < MAX_SAMPLE_SIZE) sample.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                int sampleLength = Math.min(len, MAX_SAMPLE_SIZE - sample.size());
+                if (sampleLength > 0) sample.write(b, off, sampleLength);
+            }
+        }, () -> addSample(sample.toByteArray()));
+    }
+
+    /**
+     * Forgets the current dictionary (e.g. because the map got deleted), a new dictionary will be trained from the
+     * next written data
+     */
+    public synchronized void reset() {
+        dictionaries.clear();
+        samples.clear();
+        current = null;
+        loaded = false;
+    }
+
+    private synchronized void load() throws IOException {
+        if (loaded) return;
+
+        byte[] currentId = readAsset(CURRENT_ASSET);
+        if (currentId != null) {
+            int id = Integer.parseUnsignedInt(new String(currentId, StandardCharsets.UTF_8).trim(), 16);
+            current = new Dictionary(id, get(id));
+        }
+
+        loaded = true;
+    }
+
+    private void addSample(byte[] sample) {
+        if (sample.length == 0) return;
+
+        List<byte[]> trainingSamples;
+        synchronized (this) {
+            if (current != null || training) return;
+            samples.add(sample);
+            if (samples.size() < SAMPLE_COUNT) return;
+
+            trainingSamples = new ArrayList<>(samples);
+            samples.clear();
+            training = true;
+        }
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                train(trainingSamples);
+            } catch (IOException ex) {
+                Logger.global.logError("Failed to train compression-dictionary!", ex);
+            } finally {
+                training = false;
+            }
+        }, BlueMap.THREAD_POOL);
+    }
+
+    private void train(List<byte[]> samples) throws IOException {
+        byte[] data = DictionaryTrainer.train(samples, DICTIONARY_SIZE);
+        if (data.length == 0) return;
+
+        Adler32 adler32 = new Adler32();
+        adler32.update(data);
+        int id = (int) adler32.getValue();
+
+        // store the dictionary before it is used, so that all data compressed with it stays readable
+        try (OutputStream out = assets.apply(ASSET_PREFIX + toHex(id)).write()) {
+            out.write(data);
+        }
+        try (OutputStream out = assets.apply(CURRENT_ASSET).write()) {
+            out.write(toHex(id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        synchronized (this) {
+            dictionaries.put(id, data);
+            current = new Dictionary(id, data);
+            loaded = true;
+            training = false;
+        }
+
+        Logger.global.logDebug("Trained new compression-dictionary " + toHex(id) + " (" + data.length + " bytes) from " + samples.size() + " samples.");
+    }
+
+    private byte @Nullable [] readAsset(String name) throws IOException {
+        try (CompressedInputStream in = assets.apply(name).read()) {
+            if (in == null) return null;
+            try (InputStream data = in.decompress()) {
+                return data.readAllBytes();
+            }
+        }
+    }
+
+    private static String toHex(int id) {
+        return String.format("%08x", id);
+    }
+
+    public record Dictionary (int id, byte[] data) {}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import de.bluecolored.bluemap.core.util.Key;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.zip.Deflater;
+
+/**
+ * A zlib (deflate) {@link Compression} that uses a preset dictionary trained from previously written data
+ * (see {@link CompressionDictionaries}).<br>
+ * The zlib-header of each compressed item contains the id of the dictionary it has been compressed with,
+ * so items stay readable when the dictionary is retrained, as long as the older dictionaries are still stored.<br>
+ * Dictionaries are stored per map, so the registered instance first needs to be bound to the dictionaries of a map
+ * using {@link #withDictionaries(CompressionDictionaries)}. Without dictionaries, it writes plain zlib data.
+ */
+public class DictionaryCompression implements Compression {
+
+    private static final int PRESET_DICTIONARY_FLAG = 0x20;
+
+    @Getter private final Key key;
+    @Getter private final String id;
+    @Getter private final String fileSuffix;
+    @Getter private final int level;
+    private final @Nullable CompressionDictionaries dictionaries;
+
+    public DictionaryCompression(Key key, String id, String fileSuffix) {
+        this(key, id, fileSuffix, Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    private DictionaryCompression(Key key, String id, String fileSuffix, int level, @Nullable CompressionDictionaries dictionaries) {
+        this.key = key;
+        this.id = id;
+        this.fileSuffix = fileSuffix;
+        this.level = level;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Returns a new {@link DictionaryCompression} with the same key and level, using the given dictionaries
+     */
+    public DictionaryCompression withDictionaries(CompressionDictionaries dictionaries) {
+        return new DictionaryCompression(key, id, fileSuffix, level, dictionaries);
+    }
+
+    @Override
+    public DictionaryCompression withLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Compression-level must be between -1 and 9, but was " + level);
+        return new DictionaryCompression(key, id, fileSuffix, level, dictionaries);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        CompressionDictionaries.Dictionary dictionary = dictionaries != null ? dictionaries.getCurrent() : null;
+
+        ZlibCompression.PooledDeflaterOutputStream deflaterOut = new ZlibCompression.PooledDeflaterOutputStream(out, level, false);
+        if (dictionary != null) deflaterOut.getDeflater().setDictionary(dictionary.data());
+
+        OutputStream compressed = deflaterOut;
+
+        if (dictionaries != null && dictionaries.isSampling())
+            compressed = dictionaries.sample(compressed);
+
+        return new BufferedOutputStream(compressed);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        // read the zlib-header ourselves to find the dictionary-id
+        int cmf = in.read(), flg = in.read();
+        if (cmf < 0 || flg < 0) throw new EOFException("Missing zlib header");
+
+        byte[] dictionary = null;
+        if ((flg & PRESET_DICTIONARY_FLAG) != 0) {
+            int dictionaryId = new DataInputStream(in).readInt();
+            if (dictionaries == null)
+                throw new IOException("Data is compressed with a dictionary, but no dictionaries are available!");
+            dictionary = dictionaries.get(dictionaryId);
+        }
+
+        // raw inflate for the rest (the adler32-trailer is ignored)
+        ZlibCompression.PooledInflaterInputStream inflaterIn = new ZlibCompression.PooledInflaterInputStream(in, true);
+        if (dictionary != null) inflaterIn.getInflater().setDictionary(dictionary);
+
+        return new BufferedInputStream(inflaterIn);
+    }
+
+}
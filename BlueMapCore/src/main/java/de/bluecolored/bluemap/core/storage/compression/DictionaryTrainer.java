@@ -0,0 +1,126 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+/**
+ * Builds a preset-dictionary from sample data.<br>
+ * The samples are split into segments, and segments are scored by how many of their byte-sequences also appear in
+ * other samples. The best segments are picked greedily (re-scoring them without the sequences already covered by
+ * previously picked segments) until the dictionary is full.
+ * The best segments are placed at the end of the dictionary, so they can be referenced with the shortest distances.
+ */
+class DictionaryTrainer {
+
+    private static final int SEQUENCE_LENGTH = 8;
+    private static final int SEGMENT_LENGTH = 64;
+    private static final int SEGMENT_STEP = 16;
+    private static final int TABLE_BITS = 20;
+    private static final int TABLE_MASK = (1 << TABLE_BITS) - 1;
+
+    // on average, each sequence of a segment has to appear in one other sample, this way segments are not picked
+    // just because of a few hash-collisions
+    private static final int MIN_SEGMENT_SCORE = SEGMENT_LENGTH - SEQUENCE_LENGTH + 1;
+
+    static byte[] train(List<byte[]> samples, int dictionarySize) {
+        // count in how many samples each byte-sequence appears
+        int[] counts = new int[1 << TABLE_BITS];
+        int[] lastSample = new int[1 << TABLE_BITS];
+        Arrays.fill(lastSample, -1);
+
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            for (int i = 0; i + SEQUENCE_LENGTH <= sample.length; i++) {
+                int bucket = bucket(sample, i);
+                if (lastSample[bucket] == s) continue;
+                lastSample[bucket] = s;
+                counts[bucket]++;
+            }
+        }
+
+        // score all segments
+        PriorityQueue<Segment> queue = new PriorityQueue<>(Comparator.comparingLong(Segment::score).reversed());
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            for (int offset = 0; offset + SEGMENT_LENGTH <= sample.length; offset += SEGMENT_STEP) {
+                long score = score(sample, offset, counts);
+                if (score >= MIN_SEGMENT_SCORE) queue.add(new Segment(s, offset, score));
+            }
+        }
+
+        // pick the best segments
+        List<Segment> picked = new ArrayList<>();
+        int size = 0;
+        while (size + SEGMENT_LENGTH <= dictionarySize && !queue.isEmpty()) {
+            Segment segment = queue.poll();
+            byte[] sample = samples.get(segment.sample());
+
+            // lazily re-score, since the picked segments already cover some sequences
+            long score = score(sample, segment.offset(), counts);
+            if (score < MIN_SEGMENT_SCORE) continue;
+            Segment next = queue.peek();
+            if (next != null && score < next.score()) {
+                queue.add(new Segment(segment.sample(), segment.offset(), score));
+                continue;
+            }
+
+            picked.add(segment);
+            size += SEGMENT_LENGTH;
+            for (int i = segment.offset(); i + SEQUENCE_LENGTH <= segment.offset() + SEGMENT_LENGTH; i++)
+                counts[bucket(sample, i)] = 0;
+        }
+
+        // best segments last
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (int i = picked.size() - 1; i >= 0; i--) {
+            Segment segment = picked.get(i);
+            dictionary.write(samples.get(segment.sample()), segment.offset(), SEGMENT_LENGTH);
+        }
+        return dictionary.toByteArray();
+    }
+
+    private static long score(byte[] sample, int offset, int[] counts) {
+        long score = 0;
+        for (int i = offset; i + SEQUENCE_LENGTH <= offset + SEGMENT_LENGTH; i++) {
+            int count = counts[bucket(sample, i)];
+            if (count > 1) score += count - 1;
+        }
+        return score;
+    }
+
+    private static int bucket(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 0; i < SEQUENCE_LENGTH; i++)
+            value = (value << 8) | (data[offset + i] & 0xFF);
+
+        value *= 0x9E3779B97F4A7C15L;
+        return (int) (value >>> (64 - TABLE_BITS)) & TABLE_MASK;
+    }
+
+    private record Segment (int sample, int offset, long score) {}
+
+}
@@ -0,0 +1,311 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import de.bluecolored.bluemap.core.util.Key;
+import lombok.Getter;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.*;
+
+/**
+ * A zlib-based {@link Compression} (gzip or deflate) with a configurable compression-level.<br>
+ * Unlike {@link GZIPOutputStream} and friends, this reuses pooled {@link Deflater} and {@link Inflater} instances
+ * (see {@link ZlibPool}) instead of allocating a new native zlib-context for each compressed item.
+ */
+public class ZlibCompression implements Compression {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    @Getter private final Key key;
+    @Getter private final String id;
+    @Getter private final String fileSuffix;
+    private final boolean gzip;
+    @Getter private final int level;
+
+    /**
+     * @param gzip true for the gzip-format, false for the zlib-format (deflate)
+     */
+    public ZlibCompression(Key key, String id, String fileSuffix, boolean gzip) {
+        this(key, id, fileSuffix, gzip, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    private ZlibCompression(Key key, String id, String fileSuffix, boolean gzip, int level) {
+        this.key = key;
+        this.id = id;
+        this.fileSuffix = fileSuffix;
+        this.gzip = gzip;
+        this.level = level;
+    }
+
+    @Override
+    public Compression withLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Compression-level must be between -1 and 9, but was " + level);
+        return new ZlibCompression(key, id, fileSuffix, gzip, level);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        if (gzip) return new BufferedOutputStream(new GzipOutputStream(out, level));
+        return new BufferedOutputStream(new PooledDeflaterOutputStream(out, level, false));
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        if (gzip) return new BufferedInputStream(GzipInputStream.open(in));
+        return new BufferedInputStream(new PooledInflaterInputStream(in, false));
+    }
+
+    /**
+     * Two ZlibCompressions are equal if they have the same key, the compression-level makes no difference for
+     * the compressed data-format.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ZlibCompression)) return false;
+        return key.equals(((ZlibCompression) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    /**
+     * A {@link DeflaterOutputStream} using a pooled {@link Deflater} that is returned to the pool once the stream is closed
+     */
+    static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+
+        private final boolean nowrap;
+        private boolean closed = false;
+
+        PooledDeflaterOutputStream(OutputStream out, int level, boolean nowrap) {
+            super(out, ZlibPool.acquireDeflater(level, nowrap), BUFFER_SIZE);
+            this.nowrap = nowrap;
+        }
+
+        Deflater getDeflater() {
+            return def;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+
+            try {
+                super.close();
+            } finally {
+                ZlibPool.releaseDeflater(def, nowrap);
+            }
+        }
+
+    }
+
+    /**
+     * An {@link InflaterInputStream} using a pooled {@link Inflater} that is returned to the pool once the stream is closed
+     */
+    static class PooledInflaterInputStream extends InflaterInputStream {
+
+        private final boolean nowrap;
+        private boolean closed = false;
+
+        PooledInflaterInputStream(InputStream in, boolean nowrap) {
+            super(in, ZlibPool.acquireInflater(nowrap), BUFFER_SIZE);
+            this.nowrap = nowrap;
+        }
+
+        Inflater getInflater() {
+            return inf;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+
+            try {
+                super.close();
+            } finally {
+                ZlibPool.releaseInflater(inf, nowrap);
+            }
+        }
+
+    }
+
+    private static class GzipOutputStream extends PooledDeflaterOutputStream {
+
+        private static final byte[] HEADER = {
+                0x1f, (byte) 0x8b,  // magic
+                Deflater.DEFLATED,  // compression method
+                0,                  // flags
+                0, 0, 0, 0,         // modification time
+                0,                  // extra flags
+                (byte) 0xff         // operating system (unknown)
+        };
+
+        private final CRC32 crc = new CRC32();
+
+        GzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, level, true);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (def.finished()) return;
+            super.finish();
+
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) def.getBytesRead());
+        }
+
+        private void writeIntLE(int value) throws IOException {
+            out.write(value & 0xFF);
+            out.write((value >> 8) & 0xFF);
+            out.write((value >> 16) & 0xFF);
+            out.write((value >> 24) & 0xFF);
+        }
+
+    }
+
+    /**
+     * Reads gzip-data, concatenated gzip-members are read as one continuous stream (like {@link GZIPInputStream}).
+     * Any other data following a member is rejected.
+     */
+    private static class GzipInputStream extends PooledInflaterInputStream {
+
+        private static final int MAGIC = 0x8b1f;
+        private static final int FLAG_HEADER_CRC = 0x02;
+        private static final int FLAG_EXTRA = 0x04;
+        private static final int FLAG_NAME = 0x08;
+        private static final int FLAG_COMMENT = 0x10;
+
+        private final CRC32 crc = new CRC32();
+        private boolean eos = false;
+
+        private GzipInputStream(InputStream in) {
+            super(in, true);
+        }
+
+        static GzipInputStream open(InputStream in) throws IOException {
+            readHeader(in);
+            return new GzipInputStream(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eos) return -1;
+
+            int read = super.read(b, off, len);
+            while (read == -1) {
+                if (!readTrailer()) {
+                    eos = true;
+                    return -1;
+                }
+                read = super.read(b, off, len);
+            }
+
+            crc.update(b, off, read);
+            return read;
+        }
+
+        /**
+         * Reads and checks the trailer of the current member, and starts reading the next member if there is one.
+         * @return true if there is another member
+         */
+        private boolean readTrailer() throws IOException {
+            // the trailer (and the next member) might have already been read into the input-buffer
+            int remaining = inf.getRemaining();
+            InputStream rest = remaining > 0 ?
+                    new SequenceInputStream(new ByteArrayInputStream(Arrays.copyOfRange(buf, len - remaining, len)), in) :
+                    in;
+
+            long crcValue = readUnsignedIntLE(rest);
+            long size = readUnsignedIntLE(rest);
+            if (crcValue != crc.getValue() || size != (inf.getBytesWritten() & 0xFFFFFFFFL))
+                throw new ZipException("Corrupt GZIP trailer");
+
+            int next = rest.read();
+            if (next < 0) return false;
+
+            PushbackInputStream nextMember = new PushbackInputStream(rest, 1);
+            nextMember.unread(next);
+            try {
+                readHeader(nextMember);
+            } catch (ZipException ex) {
+                throw new ZipException("Unexpected data after GZIP trailer");
+            }
+
+            in = nextMember;
+            inf.reset();
+            crc.reset();
+            return true;
+        }
+
+        private static void readHeader(InputStream in) throws IOException {
+            if (readUnsignedShortLE(in) != MAGIC) throw new ZipException("Not in GZIP format");
+            if (readUnsignedByte(in) != Deflater.DEFLATED) throw new ZipException("Unsupported compression method");
+            int flags = readUnsignedByte(in);
+            skipFully(in, 6);
+
+            if ((flags & FLAG_EXTRA) != 0) skipFully(in, readUnsignedShortLE(in));
+            if ((flags & FLAG_NAME) != 0) while (readUnsignedByte(in) != 0);
+            if ((flags & FLAG_COMMENT) != 0) while (readUnsignedByte(in) != 0);
+            if ((flags & FLAG_HEADER_CRC) != 0) skipFully(in, 2);
+        }
+
+        private static long readUnsignedIntLE(InputStream in) throws IOException {
+            long low = readUnsignedShortLE(in);
+            long high = readUnsignedShortLE(in);
+            return (high << 16) | low;
+        }
+
+        private static int readUnsignedShortLE(InputStream in) throws IOException {
+            return readUnsignedByte(in) | (readUnsignedByte(in) << 8);
+        }
+
+        private static int readUnsignedByte(InputStream in) throws IOException {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            return b;
+        }
+
+        private static void skipFully(InputStream in, int n) throws IOException {
+            while (n-- > 0) readUnsignedByte(in);
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Bounded pools of {@link Deflater} and {@link Inflater} instances, so that their native zlib-contexts
+ * can be reused instead of being allocated (and later cleaned up) for each compressed item.<br>
+ * The pools are shared by all threads, so instances can be released on a different thread than the one that
+ * acquired them. Instances that do not fit into a full pool are ended immediately.
+ */
+final class ZlibPool {
+
+    private static final int MAX_POOLED = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Deflater> RAW_DEFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Inflater> RAW_INFLATERS = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private ZlibPool() {}
+
+    /**
+     * Returns a reset {@link Deflater} with the given level.
+     * @param nowrap if true, the deflater writes raw deflate-data without the zlib-header and -trailer
+     */
+    static Deflater acquireDeflater(int level, boolean nowrap) {
+        Deflater deflater = (nowrap ? RAW_DEFLATERS : DEFLATERS).poll();
+        if (deflater == null) return new Deflater(level, nowrap);
+
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    /**
+     * Resets the {@link Deflater} and returns it to the pool, or ends it if the pool is full.
+     * The deflater must not be used anymore after this.
+     */
+    static void releaseDeflater(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+        if (!(nowrap ? RAW_DEFLATERS : DEFLATERS).offer(deflater))
+            deflater.end();
+    }
+
+    /**
+     * Returns a reset {@link Inflater}.
+     * @param nowrap if true, the inflater reads raw deflate-data without the zlib-header and -trailer
+     */
+    static Inflater acquireInflater(boolean nowrap) {
+        Inflater inflater = (nowrap ? RAW_INFLATERS : INFLATERS).poll();
+        if (inflater == null) return new Inflater(nowrap);
+        return inflater;
+    }
+
+    /**
+     * Resets the {@link Inflater} and returns it to the pool, or ends it if the pool is full.
+     * The inflater must not be used anymore after this.
+     */
+    static void releaseInflater(Inflater inflater, boolean nowrap) {
+        inflater.reset();
+        if (!(nowrap ? RAW_INFLATERS : INFLATERS).offer(inflater))
+            inflater.end();
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.file;
+
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.util.FileHelper;
+import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import de.bluecolored.bluemap.core.util.stream.PooledByteArrayOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed store for grid-items.<br>
+ * Each distinct (compressed) item-content is only stored once as a blob-file, named after the hash of its content.
+ * The items themselves are hard-links to their blob, so they still are normal files for any webserver reading them.<br>
+ * The reference-count of a blob is the link-count of its file (minus the blob-file itself), unreferenced blobs
+ * are removed by {@link #sweep()}.<br>
+ * If the file-system does not support hard-links or link-counts, items are written as normal files instead.
+ * If a blob reaches the maximum link-count of the file-system, another blob with the same content is created.<br>
+ * Items are never written to in place, since they might share their file with other items.
+ */
+class FileBlobStore {
+
+    private static final String LINK_COUNT_ATTRIBUTE_VIEW = "unix";
+    private static final String LINK_COUNT_ATTRIBUTE = LINK_COUNT_ATTRIBUTE_VIEW + ":nlink";
+    private static final int HASH_BYTES = 16;
+    private static final int MAX_LINK_ATTEMPTS = 3;
+    private static final int MAX_BLOB_VARIANTS = 64;
+
+    /**
+     * The amount of released references after which sweeping for unreferenced blobs is worth it
+     */
+    private static final int SWEEP_THRESHOLD = 1000;
+
+    private final Path root;
+    private final boolean atomic;
+
+    private final AtomicInteger releasedReferences = new AtomicInteger();
+    private volatile boolean linksSupported = true;
+    private volatile boolean linkCreated = false;
+
+    // the first blob-variant that might still accept links, for each content-hash whose first blob is full
+    private final Map<String, Integer> blobVariants = new ConcurrentHashMap<>();
+
+    FileBlobStore(Path root, boolean atomic) {
+        this.root = root;
+        this.atomic = atomic;
+
+        // without link-counts, unreferenced blobs could never be found and deleted again (e.g. on Windows)
+        if (!root.getFileSystem().supportedFileAttributeViews().contains(LINK_COUNT_ATTRIBUTE_VIEW)) {
+            linksSupported = false;
+            Logger.global.logDebug("The file-system of '" + root + "' does not provide link-counts, " +
+                    "tile-deduplication is disabled.");
+        }
+    }
+
+    /**
+     * Creates an {@link OutputStream} that buffers the written (already compressed) data and links the target-file to
+     * the matching blob once the stream gets closed.
+     */
+    OutputStream write(Path target) throws IOException {
+        if (!linksSupported) return writeFile(target);
+
+        PooledByteArrayOutputStream buffer = new PooledByteArrayOutputStream();
+        return new OnCloseOutputStream(buffer, () -> {
+            try {
+                store(target, buffer);
+            } finally {
+                buffer.release();
+            }
+        });
+    }
+
+    /**
+     * Notifies this blob-store that a reference (link) to one of its blobs has been removed
+     */
+    void release() {
+        releasedReferences.incrementAndGet();
+    }
+
+    /**
+     * Deletes all blobs that are no longer referenced by any item, if enough references have been released since
+     * the last sweep.
+     */
+    void sweepIfNeeded() throws IOException {
+        if (releasedReferences.get() < SWEEP_THRESHOLD) return;
+        sweep();
+    }
+
+    /**
+     * Deletes all blobs that are no longer referenced by any item.
+     */
+    void sweep() throws IOException {
+        releasedReferences.set(0);
+        if (!linksSupported || !Files.exists(root)) return;
+
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path blob : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(blob)) continue;
+                if (blob.getFileName().toString().endsWith(".filepart")) continue;
+
+                // a concurrent write might link this blob right after we checked, in which case the item keeps its
+                // content (the inode stays alive) and only loses its deduplication with future writes
+                try {
+                    if (((Number) Files.getAttribute(blob, LINK_COUNT_ATTRIBUTE)).intValue() <= 1)
+                        Files.deleteIfExists(blob);
+                } catch (UnsupportedOperationException | IllegalArgumentException ex) {
+                    linksSupported = false;
+                    Logger.global.logWarning("Failed to read the link-count of blobs in '" + root +
+                            "', tile-deduplication is disabled for this map: " + ex);
+                    return;
+                } catch (NoSuchFileException ignore) {}
+            }
+        }
+    }
+
+    private void store(Path target, PooledByteArrayOutputStream buffer) throws IOException {
+        byte[] data = buffer.getBuffer();
+        int length = buffer.size();
+
+        String hash = hash(data, length);
+        boolean replaced = Files.exists(target);
+
+        if (!linkToBlob(target, hash, data, length)) {
+            try (OutputStream out = writeFile(target)) {
+                out.write(data, 0, length);
+            }
+        }
+
+        if (replaced) release();
+    }
+
+    /**
+     * Links the target-file to a blob with the given content, creating the blob if needed.
+     * @return false if the target could not be linked and needs to be written as a normal file instead
+     */
+    private boolean linkToBlob(Path target, String hash, byte[] data, int length) throws IOException {
+        int variant = blobVariants.getOrDefault(hash, 0);
+        int attempt = 1;
+        while (true) {
+            Path blob = getBlobPath(hash, variant);
+            if (!Files.exists(blob)) writeBlob(blob, data, length);
+
+            try {
+                link(target, blob);
+                linkCreated = true;
+                return true;
+            } catch (NoSuchFileException | FileAlreadyExistsException ex) {
+                // the blob has been swept or the item written concurrently, try again
+                if (attempt++ >= MAX_LINK_ATTEMPTS) throw ex;
+            } catch (UnsupportedOperationException | FileSystemException ex) {
+                if (!linkCreated && getLinkCount(blob) <= 1) {
+                    linksSupported = false;
+                    Logger.global.logWarning("Failed to create a hard-link in '" + root +
+                            "', tile-deduplication is disabled for this map: " + ex);
+                    return false;
+                }
+
+                // hard-links are working, so this blob most likely reached the maximum link-count of the
+                // file-system (e.g. ~65000 on ext4) -> continue with a new blob for the same content
+                if (++variant >= MAX_BLOB_VARIANTS) {
+                    Logger.global.noFloodWarning("blob-variants-exceeded", "Failed to link item '" + target +
+                            "' to any blob, the item is written as a normal file: " + ex);
+                    return false;
+                }
+                blobVariants.merge(hash, variant, Math::max);
+                attempt = 1;
+            }
+        }
+    }
+
+    private static int getLinkCount(Path file) {
+        try {
+            return ((Number) Files.getAttribute(file, LINK_COUNT_ATTRIBUTE)).intValue();
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException ex) {
+            return 1;
+        }
+    }
+
+    private void writeBlob(Path blob, byte[] data, int length) throws IOException {
+        try (OutputStream out = FileHelper.createFilepartOutputStream(blob)) {
+            out.write(data, 0, length);
+        }
+    }
+
+    private void link(Path target, Path blob) throws IOException {
+        Path folder = target.toAbsolutePath().normalize().getParent();
+        Path partFile = folder.resolve(target.getFileName() + ".filepart");
+        FileHelper.createDirectories(folder);
+
+        Files.deleteIfExists(partFile);
+        Files.createLink(partFile, blob);
+        FileHelper.atomicMove(partFile, target);
+    }
+
+    private OutputStream writeFile(Path target) throws IOException {
+        if (atomic)
+            return FileHelper.createFilepartOutputStream(target);
+
+        // the target is most likely a hard-link to a blob, so it must not be truncated
+        return FileHelper.createReplacingOutputStream(target);
+    }
+
+    private Path getBlobPath(String hash, int variant) {
+        return root
+                .resolve(hash.substring(0, 2))
+                .resolve(variant == 0 ? hash : hash + "-" + variant);
+    }
+
+    private static String hash(byte[] data, int length) throws IOException {
+        byte[] digest;
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(data, 0, length);
+            digest = messageDigest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("SHA-256 is not supported on this platform!", ex);
+        }
+
+        StringBuilder sb = new StringBuilder(HASH_BYTES * 2);
+        for (int i = 0; i < HASH_BYTES; i++) {
+            sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(digest[i] & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -41,6 +41,7 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @RequiredArgsConstructor
 class FileGridStorage implements GridStorage {
@@ -51,12 +52,18 @@ class FileGridStorage implements GridStorage {
     private final String suffix;
     private final Compression compression;
     private final boolean atomic;
+    private final @Nullable FileBlobStore blobStore;
 
     @Override
     public OutputStream write(int x, int z) throws IOException {
         return cell(x, z).write();
     }
 
+    @Override
+    public @Nullable OutputStream writeCompressed(int x, int z, Compression compression) throws IOException {
+        return cell(x, z).writeCompressed(compression);
+    }
+
     @Override
     public @Nullable CompressedInputStream read(int x, int z) throws IOException {
         return cell(x, z).read();
@@ -74,14 +81,13 @@ public boolean exists(int x, int z) throws IOException {
 
     @Override
     public ItemStorage cell(int x, int z) {
-        return new FileItemStorage(getItemPath(x, z), compression, atomic);
+        return new FileItemStorage(getItemPath(x, z), compression, atomic, blobStore);
     }
 
-    @SuppressWarnings("resource")
     @Override
     public Stream<Cell> stream() throws IOException {
         if (!Files.exists(root)) return Stream.empty();
-        return Files.walk(root)
+        return StreamSupport.stream(new FileTreeSpliterator(root), false)
                 .filter(Files::isRegularFile)
                 .<Cell>map(itemPath -> {
                     Path path = itemPath;
@@ -98,7 +104,7 @@ public Stream<Cell> stream() throws IOException {
                     int x = Integer.parseInt(matcher.group(1));
                     int z = Integer.parseInt(matcher.group(2));
 
-                    return new PathCell(x, z, itemPath, compression, atomic);
+                    return new PathCell(x, z, itemPath, compression, atomic, blobStore);
                 })
                 .filter(Objects::nonNull);
     }
@@ -141,8 +147,8 @@ private static class PathCell extends FileItemStorage implements Cell {
         @Getter
         private final int x, z;
 
-        public PathCell(int x, int z, Path itemPath, Compression compression, boolean atomic) {
-            super(itemPath, compression, atomic);
+        public PathCell(int x, int z, Path itemPath, Compression compression, boolean atomic, @Nullable FileBlobStore blobStore) {
+            super(itemPath, compression, atomic, blobStore);
             this.x = x;
             this.z = z;
         }
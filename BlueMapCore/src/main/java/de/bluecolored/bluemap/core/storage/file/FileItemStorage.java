@@ -28,48 +28,98 @@
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.util.FileHelper;
-import lombok.RequiredArgsConstructor;
+import de.bluecolored.bluemap.core.util.Hash64;
+import de.bluecolored.bluemap.core.util.stream.FileChannelInputStream;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
 
-@RequiredArgsConstructor
 public class FileItemStorage implements ItemStorage {
 
     private final Path file;
     private final Compression compression;
     private final boolean atomic;
+    private final @Nullable FileBlobStore blobStore;
+
+    public FileItemStorage(Path file, Compression compression, boolean atomic) {
+        this(file, compression, atomic, null);
+    }
+
+    /**
+     * @param blobStore if not null, the item is written as a link into this {@link FileBlobStore}
+     */
+    FileItemStorage(Path file, Compression compression, boolean atomic, @Nullable FileBlobStore blobStore) {
+        this.file = file;
+        this.compression = compression;
+        this.atomic = atomic;
+        this.blobStore = blobStore;
+    }
 
     @Override
     public OutputStream write() throws IOException {
+        return compression.compress(writeFile());
+    }
+
+    @Override
+    public @Nullable OutputStream writeCompressed(Compression compression) throws IOException {
+        if (!this.compression.equals(compression)) return null;
+        return writeFile();
+    }
+
+    private OutputStream writeFile() throws IOException {
+        if (blobStore != null)
+            return blobStore.write(file);
+
         if (atomic)
-            return compression.compress(FileHelper.createFilepartOutputStream(file));
+            return FileHelper.createFilepartOutputStream(file);
 
-        Path folder = file.toAbsolutePath().normalize().getParent();
-        FileHelper.createDirectories(folder);
-        return compression.compress(Files.newOutputStream(file,
-                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE));
+        // the file might still be a hard-link into a blob-store, so it must not be truncated
+        return FileHelper.createReplacingOutputStream(file);
     }
 
     @Override
     public @Nullable CompressedInputStream read() throws IOException {
         if (!Files.exists(file)) return null;
+
+        // read the attributes first: if the file is replaced in between, the tag is outdated and not the data
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+
+        FileChannel channel;
         try {
-            return new CompressedInputStream(Files.newInputStream(file), compression);
+            channel = FileChannel.open(file);
         } catch (FileNotFoundException | NoSuchFileException ex) {
             return null;
         }
+
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Object fileKey = attributes.fileKey(); // differs for linked blobs with the same size and modification-time
+        String eTag = Long.toHexString(new Hash64()
+                .put(attributes.size())
+                .put(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS))
+                .put(fileKey != null ? fileKey.toString() : "")
+                .get());
+
+        return new CompressedInputStream(new FileChannelInputStream(channel), compression, lastModified, eTag);
     }
 
     @Override
     public void delete() throws IOException {
-        if (Files.exists(file)) Files.delete(file);
+        if (!Files.exists(file)) return;
+        Files.delete(file);
+        if (blobStore != null) blobStore.release();
     }
 
     @Override
@@ -26,16 +26,28 @@
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.storage.ItemStorage;
 import de.bluecolored.bluemap.core.storage.MapStorage;
+import de.bluecolored.bluemap.core.storage.TileChangeListener;
+import de.bluecolored.bluemap.core.storage.TileChangeNotifier;
+import de.bluecolored.bluemap.core.storage.compression.BoundCompression;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.storage.compression.CompressionDictionaries;
 import de.bluecolored.bluemap.core.util.DeletingPathVisitor;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.DoublePredicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -45,51 +57,97 @@ public class FileMapStorage implements MapStorage {
     private static final String TILES_PATH = "tiles";
     private static final String RENDER_STATE_PATH = "rstate";
     private static final String LIVE_PATH = "live";
+    private static final String BLOBS_PATH = "blobs";
+
+    private static final int DELETE_SPLIT_DEPTH = 3;
 
     private final Path root;
     private final Compression compression;
     private final boolean atomic;
+    private final boolean packed;
+    private final @Nullable FileBlobStore blobStore;
+    private final @Nullable CompressionDictionaries compressionDictionaries;
 
     private final GridStorage hiresGridStorage;
     private final LoadingCache<Integer, GridStorage> lowresGridStorages;
     private final GridStorage tileStateStorage;
     private final GridStorage chunkStateStorage;
+    private final GridStorage regionStateStorage;
+
+    private final TileChangeNotifier tileChangeNotifier = new TileChangeNotifier();
+    private final List<PackedGridStorage> packedGridStorages = new CopyOnWriteArrayList<>();
 
     public FileMapStorage(Path root, Compression compression, boolean atomic) {
+        this(root, compression, atomic, false);
+    }
+
+    public FileMapStorage(Path root, Compression compression, boolean atomic, boolean packed) {
+        this(root, compression, atomic, packed, false);
+    }
+
+    /**
+     * @param packed if true, the grid-items (tiles and render-state) are packed into archive-files
+     *               (see {@link PackedGridStorage}) instead of being stored as one file per item
+     * @param deduplicate if true (and not packed), tiles with identical content are only stored once and
+     *                    hard-linked into place (see {@link FileBlobStore})
+     */
+    public FileMapStorage(Path root, Compression compression, boolean atomic, boolean packed, boolean deduplicate) {
         this.root = root;
-        this.compression = compression;
         this.atomic = atomic;
+        this.packed = packed;
+
+        BoundCompression boundCompression = BoundCompression.bind(compression, this::asset);
+        this.compression = boundCompression.compression();
+        this.compressionDictionaries = boundCompression.dictionaries();
+
+        this.blobStore = deduplicate && !packed ? new FileBlobStore(root.resolve(BLOBS_PATH), atomic) : null;
 
-        this.hiresGridStorage = new FileGridStorage(
+        this.hiresGridStorage = tileChangeNotifier.wrap(createGridStorage(
                 root.resolve(TILES_PATH).resolve("0"),
                 ".prbm" + compression.getFileSuffix(),
                 compression,
-                atomic
-        );
+                blobStore
+        ), 0);
 
-        this.lowresGridStorages = Caffeine.newBuilder().build(lod -> new FileGridStorage(
+        this.lowresGridStorages = Caffeine.newBuilder().build(lod -> tileChangeNotifier.wrap(createGridStorage(
                 root.resolve(TILES_PATH).resolve(String.valueOf(lod)),
                 ".png",
                 Compression.NONE,
-                atomic
-        ));
+                blobStore
+        ), lod));
 
-        this.tileStateStorage = new FileGridStorage(
+        this.tileStateStorage = createGridStorage(
                 root.resolve(RENDER_STATE_PATH),
                 ".tiles.dat",
                 Compression.GZIP,
-                atomic
+                null
         );
 
-        this.chunkStateStorage = new FileGridStorage(
+        this.chunkStateStorage = createGridStorage(
                 root.resolve(RENDER_STATE_PATH).resolve(""),
                 ".chunks.dat",
                 Compression.GZIP,
-                atomic
+                null
+        );
+
+        this.regionStateStorage = createGridStorage(
+                root.resolve(RENDER_STATE_PATH),
+                ".regions.dat",
+                Compression.GZIP,
+                null
         );
 
     }
 
+    private GridStorage createGridStorage(Path root, String suffix, Compression compression, @Nullable FileBlobStore blobStore) {
+        if (packed) {
+            PackedGridStorage storage = new PackedGridStorage(root, suffix, compression);
+            packedGridStorages.add(storage);
+            return storage;
+        }
+        return new FileGridStorage(root, suffix, compression, atomic, blobStore);
+    }
+
     @Override
     public GridStorage hiresTiles() {
         return hiresGridStorage;
@@ -110,6 +168,11 @@ public GridStorage chunkState() {
         return chunkStateStorage;
     }
 
+    @Override
+    public GridStorage regionState() {
+        return regionStateStorage;
+    }
+
     public Path getAssetPath(String name) {
         String[] parts = MapStorage.escapeAssetName(name)
                 .split("/");
@@ -126,6 +189,25 @@ public ItemStorage asset(String name) {
         return new FileItemStorage(getAssetPath(name), Compression.NONE, atomic);
     }
 
+    @Override
+    public Stream<String> listAssets() throws IOException {
+        Path assetRoot = root.resolve("assets");
+        if (!Files.exists(assetRoot)) return Stream.empty();
+
+        return Files.walk(assetRoot)
+                .filter(Files::isRegularFile)
+                .filter(path -> !path.getFileName().toString().endsWith(".filepart"))
+                .map(path -> {
+                    Path relative = assetRoot.relativize(path);
+                    StringBuilder name = new StringBuilder();
+                    for (Path part : relative) {
+                        if (!name.isEmpty()) name.append('/');
+                        name.append(part);
+                    }
+                    return name.toString();
+                });
+    }
+
     @Override
     public ItemStorage settings() {
         return new FileItemStorage(root.resolve("settings.json"), Compression.NONE, atomic);
@@ -146,32 +228,84 @@ public ItemStorage players() {
         return new FileItemStorage(root.resolve(LIVE_PATH).resolve("players.json"), Compression.NONE, atomic);
     }
 
+    @Override
+    public void flush() throws IOException {
+        for (PackedGridStorage storage : packedGridStorages)
+            storage.flush();
+        if (blobStore != null) blobStore.sweepIfNeeded();
+    }
+
     @Override
     public void delete(DoublePredicate onProgress) throws IOException {
+        try {
+            deleteFiles(onProgress);
+        } finally {
+            // the archives would otherwise still hold the items of the deleted files
+            packedGridStorages.forEach(PackedGridStorage::invalidate);
+            tileChangeNotifier.allTilesChanged();
+        }
+    }
+
+    private void deleteFiles(DoublePredicate onProgress) throws IOException {
         if (!Files.exists(root)) return;
 
-        final int subFilesCount;
-        final LinkedList<Path> subFiles;
+        final List<Path> subTrees;
 
-        // collect sub-files to be able to provide progress-updates
-        try (Stream<Path> pathStream = Files.walk(root, 3)) {
-            subFiles = pathStream.collect(Collectors.toCollection(LinkedList::new));
+        // collect sub-trees to be able to provide progress-updates and delete them in parallel
+        try (Stream<Path> pathStream = Files.walk(root, DELETE_SPLIT_DEPTH)) {
+            subTrees = pathStream
+                    .filter(path -> root.relativize(path).getNameCount() == DELETE_SPLIT_DEPTH)
+                    .collect(Collectors.toList());
         }
-        subFilesCount = subFiles.size();
 
-        // delete subFiles first to be able to track the progress and cancel
-        while (!subFiles.isEmpty()) {
-            Path subFile = subFiles.getLast();
-            Files.walkFileTree(subFile, DeletingPathVisitor.INSTANCE);
-            subFiles.removeLast();
-
-            if (!onProgress.test(1d - (subFiles.size() / (double) subFilesCount)))
-                return;
+        // delete sub-trees first to be able to track the progress and cancel
+        final int subTreeCount = subTrees.size();
+        final AtomicInteger deleted = new AtomicInteger();
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        try {
+            BlueMap.THREAD_POOL.submit(() -> subTrees.parallelStream().forEach(subTree -> {
+                if (cancelled.get()) return;
+
+                try {
+                    Files.walkFileTree(subTree, DeletingPathVisitor.INSTANCE);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+
+                double progress = deleted.incrementAndGet() / (double) subTreeCount;
+                synchronized (onProgress) {
+                    if (!cancelled.get() && !onProgress.test(progress))
+                        cancelled.set(true);
+                }
+            })).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while deleting map-storage");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
         }
 
+        if (cancelled.get()) return;
+
         // make sure everything is deleted
         if (Files.exists(root))
             Files.walkFileTree(root, DeletingPathVisitor.INSTANCE);
+
+        if (compressionDictionaries != null)
+            compressionDictionaries.reset();
+    }
+
+    @Override
+    public void addTileChangeListener(TileChangeListener listener) {
+        tileChangeNotifier.addListener(listener);
+    }
+
+    @Override
+    public void removeTileChangeListener(TileChangeListener listener) {
+        tileChangeNotifier.removeListener(listener);
     }
 
     @Override
@@ -40,10 +40,18 @@ public class FileStorage implements Storage {
     private final LoadingCache<String, FileMapStorage> mapStorages;
 
     public FileStorage(Path root, Compression compression, boolean atomic) {
+        this(root, compression, atomic, false);
+    }
+
+    public FileStorage(Path root, Compression compression, boolean atomic, boolean packed) {
+        this(root, compression, atomic, packed, false);
+    }
+
+    public FileStorage(Path root, Compression compression, boolean atomic, boolean packed, boolean deduplicate) {
         this.root = root;
 
         mapStorages = Caffeine.newBuilder()
-                .build(id -> new FileMapStorage(root.resolve(id), compression, atomic));
+                .build(id -> new FileMapStorage(root.resolve(id), compression, atomic, packed, deduplicate));
     }
 
     @Override
@@ -0,0 +1,111 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over all non-directory files in a file-tree.<br>
+ * Directories are listed lazily, and splitting hands off half of the directories that have not been listed yet,
+ * so the tree can be walked in parallel.
+ */
+class FileTreeSpliterator implements Spliterator<Path> {
+
+    private final Deque<Path> directories;
+    private final Deque<Path> files;
+
+    public FileTreeSpliterator(Path root) {
+        this(new ArrayDeque<>());
+        this.directories.add(root);
+    }
+
+    private FileTreeSpliterator(Deque<Path> directories) {
+        this.directories = directories;
+        this.files = new ArrayDeque<>();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Path> action) {
+        while (files.isEmpty()) {
+            Path directory = directories.pollFirst();
+            if (directory == null) return false;
+            list(directory);
+        }
+
+        action.accept(files.pollFirst());
+        return true;
+    }
+
+    @Override
+    public Spliterator<Path> trySplit() {
+        // descend until there are enough directories to split
+        while (directories.size() == 1) {
+            list(directories.pollFirst());
+        }
+
+        int splitCount = directories.size() / 2;
+        if (splitCount == 0) return null;
+
+        Deque<Path> split = new ArrayDeque<>(splitCount);
+        for (int i = 0; i < splitCount; i++)
+            split.add(directories.pollLast());
+
+        return new FileTreeSpliterator(split);
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return DISTINCT | NONNULL;
+    }
+
+    private void list(Path directory) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) directories.add(path);
+                else files.add(path);
+            }
+        } catch (NoSuchFileException ignore) {
+            // directory has been deleted in the meantime
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
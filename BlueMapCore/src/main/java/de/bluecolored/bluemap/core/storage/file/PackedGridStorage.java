@@ -0,0 +1,232 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import de.bluecolored.bluemap.core.util.stream.PooledByteArrayOutputStream;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A {@link GridStorage} that packs the items of {@link TileArchive#LENGTH}x{@link TileArchive#LENGTH} grid-cells
+ * into a single {@link TileArchive}-file, instead of writing one file per item.
+ */
+class PackedGridStorage implements GridStorage {
+
+    private static final String ARCHIVE_SUFFIX = ".pack";
+    private static final int RECENT_ARCHIVES_CACHE_SIZE = 128;
+
+    private final Path root;
+    private final String suffix;
+    private final Compression compression;
+    private final Pattern archiveNamePattern;
+
+    // weak values make sure only one instance exists for each archive-file as long as it is in use
+    private final LoadingCache<Path, TileArchive> archives;
+
+    // keeps the recently used archives loaded, so they are not dropped (and their headers re-read) on every gc
+    private final Cache<Path, TileArchive> recentArchives;
+
+    // archives with changes that are not yet flushed, they are kept here so they can not be dropped before the flush
+    private final Set<TileArchive> dirtyArchives = ConcurrentHashMap.newKeySet();
+
+    PackedGridStorage(Path root, String suffix, Compression compression) {
+        this.root = root;
+        this.suffix = suffix;
+        this.compression = compression;
+        this.archiveNamePattern = Pattern.compile("x(-?\\d+)z(-?\\d+)" + Pattern.quote(suffix + ARCHIVE_SUFFIX));
+        this.archives = Caffeine.newBuilder()
+                .weakValues()
+                .build(TileArchive::new);
+        this.recentArchives = Caffeine.newBuilder()
+                .maximumSize(RECENT_ARCHIVES_CACHE_SIZE)
+                .build();
+    }
+
+    @Override
+    public OutputStream write(int x, int z) throws IOException {
+        return compression.compress(writeArchiveItem(x, z));
+    }
+
+    @Override
+    public @Nullable OutputStream writeCompressed(int x, int z, Compression compression) throws IOException {
+        if (!this.compression.equals(compression)) return null;
+        return writeArchiveItem(x, z);
+    }
+
+    private OutputStream writeArchiveItem(int x, int z) throws IOException {
+        TileArchive archive = archive(x, z);
+        PooledByteArrayOutputStream bytes = new PooledByteArrayOutputStream();
+        return new OnCloseOutputStream(bytes, () -> {
+            try {
+                archive.write(TileArchive.index(x, z), bytes.getBuffer(), bytes.size());
+            } finally {
+                bytes.release();
+                markDirty(archive);
+            }
+        });
+    }
+
+    @Override
+    public @Nullable CompressedInputStream read(int x, int z) throws IOException {
+        TileArchive archive = archive(x, z);
+        int index = TileArchive.index(x, z);
+        TileArchive.SliceInputStream in = archive.read(index);
+        if (in == null) return null;
+
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(archive.getFile()).toMillis();
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+
+        // the content-hash is stored with the item, so it always matches the data that is being read
+        String eTag = Long.toHexString(in.getContentHash());
+        return new CompressedInputStream(in, compression, lastModified, eTag);
+    }
+
+    @Override
+    public void delete(int x, int z) throws IOException {
+        TileArchive archive = archive(x, z);
+        if (!Files.exists(archive.getFile())) return;
+        try {
+            archive.delete(TileArchive.index(x, z));
+        } finally {
+            markDirty(archive);
+        }
+    }
+
+    @Override
+    public boolean exists(int x, int z) throws IOException {
+        TileArchive archive = archive(x, z);
+        if (!Files.exists(archive.getFile())) return false;
+        return archive.has(TileArchive.index(x, z));
+    }
+
+    @Override
+    public ItemStorage cell(int x, int z) {
+        return new GridStorageCell(this, x, z);
+    }
+
+    /**
+     * Lists all archive-files and scans their headers for existing items
+     */
+    @SuppressWarnings("resource")
+    @Override
+    public Stream<Cell> stream() throws IOException {
+        if (!Files.exists(root)) return Stream.empty();
+        return Files.list(root)
+                .flatMap(archiveFile -> {
+                    Matcher matcher = archiveNamePattern.matcher(archiveFile.getFileName().toString());
+                    if (!matcher.matches()) return Stream.empty();
+                    int archiveX = Integer.parseInt(matcher.group(1));
+                    int archiveZ = Integer.parseInt(matcher.group(2));
+
+                    List<Cell> cells = new ArrayList<>();
+                    try {
+                        archive(archiveFile).forEach((x, z) -> cells.add(new GridStorageCell(
+                                this,
+                                archiveX * TileArchive.LENGTH + x,
+                                archiveZ * TileArchive.LENGTH + z
+                        )));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    return cells.stream();
+                });
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    /**
+     * Writes the headers of all archives with changes and forces them to disk
+     */
+    public void flush() throws IOException {
+        IOException exception = null;
+        for (TileArchive archive : dirtyArchives) {
+            dirtyArchives.remove(archive);
+            try {
+                archive.flush();
+            } catch (IOException ex) {
+                markDirty(archive);
+                if (exception == null) exception = ex;
+                else exception.addSuppressed(ex);
+            }
+        }
+        if (exception != null) throw exception;
+    }
+
+    /**
+     * Discards all loaded archive-data, this needs to be called after archive-files have been deleted or modified
+     * externally (e.g. when the whole storage has been deleted)
+     */
+    public void invalidate() {
+        archives.asMap().values().forEach(TileArchive::invalidate);
+        dirtyArchives.clear();
+    }
+
+    private void markDirty(TileArchive archive) {
+        if (archive.isDirty()) dirtyArchives.add(archive);
+    }
+
+    private TileArchive archive(int x, int z) {
+        return archive(getArchivePath(x >> TileArchive.SHIFT, z >> TileArchive.SHIFT));
+    }
+
+    private TileArchive archive(Path archiveFile) {
+        TileArchive archive = archives.get(archiveFile);
+        recentArchives.put(archiveFile, archive);
+        return archive;
+    }
+
+    public Path getArchivePath(int archiveX, int archiveZ) {
+        return root.resolve("x" + archiveX + "z" + archiveZ + suffix + ARCHIVE_SUFFIX);
+    }
+
+}
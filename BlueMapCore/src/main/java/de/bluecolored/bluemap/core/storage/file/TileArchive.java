@@ -0,0 +1,527 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.file;
+
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.util.FileHelper;
+import de.bluecolored.bluemap.core.util.Hash64;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * A single archive-file holding up to {@link #ITEMS_PER_ARCHIVE} items of a {@link PackedGridStorage}.<br>
+ * <br>
+ * The file is divided into sectors of {@link #SECTOR_SIZE} bytes. It starts with two header-slots, each holding a
+ * generation-counter, the sector-offset, byte-length and content-hash of each item and a checksum. Only one of the slots is active
+ * (the valid one with the higher generation), updates are always written to the inactive slot. Item-data is always
+ * written to free sectors and forced to disk <i>before</i> the header is updated, and sectors are only reused once the
+ * header that no longer references them has been forced to disk as well. This way an interrupted write never corrupts
+ * the archive.<br>
+ * <br>
+ * The header is only written (and the file forced to disk) on {@link #flush()}, or once it has had unwritten changes for
+ * longer than {@link #SYNC_INTERVAL_MILLIS}. Until then, the file keeps referencing the previous items.
+ */
+class TileArchive {
+
+    static final int SHIFT = 5;
+    static final int LENGTH = 1 << SHIFT;
+    static final int MASK = LENGTH - 1;
+    static final int ITEMS_PER_ARCHIVE = LENGTH * LENGTH;
+
+    static final int SECTOR_SIZE = 512;
+    static final long SYNC_INTERVAL_MILLIS = 10_000;
+    private static final int MAGIC = 0x424D5441; // "BMTA"
+
+    private static final int HEADER_DATA_SIZE = 4 + 8 + ITEMS_PER_ARCHIVE * 16; // magic + generation + entries
+    static final int HEADER_SLOT_SECTORS = sectorCount(HEADER_DATA_SIZE + 8); // + checksum
+    private static final int HEADER_SECTORS = HEADER_SLOT_SECTORS * 2;
+
+    @Getter private final Path file;
+
+    private boolean loaded = false;
+    private long generation;
+    private long syncedGeneration; // the latest generation of the header that is known to be written to disk
+    private final int[] sectorOffsets = new int[ITEMS_PER_ARCHIVE]; // 0 = no item
+    private final int[] lengths = new int[ITEMS_PER_ARCHIVE];
+    private final long[] contentHashes = new long[ITEMS_PER_ARCHIVE];
+
+    private final BitSet usedSectors = new BitSet();
+
+    // kept open for writing until the archive is flushed
+    private @Nullable FileChannel channel;
+    private boolean dirty = false; // the header has changes that are not yet written to the file
+    private long dirtySince;
+
+    // sectors that are no longer referenced, but might still be read by an open slice or are still referenced by
+    // a header that is not yet synced to disk
+    private final List<PendingFree> pendingFreeSectors = new ArrayList<>();
+    private int openSlices = 0;
+
+    TileArchive(Path file) {
+        this.file = file;
+    }
+
+    static int index(int x, int z) {
+        return (z & MASK) << SHIFT | (x & MASK);
+    }
+
+    public synchronized boolean has(int index) throws IOException {
+        load();
+        return sectorOffsets[index] != 0;
+    }
+
+    /**
+     * Opens an {@link InputStream} reading the item-data directly from the archive-file,
+     * or returns null if there is no item with that index.
+     */
+    public synchronized @Nullable SliceInputStream read(int index) throws IOException {
+        load();
+
+        int sectorOffset = sectorOffsets[index];
+        if (sectorOffset == 0) return null;
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+
+        openSlices++;
+        return new SliceInputStream(channel, (long) sectorOffset * SECTOR_SIZE, lengths[index], contentHashes[index]);
+    }
+
+    public void write(int index, byte[] data, int length) throws IOException {
+        // hash outside the lock, so other items of this archive can be accessed in the meantime
+        long contentHash = new Hash64().put(data, 0, length).get();
+        write(index, data, length, contentHash);
+    }
+
+    private synchronized void write(int index, byte[] data, int length, long contentHash) throws IOException {
+        load();
+        syncIfDue();
+
+        int sectorCount = sectorCount(length);
+        int sectorOffset = allocate(sectorCount);
+
+        try {
+            writeFully(channel(), ByteBuffer.wrap(data, 0, length), (long) sectorOffset * SECTOR_SIZE);
+        } catch (IOException | RuntimeException ex) {
+            usedSectors.clear(sectorOffset, sectorOffset + sectorCount);
+            throw ex;
+        }
+
+        int previousOffset = sectorOffsets[index];
+        int previousLength = lengths[index];
+
+        sectorOffsets[index] = sectorOffset;
+        lengths[index] = length;
+        contentHashes[index] = contentHash;
+        markDirty();
+
+        if (previousOffset != 0)
+            free(previousOffset, previousLength);
+    }
+
+    /**
+     * Removes the item, returns true if the archive is empty afterwards
+     */
+    public synchronized boolean delete(int index) throws IOException {
+        load();
+
+        int previousOffset = sectorOffsets[index];
+        int previousLength = lengths[index];
+        long previousContentHash = contentHashes[index];
+        if (previousOffset == 0) return isEmpty();
+
+        sectorOffsets[index] = 0;
+        lengths[index] = 0;
+        contentHashes[index] = 0;
+
+        if (isEmpty() && openSlices == 0) {
+            try {
+                closeChannel();
+                Files.deleteIfExists(file);
+            } catch (IOException | RuntimeException ex) {
+                sectorOffsets[index] = previousOffset;
+                lengths[index] = previousLength;
+                contentHashes[index] = previousContentHash;
+                throw ex;
+            }
+            reset();
+            return true;
+        }
+
+        markDirty();
+        free(previousOffset, previousLength);
+        syncIfDue();
+        return false;
+    }
+
+    /**
+     * Writes the header and forces all changes to disk, afterwards the archive-file contains all written items.<br>
+     * This also closes the file-channel that is kept open for writing.
+     */
+    public synchronized void flush() throws IOException {
+        try {
+            sync();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void syncIfDue() throws IOException {
+        if (dirty && System.currentTimeMillis() - dirtySince >= SYNC_INTERVAL_MILLIS)
+            sync();
+    }
+
+    private void sync() throws IOException {
+        if (!dirty) return;
+
+        FileChannel channel = channel();
+
+        // make sure the data is on disk before the header references it
+        channel.force(false);
+
+        long previousGeneration = generation;
+        try {
+            writeHeader(channel);
+            channel.force(false);
+        } catch (IOException | RuntimeException ex) {
+            // the next attempt has to write to the same (inactive) slot again
+            generation = previousGeneration;
+            throw ex;
+        }
+
+        syncedGeneration = generation;
+        dirty = false;
+        releasePendingSectors();
+    }
+
+    private void markDirty() {
+        if (dirty) return;
+        dirty = true;
+        dirtySince = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns true if this archive has changes that are not yet written to the archive-file
+     */
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Calls the consumer with the x and z position (relative to the archive) of each item in this archive
+     */
+    public synchronized void forEach(BiConsumer<Integer, Integer> consumer) throws IOException {
+        load();
+        for (int i = 0; i < ITEMS_PER_ARCHIVE; i++) {
+            if (sectorOffsets[i] != 0)
+                consumer.accept(i & MASK, i >> SHIFT);
+        }
+    }
+
+    private boolean isEmpty() {
+        for (int offset : sectorOffsets)
+            if (offset != 0) return false;
+        return true;
+    }
+
+    private int allocate(int sectorCount) {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            int end = usedSectors.nextSetBit(start);
+            if (end == -1 || end - start >= sectorCount) break;
+            start = usedSectors.nextClearBit(end);
+        }
+
+        usedSectors.set(start, start + sectorCount);
+        return start;
+    }
+
+    /**
+     * Marks the sectors to be freed as soon as they are neither read nor referenced by a header on disk anymore.
+     */
+    private void free(int sectorOffset, int length) {
+        // the next header that is written is the first one not referencing the sectors
+        pendingFreeSectors.add(new PendingFree(sectorOffset, sectorCount(length), generation + 1));
+    }
+
+    private void releasePendingSectors() {
+        if (openSlices > 0 || pendingFreeSectors.isEmpty()) return;
+
+        boolean released = pendingFreeSectors.removeIf(pending -> {
+            if (pending.generation > syncedGeneration) return false;
+            usedSectors.clear(pending.sectorOffset, pending.sectorOffset + pending.sectorCount);
+            return true;
+        });
+        if (!released) return;
+
+        try {
+            truncate();
+        } catch (IOException ex) {
+            Logger.global.logDebug("Failed to truncate tile-archive '" + file + "': " + ex);
+        }
+    }
+
+    private synchronized void closeSlice() {
+        openSlices--;
+        releasePendingSectors();
+    }
+
+    /**
+     * Discards all loaded data of this archive (including changes that have not been flushed yet), so it will be loaded
+     * from the file again on the next access.<br>
+     * This needs to be called if the archive-file has been deleted or modified externally.
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+        dirty = false;
+
+        try {
+            closeChannel();
+        } catch (IOException ex) {
+            Logger.global.logDebug("Failed to close tile-archive '" + file + "': " + ex);
+        }
+    }
+
+    /**
+     * Cuts off free sectors at the end of the file
+     */
+    private void truncate() throws IOException {
+        long size = (long) Math.max(usedSectors.length(), HEADER_SECTORS) * SECTOR_SIZE;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > size) channel.truncate(size);
+        } catch (NoSuchFileException ignore) {}
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            FileHelper.createDirectories(file.toAbsolutePath().normalize().getParent());
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        }
+        return channel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void writeHeader(FileChannel channel) throws IOException {
+        generation++;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_DATA_SIZE + 8);
+        header.putInt(MAGIC);
+        header.putLong(generation);
+        for (int i = 0; i < ITEMS_PER_ARCHIVE; i++) {
+            header.putInt(sectorOffsets[i]);
+            header.putInt(lengths[i]);
+            header.putLong(contentHashes[i]);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_DATA_SIZE);
+        header.putLong(crc.getValue());
+        header.flip();
+
+        int slot = (int) (generation & 1);
+        writeFully(channel, header, (long) slot * HEADER_SLOT_SECTORS * SECTOR_SIZE);
+    }
+
+    private void load() throws IOException {
+        if (loaded) return;
+        reset();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer best = null;
+            long bestGeneration = -1;
+
+            for (int slot = 0; slot < 2; slot++) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_DATA_SIZE + 8);
+                readFully(channel, header, (long) slot * HEADER_SLOT_SECTORS * SECTOR_SIZE);
+                header.flip();
+                if (header.remaining() < HEADER_DATA_SIZE + 8) continue;
+
+                CRC32 crc = new CRC32();
+                crc.update(header.array(), 0, HEADER_DATA_SIZE);
+                if (header.getInt(0) != MAGIC || header.getLong(HEADER_DATA_SIZE) != crc.getValue()) continue;
+
+                long headerGeneration = header.getLong(4);
+                if (headerGeneration > bestGeneration) {
+                    best = header;
+                    bestGeneration = headerGeneration;
+                }
+            }
+
+            if (best == null) {
+                if (channel.size() > 0)
+                    Logger.global.logWarning("Tile-archive '" + file + "' has no valid header and will be overwritten!");
+            } else {
+                generation = bestGeneration;
+                syncedGeneration = bestGeneration;
+                best.position(4 + 8);
+                for (int i = 0; i < ITEMS_PER_ARCHIVE; i++) {
+                    int sectorOffset = best.getInt();
+                    int length = best.getInt();
+                    long contentHash = best.getLong();
+                    if (sectorOffset < HEADER_SECTORS || length < 0) continue;
+
+                    sectorOffsets[i] = sectorOffset;
+                    lengths[i] = length;
+                    contentHashes[i] = contentHash;
+                    usedSectors.set(sectorOffset, sectorOffset + sectorCount(length));
+                }
+            }
+        } catch (NoSuchFileException ignore) {}
+
+        loaded = true;
+    }
+
+    private void reset() {
+        dirty = false;
+        generation = 0;
+        syncedGeneration = 0;
+        pendingFreeSectors.clear();
+        for (int i = 0; i < ITEMS_PER_ARCHIVE; i++) {
+            sectorOffsets[i] = 0;
+            lengths[i] = 0;
+            contentHashes[i] = 0;
+        }
+        usedSectors.clear();
+        usedSectors.set(0, HEADER_SECTORS);
+    }
+
+    private record PendingFree (int sectorOffset, int sectorCount, long generation) {}
+
+    private static int sectorCount(int length) {
+        return Math.max(1, (length + SECTOR_SIZE - 1) / SECTOR_SIZE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+    }
+
+    /**
+     * Reads a slice of the archive-file directly from the file-channel
+     */
+    class SliceInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+        private final long contentHash;
+        private boolean closed = false;
+
+        SliceInputStream(FileChannel channel, long position, int length, long contentHash) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+            this.contentHash = contentHash;
+        }
+
+        /**
+         * Returns the content-hash that has been stored in the header together with the item that is being read
+         */
+        long getContentHash() {
+            return contentHash;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read <= 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (position >= end) return -1;
+
+            len = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (read < 0) return -1;
+
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+
+            try {
+                channel.close();
+            } finally {
+                closeSlice();
+            }
+        }
+
+    }
+
+}
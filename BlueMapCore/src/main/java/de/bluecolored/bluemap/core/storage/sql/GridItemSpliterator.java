@@ -0,0 +1,143 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.sql;
+
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet.GridItemBounds;
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet.TilePosition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the positions of grid-items, loading them page-wise using keyset-pagination
+ * (each page continues after the last position of the previous page).<br>
+ * The spliterator covers a range of x-coordinates and splits by halving that range,
+ * so streams over a grid-storage can be processed in parallel.
+ */
+public class GridItemSpliterator implements Spliterator<TilePosition> {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final PageLoader pageLoader;
+    private TilePosition cursor;
+    private int maxX;
+    private long estimatedSize;
+
+    private TilePosition[] page;
+    private int pos;
+    private boolean exhausted;
+
+    /**
+     * Creates a new spliterator covering all items within the given bounds
+     */
+    public GridItemSpliterator(PageLoader pageLoader, GridItemBounds bounds) {
+        // (there can't be a grid-item at the very lowest z-position, so we can start after that)
+        this(pageLoader, new TilePosition(bounds.minX(), Integer.MIN_VALUE), bounds.maxX(), bounds.count());
+    }
+
+    private GridItemSpliterator(PageLoader pageLoader, TilePosition cursor, int maxX, long estimatedSize) {
+        this.pageLoader = pageLoader;
+        this.cursor = cursor;
+        this.maxX = maxX;
+        this.estimatedSize = estimatedSize;
+        this.page = new TilePosition[0];
+        this.pos = 0;
+        this.exhausted = false;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super TilePosition> action) {
+        if (pos >= page.length) {
+            if (exhausted || !loadPage()) return false;
+        }
+
+        action.accept(page[pos++]);
+        if (estimatedSize > 0) estimatedSize--;
+        return true;
+    }
+
+    @Override
+    public Spliterator<TilePosition> trySplit() {
+        if (exhausted) return null;
+
+        // only split the range that has not been loaded yet
+        long from = cursor.x(), to = maxX;
+        if (to - from < 2) return null;
+
+        int mid = (int) (from + (to - from) / 2);
+        long splitSize = estimatedSize / 2;
+
+        // the new spliterator covers everything with x > mid
+        GridItemSpliterator split = new GridItemSpliterator(
+                pageLoader,
+                new TilePosition(mid, Integer.MAX_VALUE),
+                maxX,
+                splitSize
+        );
+
+        this.maxX = mid;
+        this.estimatedSize -= splitSize;
+        return split;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimatedSize;
+    }
+
+    @Override
+    public int characteristics() {
+        return DISTINCT | NONNULL;
+    }
+
+    private boolean loadPage() {
+        try {
+            page = pageLoader.load(cursor, maxX, PAGE_SIZE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        pos = 0;
+        if (page.length < PAGE_SIZE) exhausted = true;
+        if (page.length == 0) return false;
+
+        cursor = page[page.length - 1];
+        return true;
+    }
+
+    @FunctionalInterface
+    public interface PageLoader {
+
+        /**
+         * Loads up to count positions ordered by x and z, starting after the given position (exclusive) and
+         * ending with the given maximum x-coordinate (inclusive)
+         */
+        TilePosition[] load(TilePosition after, int maxX, int count) throws IOException;
+
+    }
+
+}
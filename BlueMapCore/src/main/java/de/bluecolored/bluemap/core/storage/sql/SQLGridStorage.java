@@ -31,6 +31,7 @@
 import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import de.bluecolored.bluemap.core.util.stream.PooledByteArrayOutputStream;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Nullable;
 
@@ -48,9 +49,18 @@ public class SQLGridStorage implements GridStorage {
 
     @Override
     public OutputStream write(int x, int z) throws IOException {
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PooledByteArrayOutputStream bytes = new PooledByteArrayOutputStream();
         return new OnCloseOutputStream(compression.compress(bytes),
-                () -> sql.writeGridItem(map, storage, x, z, compression, bytes.toByteArray())
+                () -> sql.writeGridItem(map, storage, x, z, compression, bytes)
+        );
+    }
+
+    @Override
+    public @Nullable OutputStream writeCompressed(int x, int z, Compression compression) throws IOException {
+        if (!this.compression.equals(compression)) return null;
+        PooledByteArrayOutputStream bytes = new PooledByteArrayOutputStream();
+        return new OnCloseOutputStream(bytes,
+                () -> sql.writeGridItem(map, storage, x, z, compression, bytes)
         );
     }
 
@@ -58,7 +68,7 @@ public OutputStream write(int x, int z) throws IOException {
     public @Nullable CompressedInputStream read(int x, int z) throws IOException {
         byte[] data = sql.readGridItem(map, storage, x, z, compression);
         if (data == null) return null;
-        return new CompressedInputStream(new ByteArrayInputStream(data), compression);
+        return new CompressedInputStream(data, compression, -1, null);
     }
 
     @Override
@@ -78,12 +88,14 @@ public ItemStorage cell(int x, int z) {
 
     @Override
     public Stream<Cell> stream() throws IOException {
+        CommandSet.GridItemBounds bounds = sql.gridItemBounds(map, storage, compression);
+        if (bounds == null) return Stream.empty();
+
         return StreamSupport.stream(
-                new PageSpliterator<>(page -> {
-                    try {
-                        return sql.listGridItems(map, storage, compression, page * 1000, 1000);
-                    } catch (IOException ex) { throw new RuntimeException(ex); }
-                }),
+                new GridItemSpliterator(
+                        (after, maxX, count) -> sql.listGridItems(map, storage, compression, after, maxX, count),
+                        bounds
+                ),
                 false
         ).map(tilePosition -> new GridStorageCell(this, tilePosition.x(), tilePosition.z()));
     }
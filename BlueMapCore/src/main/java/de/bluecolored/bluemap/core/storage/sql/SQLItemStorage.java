@@ -30,6 +30,7 @@
 import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.util.stream.OnCloseOutputStream;
+import de.bluecolored.bluemap.core.util.stream.PooledByteArrayOutputStream;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Nullable;
 
@@ -45,9 +46,18 @@ public class SQLItemStorage implements ItemStorage {
 
     @Override
     public OutputStream write() throws IOException {
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PooledByteArrayOutputStream bytes = new PooledByteArrayOutputStream();
         return new OnCloseOutputStream(compression.compress(bytes),
-                () -> sql.writeItem(map, storage, compression, bytes.toByteArray())
+                () -> sql.writeItem(map, storage, compression, bytes)
+        );
+    }
+
+    @Override
+    public @Nullable OutputStream writeCompressed(Compression compression) throws IOException {
+        if (!this.compression.equals(compression)) return null;
+        PooledByteArrayOutputStream bytes = new PooledByteArrayOutputStream();
+        return new OnCloseOutputStream(bytes,
+                () -> sql.writeItem(map, storage, compression, bytes)
         );
     }
 
@@ -55,7 +65,7 @@ public OutputStream write() throws IOException {
     public @Nullable CompressedInputStream read() throws IOException {
         byte[] data = sql.readItem(map, storage, compression);
         if (data == null) return null;
-        return new CompressedInputStream(new ByteArrayInputStream(data), compression);
+        return new CompressedInputStream(data, compression, -1, null);
     }
 
     @Override
@@ -27,28 +27,42 @@
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import de.bluecolored.bluemap.core.storage.GridStorage;
+import de.bluecolored.bluemap.core.storage.GridStorageCache;
 import de.bluecolored.bluemap.core.storage.ItemStorage;
 import de.bluecolored.bluemap.core.storage.KeyedMapStorage;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
 import de.bluecolored.bluemap.core.util.Key;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.DoublePredicate;
+import java.util.stream.Stream;
 
 public class SQLMapStorage extends KeyedMapStorage {
 
+    private static final String ASSET_KEY_PREFIX = "asset/";
+    private static final int LIST_PAGE_SIZE = 1000;
+
     private final String mapId;
     private final CommandSet sql;
+    private final @Nullable GridStorageCache readCache;
 
     private final Cache<Key, ItemStorage> itemStorages = Caffeine.newBuilder().build();
     private final Cache<Key, GridStorage> gridStorages = Caffeine.newBuilder().build();
 
     public SQLMapStorage(String mapId, CommandSet sql, Compression compression) {
+        this(mapId, sql, compression, null);
+    }
+
+    public SQLMapStorage(String mapId, CommandSet sql, Compression compression, @Nullable GridStorageCache readCache) {
         super(compression);
 
         this.mapId = mapId;
         this.sql = sql;
+        this.readCache = readCache;
     }
 
     @Override
@@ -58,30 +72,60 @@ public ItemStorage item(Key key, Compression compression) {
 
     @Override
     public GridStorage grid(Key key, Compression compression) {
-        return gridStorages.get(key, k -> new SQLGridStorage(sql, mapId, key, compression));
+        return gridStorages.get(key, k -> {
+            GridStorage storage = new SQLGridStorage(sql, mapId, key, compression);
+            return readCache != null ? readCache.wrap(storage) : storage;
+        });
     }
 
     @Override
-    public void delete(DoublePredicate onProgress) throws IOException {
-
-        // delete tiles in 1000er steps to track progress
-        int tileCount = sql.countMapGridsItems(mapId);
-        if (tileCount > 0) {
-            int totalDeleted = 0;
-            int deleted = 0;
-            do {
-                deleted = sql.purgeMapGrids(mapId, 1000);
-                totalDeleted += deleted;
-
-                if (!onProgress.test((double) totalDeleted / tileCount))
-                    return;
+    public Stream<String> listAssets() throws IOException {
+        List<String> assets = new ArrayList<>();
+        Key[] page;
+        int start = 0;
+        do {
+            page = sql.listItems(mapId, start, LIST_PAGE_SIZE);
+            for (Key key : page) {
+                if (key.getNamespace().equals(Key.BLUEMAP_NAMESPACE) && key.getValue().startsWith(ASSET_KEY_PREFIX))
+                    assets.add(key.getValue().substring(ASSET_KEY_PREFIX.length()));
+            }
+            start += page.length;
+        } while (page.length == LIST_PAGE_SIZE);
+        return assets.stream();
+    }
 
-            } while (deleted > 0 && totalDeleted < tileCount);
+    @Override
+    public void delete(DoublePredicate onProgress) throws IOException {
+        try {
+            // delete tiles in 1000er steps to track progress
+            int tileCount = sql.countMapGridsItems(mapId);
+            if (tileCount > 0) {
+                int totalDeleted = 0;
+                int deleted = 0;
+                do {
+                    deleted = sql.purgeMapGrids(mapId, 1000);
+                    totalDeleted += deleted;
+
+                    if (!onProgress.test((double) totalDeleted / tileCount))
+                        return;
+
+                } while (deleted > 0 && totalDeleted < tileCount);
+            }
+
+            // finally purge the map
+            sql.purgeMap(mapId);
+            resetCompression();
+
+            if (readCache != null)
+                readCache.invalidateAll();
+        } finally {
+            tileChangeNotifier.allTilesChanged();
         }
+    }
 
-        // finally purge the map
-        sql.purgeMap(mapId);
-
+    @Override
+    public void flush() throws IOException {
+        sql.flush();
     }
 
     @Override
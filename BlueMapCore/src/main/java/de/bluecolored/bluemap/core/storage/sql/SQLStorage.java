@@ -26,17 +26,18 @@
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import de.bluecolored.bluemap.core.storage.GridStorageCache;
 import de.bluecolored.bluemap.core.storage.MapStorage;
 import de.bluecolored.bluemap.core.storage.Storage;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet;
-import lombok.RequiredArgsConstructor;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-@RequiredArgsConstructor
 public class SQLStorage implements Storage {
 
     private final CommandSet sql;
@@ -44,13 +45,28 @@ public class SQLStorage implements Storage {
     private final LoadingCache<String, SQLMapStorage> mapStorages = Caffeine.newBuilder()
             .build(this::create);
 
+    /**
+     * The optional read-cache shared by all grid-storages of this storage
+     */
+    @Getter private final @Nullable GridStorageCache readCache;
+
+    public SQLStorage(CommandSet sql, Compression compression) {
+        this(sql, compression, null);
+    }
+
+    public SQLStorage(CommandSet sql, Compression compression, @Nullable GridStorageCache readCache) {
+        this.sql = sql;
+        this.compression = compression;
+        this.readCache = readCache;
+    }
+
     @Override
     public void initialize() throws IOException {
         sql.initializeTables();
     }
 
     private SQLMapStorage create(String mapId) {
-        return new SQLMapStorage(mapId, sql, compression);
+        return new SQLMapStorage(mapId, sql, compression, readCache);
     }
 
     @Override
@@ -26,9 +26,13 @@
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.storage.KeyedMapStorage;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.storage.sql.Database;
 import de.bluecolored.bluemap.core.util.Key;
+import de.bluecolored.bluemap.core.util.stream.PooledByteArrayOutputStream;
 import lombok.RequiredArgsConstructor;
 import org.intellij.lang.annotations.Language;
 import org.jetbrains.annotations.Nullable;
@@ -36,7 +40,15 @@
 import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @SuppressWarnings("SqlSourceToSinkFlow")
 @RequiredArgsConstructor
@@ -53,6 +65,21 @@ public abstract class AbstractCommandSet implements CommandSet {
     protected final LoadingCache<Key, Integer> gridStorageKeys = Caffeine.newBuilder()
             .build(this::findOrCreateGridStorageKey);
 
+    // grid-writes are collected here and written to the database in batches (write-behind)
+    private static final int GRID_WRITE_BATCH_SIZE = 100;
+    private static final long GRID_WRITE_FLUSH_THRESHOLD = 4L * 1024 * 1024; // 4 MiB
+    private static final long GRID_WRITE_MAX_PENDING = 32L * 1024 * 1024; // 32 MiB
+
+    private final Map<GridItemKey, PendingGridWrite> pendingGridWrites = new ConcurrentHashMap<>();
+    private final AtomicLong pendingGridWriteBytes = new AtomicLong();
+    private final AtomicBoolean gridWriteFlushScheduled = new AtomicBoolean();
+
+    /**
+     * The write-lock is held while pending grid-writes are being written to the database,
+     * the read-lock is held by operations that need to wait for in-flight writes to complete (e.g. deletions)
+     */
+    private final ReadWriteLock gridWriteFlushLock = new ReentrantReadWriteLock();
+
     @Language("sql")
     public abstract String createMapTableStatement();
 
@@ -86,15 +113,22 @@ public void initializeTables() throws IOException {
     public abstract String itemStorageWriteStatement();
 
     @Override
-    public void writeItem(String mapId, Key key, Compression compression, byte[] bytes) throws IOException {
-        int mapKey = mapKey(mapId);
-        int storageKey = itemStorageKey(key);
-        int compressionKey = compressionKey(compression);
-        db.run(connection -> executeUpdate(connection,
-                itemStorageWriteStatement(),
-                mapKey, storageKey, compressionKey,
-                bytes
-        ));
+    public void writeItem(String mapId, Key key, Compression compression, PooledByteArrayOutputStream data) throws IOException {
+        try {
+            int mapKey = mapKey(mapId);
+            int storageKey = itemStorageKey(key);
+            int compressionKey = compressionKey(compression);
+            db.run(connection -> {
+                PreparedStatement statement = connection.prepareStatement(itemStorageWriteStatement());
+                statement.setInt(1, mapKey);
+                statement.setInt(2, storageKey);
+                statement.setInt(3, compressionKey);
+                statement.setBinaryStream(4, data.toInputStream(), data.size());
+                statement.executeUpdate();
+            });
+        } finally {
+            data.release();
+        }
     }
 
     @Language("sql")
@@ -146,22 +180,158 @@ public boolean hasItem(String mapId, Key key, Compression compression) throws IO
         });
     }
 
+    @Language("sql")
+    public abstract String itemStorageListStatement();
+
+    @Override
+    public Key[] listItems(String mapId, int start, int count) throws IOException {
+        int mapKey = mapKey(mapId);
+        return db.run(connection -> {
+            ResultSet result = executeQuery(connection,
+                    itemStorageListStatement(),
+                    mapKey, count, start
+            );
+            List<Key> keys = new ArrayList<>();
+            while (result.next()) {
+                keys.add(Key.parse(result.getString(1)));
+            }
+            return keys.toArray(Key[]::new);
+        });
+    }
+
     @Language("sql")
     public abstract String gridStorageWriteStatement();
 
+    /**
+     * Queues the grid-item to be written with the next batch.<br>
+     * Repeated writes to the same item before it has been written are coalesced, only the last one is written.
+     * If too much data is pending, this method blocks and flushes all pending writes in the calling thread.
+     */
     @Override
     public void writeGridItem(
             String mapId, Key key, int x, int z, Compression compression,
-            byte[] bytes
+            PooledByteArrayOutputStream data
     ) throws IOException {
         int mapKey = mapKey(mapId);
         int storageKey = gridStorageKey(key);
         int compressionKey = compressionKey(compression);
-        db.run(connection -> executeUpdate(connection,
-                gridStorageWriteStatement(),
-                mapKey, storageKey, x, z, compressionKey,
-                bytes
-        ));
+
+        PendingGridWrite write = new PendingGridWrite(compressionKey, data, KeyedMapStorage.isRenderStateKey(key));
+        PendingGridWrite previous = pendingGridWrites.put(new GridItemKey(mapKey, storageKey, x, z), write);
+        long pendingBytes = pendingGridWriteBytes.addAndGet(
+                write.heldBytes() - (previous != null ? previous.heldBytes() : 0)
+        );
+        if (previous != null) previous.discard();
+
+        // backpressure
+        if (pendingBytes >= GRID_WRITE_MAX_PENDING) {
+            flush();
+            return;
+        }
+
+        if (
+                (pendingBytes >= GRID_WRITE_FLUSH_THRESHOLD || pendingGridWrites.size() >= GRID_WRITE_BATCH_SIZE) &&
+                gridWriteFlushScheduled.compareAndSet(false, true)
+        ) {
+            CompletableFuture.runAsync(() -> {
+                gridWriteFlushScheduled.set(false);
+                try {
+                    flush();
+                } catch (IOException ex) {
+                    Logger.global.logError("Failed to write pending grid-items to the database!", ex);
+                }
+            }, BlueMap.THREAD_POOL);
+        }
+    }
+
+    /**
+     * Writes all pending grid-items.<br>
+     * The render-state items are written last, and only the ones that have been queued before the other items are
+     * written. Render-state references the data of the other items (e.g. by a content-hash), this way it never gets
+     * persisted before the data it is referencing, even if the flush is interrupted.
+     */
+    @Override
+    public void flush() throws IOException {
+        gridWriteFlushLock.writeLock().lock();
+        try {
+            List<Map.Entry<GridItemKey, PendingGridWrite>> renderState = new ArrayList<>();
+            for (Map.Entry<GridItemKey, PendingGridWrite> entry : pendingGridWrites.entrySet()) {
+                if (entry.getValue().renderState())
+                    renderState.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+
+            List<Map.Entry<GridItemKey, PendingGridWrite>> batch = new ArrayList<>(GRID_WRITE_BATCH_SIZE);
+            for (Map.Entry<GridItemKey, PendingGridWrite> entry : pendingGridWrites.entrySet()) {
+                if (entry.getValue().renderState()) continue;
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+
+                if (batch.size() >= GRID_WRITE_BATCH_SIZE) {
+                    writeGridItemBatch(batch);
+                    batch.clear();
+                }
+            }
+
+            for (Map.Entry<GridItemKey, PendingGridWrite> entry : renderState) {
+                batch.add(entry);
+
+                if (batch.size() >= GRID_WRITE_BATCH_SIZE) {
+                    writeGridItemBatch(batch);
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty())
+                writeGridItemBatch(batch);
+        } finally {
+            gridWriteFlushLock.writeLock().unlock();
+        }
+    }
+
+    private void writeGridItemBatch(List<Map.Entry<GridItemKey, PendingGridWrite>> batch) throws IOException {
+        // claim the data, so it is not released if the entries get replaced or discarded while they are written
+        batch.removeIf(entry -> !entry.getValue().claim());
+        if (batch.isEmpty()) return;
+
+        db.run(connection -> {
+            PreparedStatement statement = connection.prepareStatement(gridStorageWriteStatement());
+            for (Map.Entry<GridItemKey, PendingGridWrite> entry : batch) {
+                GridItemKey key = entry.getKey();
+                PendingGridWrite write = entry.getValue();
+                statement.setInt(1, key.map());
+                statement.setInt(2, key.storage());
+                statement.setInt(3, key.x());
+                statement.setInt(4, key.z());
+                statement.setInt(5, write.compression());
+                statement.setBinaryStream(6, write.data().toInputStream(), write.data().size());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        });
+
+        // only remove the written entries if they have not been replaced in the meantime,
+        // either way the written data is not referenced by the queue anymore and can be released
+        for (Map.Entry<GridItemKey, PendingGridWrite> entry : batch) {
+            if (pendingGridWrites.remove(entry.getKey(), entry.getValue()))
+                pendingGridWriteBytes.addAndGet(-entry.getValue().heldBytes());
+            entry.getValue().data().release();
+        }
+    }
+
+    private void discardPendingGridWrites(int mapKey) {
+        pendingGridWrites.entrySet().removeIf(entry -> {
+            if (entry.getKey().map() != mapKey) return false;
+            pendingGridWriteBytes.addAndGet(-entry.getValue().heldBytes());
+            entry.getValue().discard();
+            return true;
+        });
+    }
+
+    private void discardPendingGridWrite(GridItemKey key) {
+        PendingGridWrite previous = pendingGridWrites.remove(key);
+        if (previous != null) {
+            pendingGridWriteBytes.addAndGet(-previous.heldBytes());
+            previous.discard();
+        }
     }
 
     @Language("sql")
@@ -174,6 +344,18 @@ public void writeGridItem(
         int mapKey = mapKey(mapId);
         int storageKey = gridStorageKey(key);
         int compressionKey = compressionKey(compression);
+
+        GridItemKey itemKey = new GridItemKey(mapKey, storageKey, x, z);
+        PendingGridWrite pending;
+        while ((pending = pendingGridWrites.get(itemKey)) != null) {
+            if (pending.compression() != compressionKey) return null;
+            byte[] bytes = Arrays.copyOf(pending.data().getBuffer(), pending.data().size());
+
+            // the buffer is only released after it got removed from the queue,
+            // so if it is still queued we can be sure the copy is valid
+            if (pendingGridWrites.get(itemKey) == pending) return bytes;
+        }
+
         return db.run(connection -> {
             ResultSet result = executeQuery(connection,
                     gridStorageReadStatement(),
@@ -193,10 +375,18 @@ public void deleteGridItem(
     ) throws IOException {
         int mapKey = mapKey(mapId);
         int storageKey = gridStorageKey(key);
-        db.run(connection -> executeUpdate(connection,
-                gridStorageDeleteStatement(),
-                mapKey, storageKey, x, z
-        ));
+
+        // wait for in-flight writes, so they can not re-create the item after it has been deleted
+        gridWriteFlushLock.readLock().lock();
+        try {
+            discardPendingGridWrite(new GridItemKey(mapKey, storageKey, x, z));
+            db.run(connection -> executeUpdate(connection,
+                    gridStorageDeleteStatement(),
+                    mapKey, storageKey, x, z
+            ));
+        } finally {
+            gridWriteFlushLock.readLock().unlock();
+        }
     }
 
     @Language("sql")
@@ -209,6 +399,11 @@ public boolean hasGridItem(
         int mapKey = mapKey(mapId);
         int storageKey = gridStorageKey(key);
         int compressionKey = compressionKey(compression);
+
+        PendingGridWrite pending = pendingGridWrites.get(new GridItemKey(mapKey, storageKey, x, z));
+        if (pending != null)
+            return pending.compression() == compressionKey;
+
         return db.run(connection -> {
             ResultSet result = executeQuery(connection,
                     gridStorageHasStatement(),
@@ -225,8 +420,10 @@ public boolean hasGridItem(
     @Override
     public TilePosition[] listGridItems(
             String mapId, Key key, Compression compression,
-            int start, int count
+            TilePosition after, int maxX, int count
     ) throws IOException {
+        flush();
+
         int mapKey = mapKey(mapId);
         int storageKey = gridStorageKey(key);
         int compressionKey = compressionKey(compression);
@@ -234,7 +431,8 @@ public TilePosition[] listGridItems(
             ResultSet result = executeQuery(connection,
                     gridStorageListStatement(),
                     mapKey, storageKey, compressionKey,
-                    count, start
+                    after.x(), after.x(), after.z(), maxX,
+                    count
             );
 
             TilePosition[] tiles = new TilePosition[count];
@@ -256,11 +454,38 @@ public TilePosition[] listGridItems(
         });
     }
 
+    @Language("sql")
+    public abstract String gridStorageBoundsStatement();
+
+    @Override
+    public @Nullable GridItemBounds gridItemBounds(
+            String mapId, Key key, Compression compression
+    ) throws IOException {
+        flush();
+
+        int mapKey = mapKey(mapId);
+        int storageKey = gridStorageKey(key);
+        int compressionKey = compressionKey(compression);
+        return db.run(connection -> {
+            ResultSet result = executeQuery(connection,
+                    gridStorageBoundsStatement(),
+                    mapKey, storageKey, compressionKey
+            );
+            if (!result.next()) throw new IllegalStateException("Bounds query returned empty result!");
+
+            int count = result.getInt(3);
+            if (count <= 0) return null;
+            return new GridItemBounds(result.getInt(1), result.getInt(2), count);
+        });
+    }
+
     @Language("sql")
     public abstract String gridStorageCountMapItemsStatement();
 
     @Override
     public int countMapGridsItems(String mapId) throws IOException {
+        flush();
+
         int mapKey = mapKey(mapId);
         return db.run(connection -> {
             ResultSet result = executeQuery(connection,
@@ -278,12 +503,19 @@ public int countMapGridsItems(String mapId) throws IOException {
     @Override
     public int purgeMapGrids(String mapId, int limit) throws IOException {
         int mapKey = mapKey(mapId);
-        return db.run(connection -> {
-            return executeUpdate(connection,
-                    gridStoragePurgeMapStatement(),
-                    mapKey, limit
-            );
-        });
+
+        gridWriteFlushLock.readLock().lock();
+        try {
+            discardPendingGridWrites(mapKey);
+            return db.run(connection -> {
+                return executeUpdate(connection,
+                        gridStoragePurgeMapStatement(),
+                        mapKey, limit
+                );
+            });
+        } finally {
+            gridWriteFlushLock.readLock().unlock();
+        }
     }
 
     @Language("sql")
@@ -293,10 +525,18 @@ public int purgeMapGrids(String mapId, int limit) throws IOException {
     public void purgeMap(String mapId) throws IOException {
         synchronized (mapKeys) {
             int mapKey = mapKey(mapId);
-            db.run(connection -> executeUpdate(connection,
-                    purgeMapStatement(),
-                    mapKey
-            ));
+
+            gridWriteFlushLock.readLock().lock();
+            try {
+                discardPendingGridWrites(mapKey);
+                db.run(connection -> executeUpdate(connection,
+                        purgeMapStatement(),
+                        mapKey
+                ));
+            } finally {
+                gridWriteFlushLock.readLock().unlock();
+            }
+
             mapKeys.invalidate(mapId);
         }
     }
@@ -485,6 +725,12 @@ public boolean isClosed() {
 
     @Override
     public void close() throws IOException {
+        try {
+            flush();
+        } catch (IOException ex) {
+            Logger.global.logError("Failed to write pending grid-items to the database before closing!", ex);
+        }
+
         db.close();
     }
 
@@ -506,4 +752,64 @@ private static PreparedStatement prepareStatement(Connection connection, @Langua
         return statement;
     }
 
+    private record GridItemKey (int map, int storage, int x, int z) {}
+
+    private static class PendingGridWrite {
+
+        private final int compression;
+        private final PooledByteArrayOutputStream data;
+        private final boolean renderState;
+        private final int heldBytes;
+
+        // guarded by this
+        private boolean claimed, discarded;
+
+        PendingGridWrite(int compression, PooledByteArrayOutputStream data, boolean renderState) {
+            this.compression = compression;
+            this.data = data;
+            this.renderState = renderState;
+            this.heldBytes = data.capacity();
+        }
+
+        int compression() {
+            return compression;
+        }
+
+        PooledByteArrayOutputStream data() {
+            return data;
+        }
+
+        boolean renderState() {
+            return renderState;
+        }
+
+        /**
+         * The memory held by this write until it is written, which is the capacity of the buffer and not only the
+         * size of the data.
+         */
+        int heldBytes() {
+            return heldBytes;
+        }
+
+        /**
+         * Claims the data to be written, the writer is responsible for releasing it afterwards.
+         * @return false if the write has already been discarded
+         */
+        synchronized boolean claim() {
+            if (discarded) return false;
+            claimed = true;
+            return true;
+        }
+
+        /**
+         * Discards the write and releases its data, unless it has been claimed by a writer.
+         */
+        synchronized void discard() {
+            if (discarded) return;
+            discarded = true;
+            if (!claimed) data.release();
+        }
+
+    }
+
 }
@@ -26,6 +26,7 @@
 
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.util.Key;
+import de.bluecolored.bluemap.core.util.stream.PooledByteArrayOutputStream;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
@@ -35,7 +36,10 @@ public interface CommandSet extends Closeable {
 
     void initializeTables() throws IOException;
 
-    void writeItem(String mapId, Key key, Compression compression, byte[] bytes) throws IOException;
+    /**
+     * Writes the item, the data-stream is released once it has been written
+     */
+    void writeItem(String mapId, Key key, Compression compression, PooledByteArrayOutputStream data) throws IOException;
 
     byte @Nullable [] readItem(String mapId, Key key, Compression compression) throws IOException;
 
@@ -43,9 +47,17 @@ public interface CommandSet extends Closeable {
 
     boolean hasItem(String mapId, Key key, Compression compression) throws IOException;
 
+    /**
+     * Lists the keys of up to count items of a map, ordered by their key and skipping the first start items
+     */
+    Key[] listItems(String mapId, int start, int count) throws IOException;
+
+    /**
+     * Writes the grid-item, the data-stream is released once it has been written
+     */
     void writeGridItem(
             String mapId, Key key, int x, int z, Compression compression,
-            byte[] bytes
+            PooledByteArrayOutputStream data
     ) throws IOException;
 
     byte @Nullable [] readGridItem(
@@ -60,9 +72,21 @@ boolean hasGridItem(
             String mapId, Key key, int x, int z, Compression compression
     ) throws IOException;
 
+    /**
+     * Lists up to count grid-item positions ordered by x and z, starting after the given position (exclusive) and
+     * ending with the given maximum x-coordinate (inclusive)
+     */
     TilePosition[] listGridItems(
             String mapId, Key key, Compression compression,
-            int start, int count
+            TilePosition after, int maxX, int count
+    ) throws IOException;
+
+    /**
+     * Returns the range of x-coordinates and the count of the grid-items of a grid-storage,
+     * or null if there are no items
+     */
+    @Nullable GridItemBounds gridItemBounds(
+            String mapId, Key key, Compression compression
     ) throws IOException;
 
     int countMapGridsItems(String mapId) throws IOException;
@@ -75,8 +99,15 @@ TilePosition[] listGridItems(
 
     String[] listMapIds(int start, int count) throws IOException;
 
+    /**
+     * Blocks until all pending (batched) writes have been written to the database
+     */
+    void flush() throws IOException;
+
     boolean isClosed();
 
     record TilePosition (int x, int z) {}
 
+    record GridItemBounds (int minX, int maxX, int count) {}
+
 }
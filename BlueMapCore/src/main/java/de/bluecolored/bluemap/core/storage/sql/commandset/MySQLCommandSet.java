@@ -190,6 +190,20 @@ SELECT COUNT(*) > 0
         """;
     }
 
+    @Override
+    @Language("mysql")
+    public String itemStorageListStatement() {
+        return """
+        SELECT s.`key`
+        FROM `bluemap_item_storage_data` d
+         INNER JOIN `bluemap_item_storage` s
+         ON d.`storage` = s.`id`
+        WHERE d.`map` = ?
+        ORDER BY s.`key`
+        LIMIT ? OFFSET ?
+        """;
+    }
+
 
     @Override
     @Language("mysql")
@@ -251,7 +265,22 @@ public String gridStorageListStatement() {
         WHERE `map` = ?
         AND `storage` = ?
         AND `compression` = ?
-        LIMIT ? OFFSET ?
+        AND (`x` > ? OR (`x` = ? AND `z` > ?))
+        AND `x` <= ?
+        ORDER BY `x`, `z`
+        LIMIT ?
+        """;
+    }
+
+    @Override
+    @Language("mysql")
+    public String gridStorageBoundsStatement() {
+        return """
+        SELECT MIN(`x`), MAX(`x`), COUNT(*)
+        FROM `bluemap_grid_storage_data`
+        WHERE `map` = ?
+        AND `storage` = ?
+        AND `compression` = ?
         """;
     }
 
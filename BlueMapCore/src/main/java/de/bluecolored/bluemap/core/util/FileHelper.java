@@ -46,6 +46,7 @@ public static OutputStream createFilepartOutputStream(final Path file) throws IO
         Path folder = file.toAbsolutePath().normalize().getParent();
         final Path partFile = folder.resolve(file.getFileName() + ".filepart");
         FileHelper.createDirectories(folder);
+        Files.deleteIfExists(partFile); // don't truncate, the part-file might be a hard-link
         OutputStream os = Files.newOutputStream(partFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
         return new OnCloseOutputStream(os, () -> {
             if (!Files.exists(partFile)) return;
@@ -54,6 +55,18 @@ public static OutputStream createFilepartOutputStream(final Path file) throws IO
         });
     }
 
+    /**
+     * Creates an OutputStream that writes a new file to the given path.<br>
+     * An existing file is deleted first instead of being truncated, so other hard-links to the existing file keep
+     * their content.
+     */
+    public static OutputStream createReplacingOutputStream(final Path file) throws IOException {
+        Path folder = file.toAbsolutePath().normalize().getParent();
+        FileHelper.createDirectories(folder);
+        Files.deleteIfExists(file);
+        return Files.newOutputStream(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+    }
+
     /**
      * Tries to move the file atomically, but fallbacks to a normal move operation if moving atomically fails
      */
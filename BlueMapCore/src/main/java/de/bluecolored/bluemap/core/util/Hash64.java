@@ -0,0 +1,150 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A fast, non-cryptographic, streaming 64-bit hash (based on the xxHash64 round and avalanche functions).<br>
+ * The resulting hash only depends on the values that have been put into the hasher, so it is stable across restarts and
+ * can be persisted.
+ */
+public class Hash64 {
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+    private long hash;
+
+    public Hash64() {
+        this(0);
+    }
+
+    public Hash64(long seed) {
+        this.hash = seed + PRIME_3;
+    }
+
+    public Hash64 put(long value) {
+        value *= PRIME_2;
+        value = Long.rotateLeft(value, 31);
+        value *= PRIME_1;
+        hash ^= value;
+        hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_3;
+        return this;
+    }
+
+    public Hash64 put(int value) {
+        return put((long) value);
+    }
+
+    public Hash64 put(float value) {
+        return put(Float.floatToIntBits(value));
+    }
+
+    public Hash64 put(boolean value) {
+        return put(value ? 1L : 0L);
+    }
+
+    public Hash64 put(long @Nullable [] values) {
+        if (values == null) return put(-1);
+        put(values.length);
+        for (long value : values) put(value);
+        return this;
+    }
+
+    public Hash64 put(int @Nullable [] values) {
+        if (values == null) return put(-1);
+        put(values.length);
+        for (int value : values) put(value);
+        return this;
+    }
+
+    public Hash64 put(byte @Nullable [] values) {
+        if (values == null) return put(-1);
+        return put(values, 0, values.length);
+    }
+
+    /**
+     * Puts the given range of the byte-array, this results in the same hash as putting an array with only those bytes.
+     */
+    public Hash64 put(byte[] values, int offset, int length) {
+        put(length);
+
+        int end = offset + length;
+        int i = offset;
+        for (; i + 8 <= end; i += 8) {
+            put(
+                    (values[i] & 0xFFL) |
+                    (values[i + 1] & 0xFFL) << 8 |
+                    (values[i + 2] & 0xFFL) << 16 |
+                    (values[i + 3] & 0xFFL) << 24 |
+                    (values[i + 4] & 0xFFL) << 32 |
+                    (values[i + 5] & 0xFFL) << 40 |
+                    (values[i + 6] & 0xFFL) << 48 |
+                    (values[i + 7] & 0xFFL) << 56
+            );
+        }
+
+        long rest = 0;
+        for (int shift = 0; i < end; i++, shift += 8)
+            rest |= (values[i] & 0xFFL) << shift;
+        return put(rest);
+    }
+
+    /**
+     * Puts the {@link Object#hashCode()} of the given object.<br>
+     * <b>Only use this for objects with a content-based hashCode that is stable across restarts (e.g. {@link String}s or {@link Key}s)!</b>
+     */
+    public Hash64 put(@Nullable Object value) {
+        return put(value == null ? 0 : value.hashCode());
+    }
+
+    public Hash64 put(Object @Nullable [] values) {
+        if (values == null) return put(-1);
+        put(values.length);
+        for (Object value : values) put(value);
+        return this;
+    }
+
+    public long get() {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        h ^= h >>> 29;
+        h *= PRIME_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Returns the hash folded into an int (xor of the upper and lower 32 bits)
+     */
+    public int getInt() {
+        long h = get();
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ByteArrayOutputStream} that takes its buffers from a shared pool and gives direct access to the written
+ * bytes without copying them.<br>
+ * The pool holds buffers in a few size-classes: the stream starts with the smallest one and moves to the next larger
+ * one when it runs out of space, so the memory held by a stream stays close to the size of its data.
+ * Data that outgrows the largest pooled buffer is moved to a new (un-pooled) array as usual.<br>
+ * Once the written data is no longer needed, {@link #release()} returns the buffer to the pool.
+ */
+public class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private static final int[] POOLED_BUFFER_SIZES = { 4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024 };
+    private static final int MAX_POOLED_BUFFERS = 32; // per size-class
+
+    private static final BufferPool[] BUFFER_POOLS = new BufferPool[POOLED_BUFFER_SIZES.length];
+    static {
+        for (int i = 0; i < BUFFER_POOLS.length; i++)
+            BUFFER_POOLS[i] = new BufferPool(POOLED_BUFFER_SIZES[i]);
+    }
+
+    public PooledByteArrayOutputStream() {
+        super(0);
+        this.buf = BUFFER_POOLS[0].claim();
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        ensureCapacity(count + 1);
+        super.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureCapacity(count + len);
+        super.write(b, off, len);
+    }
+
+    /**
+     * Returns the internal buffer, only the first {@link #size()} bytes are valid.<br>
+     * <b>The buffer must not be used anymore after this stream has been released!</b>
+     */
+    public synchronized byte[] getBuffer() {
+        return buf;
+    }
+
+    /**
+     * Returns the size of the internal buffer, which is the memory this stream is holding on to.
+     */
+    public synchronized int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * Returns an {@link InputStream} reading the written bytes directly from the internal buffer.<br>
+     * <b>The returned stream must not be used anymore after this stream has been released!</b>
+     */
+    public synchronized InputStream toInputStream() {
+        return new ByteArrayInputStream(buf, 0, count);
+    }
+
+    /**
+     * Returns the buffer of this stream back to the pool. This stream can not be used anymore afterwards.
+     */
+    public synchronized void release() {
+        byte[] buffer = this.buf;
+        this.buf = new byte[0];
+        this.count = 0;
+        recycleBuffer(buffer);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity - buf.length <= 0) return;
+
+        BufferPool pool = null;
+        for (BufferPool p : BUFFER_POOLS) {
+            if (p.bufferSize >= minCapacity) {
+                pool = p;
+                break;
+            }
+        }
+
+        // too large for a pooled buffer, ByteArrayOutputStream grows the buffer itself
+        if (pool == null) return;
+
+        byte[] buffer = pool.claim();
+        System.arraycopy(buf, 0, buffer, 0, count);
+        recycleBuffer(buf);
+        this.buf = buffer;
+    }
+
+    private static void recycleBuffer(byte[] buffer) {
+        for (BufferPool pool : BUFFER_POOLS) {
+            if (pool.bufferSize == buffer.length) {
+                pool.recycle(buffer);
+                return;
+            }
+        }
+    }
+
+    private static class BufferPool {
+
+        private final int bufferSize;
+        private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        BufferPool(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        byte[] claim() {
+            byte[] buffer = buffers.poll();
+            if (buffer == null) return new byte[bufferSize];
+            size.decrementAndGet();
+            return buffer;
+        }
+
+        void recycle(byte[] buffer) {
+            if (size.incrementAndGet() > MAX_POOLED_BUFFERS) {
+                size.decrementAndGet();
+                return;
+            }
+            buffers.offer(buffer);
+        }
+
+    }
+
+}
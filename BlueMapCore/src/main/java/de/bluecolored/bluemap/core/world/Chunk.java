@@ -83,4 +83,16 @@ default boolean hasOceanFloorHeights() {
 
     default void iterateBlockEntities(Consumer<BlockEntity> consumer) { }
 
+    /**
+     * Returns a 64-bit hash over all data of this chunk that is relevant for rendering
+     * (block-states, biomes, light-data, heightmaps and block-entities).<br>
+     * Unlike the chunks last-modified timestamp, this hash does not change if the chunk is saved without any
+     * relevant changes. It does <b>not</b> include the chunks inhabited-time.<br>
+     * The hash is only computed if {@link World#enableChunkContentHashing()} has been called before the chunk was
+     * loaded, otherwise this returns 0.
+     */
+    default long getContentHash() {
+        return 0;
+    }
+
 }
@@ -29,9 +29,11 @@
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.util.WatchService;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.function.Predicate;
 
@@ -76,6 +78,15 @@ public interface World {
      */
     Collection<Vector2i> listRegions();
 
+    /**
+     * Reads the {@link BasicFileAttributes} (size, last-modified time, ...) of the file that the specified region
+     * is stored in.<br>
+     * Returns null if the region does not exist or if this world does not store its regions in files.
+     */
+    default @Nullable BasicFileAttributes readRegionFileAttributes(int x, int z) throws IOException {
+        return null;
+    }
+
     /**
      * Creates and returns a new {@link WatchService} which watches for any changes in this worlds regions.
      * @throws IOException if an IOException occurred while creating the watch-service
@@ -97,6 +108,11 @@ default void preloadRegionChunks(int x, int z) {
      */
     void preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter);
 
+    /**
+     * Makes this world compute the {@link Chunk#getContentHash() content-hash} of every chunk it loads from now on
+     */
+    default void enableChunkContentHashing() {}
+
     /**
      * Invalidates the complete chunk cache (if there is a cache), so that every chunk has to be reloaded from disk
      */
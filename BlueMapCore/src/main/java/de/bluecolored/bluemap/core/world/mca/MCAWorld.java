@@ -45,11 +45,14 @@
 import de.bluecolored.bluenbt.BlueNBT;
 import lombok.Getter;
 import lombok.ToString;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -79,6 +82,7 @@ public class MCAWorld implements World {
     private final Path regionFolder;
 
     private final ChunkLoader chunkLoader = new ChunkLoader(this);
+    private volatile boolean chunkContentHashing = false;
     private final LoadingCache<Vector2i, Region> regionCache = Caffeine.newBuilder()
             .executor(BlueMap.THREAD_POOL)
             .softValues()
@@ -183,6 +187,17 @@ public Collection<Vector2i> listRegions() {
         }
     }
 
+    @Override
+    public @Nullable BasicFileAttributes readRegionFileAttributes(int x, int z) throws IOException {
+        for (RegionType regionType : RegionType.REGISTRY.values()) {
+            Path regionFile = regionFolder.resolve(regionType.getRegionFileName(x, z));
+            try {
+                return Files.readAttributes(regionFile, BasicFileAttributes.class);
+            } catch (NoSuchFileException ignore) {}
+        }
+        return null;
+    }
+
     @Override
     public WatchService<Vector2i> createRegionWatchService() throws IOException {
         return new MCAWorldRegionWatchService(this.regionFolder);
@@ -209,6 +224,11 @@ public void accept(int chunkX, int chunkZ, Chunk chunk) {
         }
     }
 
+    @Override
+    public void enableChunkContentHashing() {
+        chunkContentHashing = true;
+    }
+
     @Override
     public void invalidateChunkCache() {
         regionCache.invalidateAll();
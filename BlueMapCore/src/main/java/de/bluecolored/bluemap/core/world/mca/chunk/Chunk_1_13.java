@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
 import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.util.Hash64;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.DimensionType;
@@ -67,6 +68,8 @@ public class Chunk_1_13 extends MCAChunk {
     final int[] biomes;
     private final Map<Long, BlockEntity> blockEntities;
 
+    private final long contentHash;
+
     public Chunk_1_13(MCAWorld world, Data data) {
         super(world, data);
 
@@ -131,6 +134,9 @@ public Chunk_1_13(MCAWorld world, Data data) {
             long hash = (long) be.getY() << 8 | (be.getX() & 0xF) << 4 | be.getZ() & 0xF;
             blockEntities.put(hash, be);
         }
+
+        // the content-hash is only needed with content-change-detection
+        this.contentHash = world.isChunkContentHashing() ? contentHash(level) : 0;
     }
 
     @Override
@@ -225,6 +231,38 @@ public void iterateBlockEntities(Consumer<BlockEntity> consumer) {
         blockEntities.values().forEach(consumer);
     }
 
+    @Override
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    private static long contentHash(Level level) {
+        Hash64 hash = new Hash64()
+                .put(level.status)
+                .put(level.heightmaps.worldSurface)
+                .put(level.heightmaps.oceanFloor)
+                .put(level.biomes);
+
+        if (level.sections != null) {
+            for (SectionData section : level.sections) {
+                hash
+                        .put(section.y)
+                        .put(section.palette)
+                        .put(section.blockStates)
+                        .put(section.blockLight)
+                        .put(section.skyLight);
+            }
+        }
+
+        if (level.blockEntities != null) {
+            for (BlockEntity be : level.blockEntities) {
+                hash.put(be == null ? null : be.toString());
+            }
+        }
+
+        return hash.get();
+    }
+
     private @Nullable Section getSection(int y) {
         y -= sectionMin;
         if (y < 0 || y >= this.sections.length) return null;
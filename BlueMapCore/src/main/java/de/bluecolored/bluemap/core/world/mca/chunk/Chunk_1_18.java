@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
 import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.util.Hash64;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.DimensionType;
@@ -66,6 +67,8 @@ public class Chunk_1_18 extends MCAChunk {
 
     private final Map<Long, BlockEntity> blockEntities;
 
+    private final long contentHash;
+
     public Chunk_1_18(MCAWorld world, Data data) {
         super(world, data);
 
@@ -127,6 +130,9 @@ public Chunk_1_18(MCAWorld world, Data data) {
             long hash = (long) be.getY() << 8 | (be.getX() & 0xF) << 4 | be.getZ() & 0xF;
             blockEntities.put(hash, be);
         }
+
+        // the content-hash is only needed with content-change-detection
+        this.contentHash = world.isChunkContentHashing() ? contentHash(data) : 0;
     }
 
     @Override
@@ -211,6 +217,39 @@ public void iterateBlockEntities(Consumer<BlockEntity> consumer) {
         blockEntities.values().forEach(consumer);
     }
 
+    @Override
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    private static long contentHash(Data data) {
+        Hash64 hash = new Hash64()
+                .put(data.status)
+                .put(data.heightmaps.worldSurface)
+                .put(data.heightmaps.oceanFloor);
+
+        if (data.sections != null) {
+            for (SectionData section : data.sections) {
+                hash
+                        .put(section.y)
+                        .put(section.blockStates.palette)
+                        .put(section.blockStates.data)
+                        .put(section.biomes.palette)
+                        .put(section.biomes.data)
+                        .put(section.blockLight)
+                        .put(section.skyLight);
+            }
+        }
+
+        if (data.blockEntities != null) {
+            for (BlockEntity be : data.blockEntities) {
+                hash.put(be == null ? null : be.toString());
+            }
+        }
+
+        return hash.get();
+    }
+
     private @Nullable Section getSection(int y) {
         y -= sectionMin;
         if (y < 0 || y >= this.sections.length) return null;
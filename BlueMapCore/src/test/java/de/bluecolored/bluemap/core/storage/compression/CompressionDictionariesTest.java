@@ -0,0 +1,146 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.file.FileItemStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionDictionariesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testUncompressedWithoutDictionaries() throws IOException {
+        byte[] data = DictionaryTrainerTest.samples(1, 1).get(0);
+        byte[] compressed = compress(Compression.DEFLATE_DICTIONARY, data);
+        assertArrayEquals(data, decompress(Compression.DEFLATE_DICTIONARY, compressed));
+    }
+
+    @Test
+    public void testRoundTripAcrossRetraining() throws Exception {
+        BoundCompression bound = BoundCompression.bind(Compression.DEFLATE_DICTIONARY, assets());
+        Compression compression = bound.compression();
+        CompressionDictionaries dictionaries = bound.dictionaries();
+        assertNotNull(dictionaries);
+
+        // items written before a dictionary exists are plain zlib-data
+        byte[] plainData = DictionaryTrainerTest.samples(100, 1).get(0);
+        byte[] plain = compress(compression, plainData);
+
+        int firstId = train(compression, dictionaries, 1);
+        byte[] firstData = DictionaryTrainerTest.samples(101, 1).get(0);
+        byte[] first = compress(compression, firstData);
+        assertEquals(firstId, dictionaryId(first));
+
+        // retrain a new dictionary from different data
+        Files.delete(tempDir.resolve("compression-dictionaries/current"));
+        dictionaries.reset();
+        int secondId = train(compression, dictionaries, 2);
+        assertNotEquals(firstId, secondId);
+        byte[] secondData = DictionaryTrainerTest.samples(102, 1).get(0);
+        byte[] second = compress(compression, secondData);
+        assertEquals(secondId, dictionaryId(second));
+
+        // all items stay readable, also after reloading the dictionaries
+        Compression reloaded = BoundCompression.bind(Compression.DEFLATE_DICTIONARY, assets()).compression();
+        for (Compression c : List.of(compression, reloaded)) {
+            assertArrayEquals(plainData, decompress(c, plain));
+            assertArrayEquals(firstData, decompress(c, first));
+            assertArrayEquals(secondData, decompress(c, second));
+        }
+    }
+
+    @Test
+    public void testMissingDictionary() throws Exception {
+        BoundCompression bound = BoundCompression.bind(Compression.DEFLATE_DICTIONARY, assets());
+        train(bound.compression(), bound.dictionaries(), 1);
+        byte[] compressed = compress(bound.compression(), DictionaryTrainerTest.samples(101, 1).get(0));
+
+        Path folder = tempDir.resolve("compression-dictionaries");
+        try (var files = Files.list(folder)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+
+        Compression reloaded = BoundCompression.bind(Compression.DEFLATE_DICTIONARY, assets()).compression();
+        assertThrows(IOException.class, () -> decompress(reloaded, compressed));
+    }
+
+    private Function<String, ItemStorage> assets() {
+        return name -> new FileItemStorage(tempDir.resolve(name), Compression.NONE, false);
+    }
+
+    /**
+     * Writes samples until a dictionary has been trained and returns its id
+     */
+    private static int train(Compression compression, CompressionDictionaries dictionaries, long seed) throws Exception {
+        assertTrue(dictionaries.isSampling());
+        for (byte[] sample : DictionaryTrainerTest.samples(seed, 64))
+            compress(compression, sample);
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (dictionaries.getCurrent() == null) {
+            assertTrue(System.currentTimeMillis() < timeout, "Dictionary has not been trained in time");
+            Thread.sleep(10);
+        }
+
+        return dictionaries.getCurrent().id();
+    }
+
+    private static int dictionaryId(byte[] compressed) {
+        assertNotEquals(0, compressed[1] & 0x20, "No dictionary has been used");
+        return ByteBuffer.wrap(compressed, 2, 4).getInt();
+    }
+
+    private static byte[] compress(Compression compression, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compression.compress(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decompress(Compression compression, byte[] data) throws IOException {
+        try (InputStream in = compression.decompress(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DictionaryTrainerTest {
+
+    @Test
+    public void testDictionarySize() {
+        List<byte[]> samples = samples(1, 64);
+        for (int size : new int[] { 64, 1000, 32 * 1024 }) {
+            byte[] dictionary = DictionaryTrainer.train(samples, size);
+            assertTrue(dictionary.length > 0);
+            assertTrue(dictionary.length <= size);
+        }
+    }
+
+    @Test
+    public void testNoSamples() {
+        assertEquals(0, DictionaryTrainer.train(List.of(), 32 * 1024).length);
+        assertEquals(0, DictionaryTrainer.train(List.of(new byte[10], new byte[20]), 32 * 1024).length);
+    }
+
+    @Test
+    public void testNoCommonContent() {
+        Random random = new Random(0);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            byte[] sample = new byte[1000];
+            random.nextBytes(sample);
+            samples.add(sample);
+        }
+
+        // there is nothing worth putting into a dictionary
+        assertEquals(0, DictionaryTrainer.train(samples, 32 * 1024).length);
+    }
+
+    @Test
+    public void testPicksCommonContent() {
+        String common = "{\"type\":\"Feature\",\"properties\":{\"name\":\"shared-content-of-all-samples\"}}";
+        Random random = new Random(0);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            byte[] noise = new byte[300];
+            random.nextBytes(noise);
+            ByteArrayOutputStream sample = new ByteArrayOutputStream();
+            sample.writeBytes(noise);
+            sample.writeBytes(common.getBytes(StandardCharsets.UTF_8));
+            sample.writeBytes(noise);
+            samples.add(sample.toByteArray());
+        }
+
+        // only the common content is worth putting into the dictionary
+        String dictionary = new String(DictionaryTrainer.train(samples, 32 * 1024), StandardCharsets.ISO_8859_1);
+        assertTrue(dictionary.contains("\"properties\":{\"name\":\"shared-content"));
+        assertTrue(dictionary.length() <= 4 * 64);
+    }
+
+    @Test
+    public void testImprovesCompression() {
+        byte[] dictionary = DictionaryTrainer.train(samples(1, 64), 32 * 1024);
+        byte[] data = samples(2, 1).get(0);
+
+        assertTrue(deflate(data, dictionary) < deflate(data, null));
+    }
+
+    static List<byte[]> samples(long seed, int count) {
+        Random random = new Random(seed);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder("{\"tile\":{\"x\":" + random.nextInt(100) + ",\"z\":" + random.nextInt(100) + "},");
+            sb.append("\"attributes\":{\"position\":[");
+            for (int j = 0; j < 50; j++) {
+                if (j > 0) sb.append(',');
+                sb.append(random.nextInt(16)).append(".0");
+            }
+            sb.append("],\"color\":[");
+            for (int j = 0; j < 50; j++) {
+                if (j > 0) sb.append(',');
+                sb.append("0.").append(random.nextInt(10));
+            }
+            sb.append("]},\"materials\":[\"minecraft:block/stone\",\"minecraft:block/grass_block_top\"]}");
+            samples.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return samples;
+    }
+
+    private static int deflate(byte[] data, byte[] dictionary) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            if (dictionary != null) deflater.setDictionary(dictionary);
+            deflater.setInput(data);
+            deflater.finish();
+
+            byte[] buffer = new byte[data.length * 2 + 64];
+            int length = 0;
+            while (!deflater.finished())
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            return length;
+        } finally {
+            deflater.end();
+        }
+    }
+
+}
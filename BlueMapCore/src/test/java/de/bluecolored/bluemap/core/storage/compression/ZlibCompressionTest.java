@@ -0,0 +1,231 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZlibCompressionTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (Compression compression : new Compression[] { Compression.GZIP, Compression.DEFLATE }) {
+            for (int level : new int[] { -1, 1, 9 }) {
+                Compression leveled = compression.withLevel(level);
+                for (byte[] data : new byte[][] { new byte[0], new byte[1], text(100000), random(1, 100000) })
+                    assertArrayEquals(data, decompress(leveled, compress(leveled, data)));
+            }
+        }
+    }
+
+    @Test
+    public void testGzipReadableByJdk() throws IOException {
+        byte[] data = text(50000);
+        byte[] compressed = compress(Compression.GZIP, data);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testGzipReadsJdkOutput() throws IOException {
+        byte[] data = text(50000);
+        assertArrayEquals(data, decompress(Compression.GZIP, jdkGzip(data)));
+    }
+
+    @Test
+    public void testGzipHeaderFields() throws IOException {
+        byte[] data = text(1000);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        gzip.write(new byte[] {
+                0x1f, (byte) 0x8b, Deflater.DEFLATED,
+                0x02 | 0x04 | 0x08 | 0x10, // header-crc, extra, name and comment
+                0, 0, 0, 0, 0, 3
+        });
+        gzip.write(new byte[] { 5, 0, 'a', 'b', 'c', 'd', 'e' }); // extra
+        gzip.write("tile.json\0".getBytes(StandardCharsets.ISO_8859_1)); // name
+        gzip.write("a comment\0".getBytes(StandardCharsets.ISO_8859_1)); // comment
+        gzip.write(new byte[] { 0x12, 0x34 }); // header-crc
+        writeMember(gzip, data);
+
+        assertArrayEquals(data, decompress(Compression.GZIP, gzip.toByteArray()));
+    }
+
+    @Test
+    public void testGzipTrailerSplitAcrossBuffer() throws IOException {
+        // incompressible data of different lengths moves the trailer across the end of the input-buffer
+        for (int length = 4000; length < 4200; length++) {
+            byte[] data = random(length, length);
+            byte[] compressed = compress(Compression.GZIP, data);
+            assertArrayEquals(data, decompress(Compression.GZIP, compressed), "length: " + length);
+            assertArrayEquals(data, decompress(Compression.GZIP, new TrickleInputStream(compressed, length)), "length: " + length);
+        }
+    }
+
+    @Test
+    public void testGzipConcatenatedMembers() throws IOException {
+        byte[] a = text(5000), b = random(2, 3000), c = text(10);
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        gzip.write(compress(Compression.GZIP, a));
+        gzip.write(jdkGzip(b));
+        gzip.write(compress(Compression.GZIP, new byte[0]));
+        gzip.write(compress(Compression.GZIP, c));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(a);
+        expected.write(b);
+        expected.write(c);
+
+        assertArrayEquals(expected.toByteArray(), decompress(Compression.GZIP, gzip.toByteArray()));
+        assertArrayEquals(expected.toByteArray(), decompress(Compression.GZIP, new TrickleInputStream(gzip.toByteArray(), 0)));
+    }
+
+    @Test
+    public void testGzipTrailingGarbage() throws IOException {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        gzip.write(compress(Compression.GZIP, text(100)));
+        gzip.write(new byte[] { 1, 2, 3, 4 });
+
+        assertThrows(ZipException.class, () -> decompress(Compression.GZIP, gzip.toByteArray()));
+    }
+
+    @Test
+    public void testGzipCorruptTrailer() throws IOException {
+        byte[] compressed = compress(Compression.GZIP, text(100));
+        compressed[compressed.length - 5] ^= 1; // crc
+
+        assertThrows(ZipException.class, () -> decompress(Compression.GZIP, compressed));
+    }
+
+    @Test
+    public void testGzipTruncated() throws IOException {
+        byte[] compressed = compress(Compression.GZIP, text(100));
+        byte[] truncated = new byte[compressed.length - 3];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+        assertThrows(IOException.class, () -> decompress(Compression.GZIP, truncated));
+    }
+
+    private static void writeMember(OutputStream out, byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writeIntLE(out, (int) crc.getValue());
+        writeIntLE(out, data.length);
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        for (int i = 0; i < 4; i++)
+            out.write((value >> (i * 8)) & 0xFF);
+    }
+
+    private static byte[] jdkGzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] compress(Compression compression, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compression.compress(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decompress(Compression compression, byte[] data) throws IOException {
+        return decompress(compression, new ByteArrayInputStream(data));
+    }
+
+    private static byte[] decompress(Compression compression, InputStream data) throws IOException {
+        try (InputStream in = compression.decompress(data)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] text(int length) {
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(length);
+        while (sb.length() < length)
+            sb.append("{\"x\":").append(random.nextInt(100)).append(",\"z\":").append(random.nextInt(100)).append("},");
+        return sb.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] random(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Returns only a few bytes on each read, like a slow network-stream would
+     */
+    private static class TrickleInputStream extends FilterInputStream {
+
+        private final Random random;
+
+        TrickleInputStream(byte[] data, long seed) {
+            super(new ByteArrayInputStream(data));
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(7)));
+        }
+
+    }
+
+}
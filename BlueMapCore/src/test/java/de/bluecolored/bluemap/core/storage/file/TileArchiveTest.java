@@ -0,0 +1,279 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.file;
+
+import de.bluecolored.bluemap.core.util.Hash64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        byte[] a = data(1, 100), b = data(2, 5000), c = data(3, 0);
+
+        TileArchive archive = new TileArchive(file);
+        write(archive, 0, a);
+        write(archive, 17, b);
+        write(archive, TileArchive.ITEMS_PER_ARCHIVE - 1, c);
+
+        TileArchive loaded = new TileArchive(file);
+        assertArrayEquals(a, read(loaded, 0));
+        assertArrayEquals(b, read(loaded, 17));
+        assertArrayEquals(c, read(loaded, TileArchive.ITEMS_PER_ARCHIVE - 1));
+        assertNull(loaded.read(1));
+        assertFalse(loaded.has(1));
+
+        List<Integer> indices = new ArrayList<>();
+        loaded.forEach((x, z) -> indices.add(TileArchive.index(x, z)));
+        assertEquals(List.of(0, 17, TileArchive.ITEMS_PER_ARCHIVE - 1), indices);
+    }
+
+    @Test
+    public void testIndex() {
+        assertEquals(0, TileArchive.index(0, 0));
+        assertEquals(TileArchive.index(1, 2), TileArchive.index(1 + TileArchive.LENGTH, 2 - TileArchive.LENGTH));
+        assertEquals(TileArchive.ITEMS_PER_ARCHIVE - 1, TileArchive.index(-1, -1));
+    }
+
+    @Test
+    public void testOverwrite() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 5, data(1, 3000));
+        write(archive, 5, data(2, 200));
+        write(archive, 5, data(3, 10000));
+        write(archive, 6, data(4, 700));
+
+        TileArchive loaded = new TileArchive(file);
+        assertArrayEquals(data(3, 10000), read(loaded, 5));
+        assertArrayEquals(data(4, 700), read(loaded, 6));
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 1, data(1, 100));
+        write(archive, 2, data(2, 100));
+
+        assertFalse(archive.delete(1));
+        archive.flush();
+        assertFalse(new TileArchive(file).has(1));
+        assertTrue(new TileArchive(file).has(2));
+
+        // deleting the last item deletes the file
+        assertTrue(archive.delete(2));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testRecoverFromCorruptedHeader() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 1, data(1, 100)); // generation 1 -> header-slot 1
+        write(archive, 2, data(2, 100)); // generation 2 -> header-slot 0
+
+        // simulate an interrupted header-write of generation 2
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(data(3, 64)), 100);
+        }
+
+        TileArchive recovered = new TileArchive(file);
+        assertArrayEquals(data(1, 100), read(recovered, 1));
+        assertFalse(recovered.has(2));
+
+        // the recovered archive is fully usable again
+        write(recovered, 3, data(4, 2000));
+        TileArchive loaded = new TileArchive(file);
+        assertArrayEquals(data(1, 100), read(loaded, 1));
+        assertArrayEquals(data(4, 2000), read(loaded, 3));
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        Files.write(file, data(1, TileArchive.HEADER_SLOT_SECTORS * TileArchive.SECTOR_SIZE * 3));
+
+        TileArchive archive = new TileArchive(file);
+        assertFalse(archive.has(0));
+
+        write(archive, 0, data(2, 100));
+        assertArrayEquals(data(2, 100), read(new TileArchive(file), 0));
+    }
+
+    @Test
+    public void testFileDeletedExternally() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 1, data(1, 100));
+
+        Files.delete(file);
+        archive.invalidate();
+        write(archive, 2, data(2, 100));
+
+        TileArchive loaded = new TileArchive(file);
+        assertFalse(loaded.has(1));
+        assertArrayEquals(data(2, 100), read(loaded, 2));
+    }
+
+    @Test
+    public void testContentHash() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 3, data(1, 800));
+        long hash = contentHash(archive, 3);
+        assertEquals(new Hash64().put(data(1, 800)).get(), hash);
+
+        // the hash is stored in the header
+        assertEquals(hash, contentHash(new TileArchive(file), 3));
+
+        // overwriting with different data of the same length changes the hash, the same data does not
+        write(archive, 3, data(2, 800));
+        assertNotEquals(hash, contentHash(new TileArchive(file), 3));
+        write(archive, 3, data(1, 800));
+        assertEquals(hash, contentHash(new TileArchive(file), 3));
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 1, data(1, 100));
+
+        Files.delete(file);
+        archive.invalidate();
+        assertFalse(archive.has(1));
+    }
+
+    @Test
+    public void testReadWhileOverwriting() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 1, data(1, 5000));
+
+        try (InputStream in = archive.read(1)) {
+            assertNotNull(in);
+
+            // the sectors of the open item must not be reused while it is being read
+            write(archive, 1, data(2, 5000));
+            write(archive, 2, data(3, 5000));
+            write(archive, 3, data(4, 5000));
+
+            assertArrayEquals(data(1, 5000), in.readAllBytes());
+        }
+
+        assertArrayEquals(data(2, 5000), read(archive, 1));
+        assertArrayEquals(data(3, 5000), read(archive, 2));
+        assertArrayEquals(data(4, 5000), read(archive, 3));
+    }
+
+    @Test
+    public void testWritesAreOnlyPersistedOnFlush() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 1, data(1, 100));
+
+        archive.write(1, data(2, 3000), 3000);
+        archive.write(2, data(3, 100), 100);
+        assertTrue(archive.isDirty());
+
+        // the unflushed items are readable from the archive itself, but not yet referenced by the file
+        assertArrayEquals(data(2, 3000), read(archive, 1));
+        TileArchive loaded = new TileArchive(file);
+        assertArrayEquals(data(1, 100), read(loaded, 1));
+        assertFalse(loaded.has(2));
+
+        archive.flush();
+        assertFalse(archive.isDirty());
+        loaded = new TileArchive(file);
+        assertArrayEquals(data(2, 3000), read(loaded, 1));
+        assertArrayEquals(data(3, 100), read(loaded, 2));
+    }
+
+    @Test
+    public void testSectorsAreNotReusedBeforeFlush() throws IOException {
+        Path file = tempDir.resolve("test.pack");
+        TileArchive archive = new TileArchive(file);
+        write(archive, 1, data(1, 5000));
+
+        // overwriting must not touch the sectors that are still referenced by the header in the file
+        for (int i = 0; i < 10; i++)
+            archive.write(1, data(10 + i, 5000), 5000);
+        assertArrayEquals(data(1, 5000), read(new TileArchive(file), 1));
+
+        archive.flush();
+        assertArrayEquals(data(19, 5000), read(new TileArchive(file), 1));
+
+        // freed sectors are reused (and the file truncated) once the new header is on disk
+        write(archive, 1, data(20, 5000));
+        write(archive, 1, data(21, 5000));
+        assertTrue(Files.size(file) <= (long) TileArchive.HEADER_SLOT_SECTORS * 2 * TileArchive.SECTOR_SIZE + 3 * 5120);
+        assertArrayEquals(data(21, 5000), read(new TileArchive(file), 1));
+    }
+
+    private static void write(TileArchive archive, int index, byte[] data) throws IOException {
+        archive.write(index, data, data.length);
+        archive.flush();
+    }
+
+    private static byte[] read(TileArchive archive, int index) throws IOException {
+        try (InputStream in = archive.read(index)) {
+            assertNotNull(in);
+            return in.readAllBytes();
+        }
+    }
+
+    private static long contentHash(TileArchive archive, int index) throws IOException {
+        try (TileArchive.SliceInputStream in = archive.read(index)) {
+            assertNotNull(in);
+            return in.getContentHash();
+        }
+    }
+
+    private static byte[] data(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.storage.sql;
+
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet.GridItemBounds;
+import de.bluecolored.bluemap.core.storage.sql.commandset.CommandSet.TilePosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GridItemSpliteratorTest {
+
+    private static final Comparator<TilePosition> ORDER = Comparator
+            .comparingInt(TilePosition::x)
+            .thenComparingInt(TilePosition::z);
+
+    @Test
+    public void testTraverse() {
+        TreeSet<TilePosition> items = grid(-20, 20, -30, 30, 1);
+        List<TilePosition> traversed = new ArrayList<>();
+        spliterator(items).forEachRemaining(traversed::add);
+
+        assertEquals(new ArrayList<>(items), traversed);
+    }
+
+    @Test
+    public void testEmpty() {
+        TreeSet<TilePosition> items = new TreeSet<>(ORDER);
+        Spliterator<TilePosition> spliterator = new GridItemSpliterator(loader(items), new GridItemBounds(0, 10, 0));
+
+        assertFalse(spliterator.tryAdvance(position -> fail()));
+        assertEquals(0, spliterator.estimateSize());
+    }
+
+    @Test
+    public void testSplit() {
+        TreeSet<TilePosition> items = grid(-100, 100, -50, 50, 3);
+        Spliterator<TilePosition> spliterator = spliterator(items);
+
+        Spliterator<TilePosition> split = spliterator.trySplit();
+        assertNotNull(split);
+        assertEquals(items.size(), spliterator.estimateSize() + split.estimateSize());
+
+        List<TilePosition> first = new ArrayList<>(), second = new ArrayList<>();
+        spliterator.forEachRemaining(first::add);
+        split.forEachRemaining(second::add);
+
+        // the split covers the upper half of the x-range
+        assertFalse(first.isEmpty());
+        assertFalse(second.isEmpty());
+        assertTrue(ORDER.compare(first.get(first.size() - 1), second.get(0)) < 0);
+
+        List<TilePosition> traversed = new ArrayList<>(first);
+        traversed.addAll(second);
+        assertEquals(new ArrayList<>(items), traversed);
+    }
+
+    @Test
+    public void testSplitAfterPartialTraversal() {
+        TreeSet<TilePosition> items = grid(-100, 100, -50, 50, 1);
+        Spliterator<TilePosition> spliterator = spliterator(items);
+
+        // consume more than a page, so the split has to start after the loaded positions
+        List<TilePosition> traversed = new ArrayList<>();
+        for (int i = 0; i < 1500; i++)
+            assertTrue(spliterator.tryAdvance(traversed::add));
+
+        Spliterator<TilePosition> split = spliterator.trySplit();
+        assertNotNull(split);
+        spliterator.forEachRemaining(traversed::add);
+        split.forEachRemaining(traversed::add);
+
+        assertEquals(new ArrayList<>(items), traversed);
+    }
+
+    @Test
+    public void testParallel() {
+        TreeSet<TilePosition> items = grid(-500, 500, -20, 20, 7);
+        List<TilePosition> traversed = StreamSupport.stream(spliterator(items), true)
+                .collect(Collectors.toList());
+
+        assertEquals(items.size(), traversed.size());
+        assertEquals(items, new HashSet<>(traversed));
+    }
+
+    @Test
+    public void testRecursiveSplit() {
+        TreeSet<TilePosition> items = grid(-64, 64, -64, 64, 5);
+        List<Spliterator<TilePosition>> spliterators = new ArrayList<>();
+        splitRecursively(spliterator(items), spliterators);
+        assertTrue(spliterators.size() > 1);
+
+        List<TilePosition> traversed = new ArrayList<>();
+        for (Spliterator<TilePosition> spliterator : spliterators)
+            spliterator.forEachRemaining(traversed::add);
+
+        assertEquals(items.size(), traversed.size());
+        assertEquals(items, new HashSet<>(traversed));
+    }
+
+    @Test
+    public void testNarrowRange() {
+        // a range of less than three x-coordinates can not be split
+        TreeSet<TilePosition> items = grid(4, 5, -50, 50, 1);
+        Spliterator<TilePosition> spliterator = spliterator(items);
+        assertNull(spliterator.trySplit());
+
+        List<TilePosition> traversed = new ArrayList<>();
+        spliterator.forEachRemaining(traversed::add);
+        assertEquals(new ArrayList<>(items), traversed);
+    }
+
+    @Test
+    public void testExhausted() {
+        TreeSet<TilePosition> items = grid(-10, 10, -10, 10, 1);
+        Spliterator<TilePosition> spliterator = spliterator(items);
+        spliterator.forEachRemaining(position -> {});
+
+        assertNull(spliterator.trySplit());
+        assertFalse(spliterator.tryAdvance(position -> fail()));
+    }
+
+    @Test
+    public void testExtremeCoordinates() {
+        TreeSet<TilePosition> items = new TreeSet<>(ORDER);
+        items.add(new TilePosition(Integer.MIN_VALUE, 0));
+        items.add(new TilePosition(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        items.add(new TilePosition(-1, -1));
+        items.add(new TilePosition(0, 0));
+        items.add(new TilePosition(Integer.MAX_VALUE - 1, 5));
+        items.add(new TilePosition(Integer.MAX_VALUE, Integer.MAX_VALUE));
+
+        List<Spliterator<TilePosition>> spliterators = new ArrayList<>();
+        splitRecursively(spliterator(items), spliterators);
+
+        Set<TilePosition> traversed = new HashSet<>();
+        for (Spliterator<TilePosition> spliterator : spliterators)
+            spliterator.forEachRemaining(position -> assertTrue(traversed.add(position)));
+
+        assertEquals(items, traversed);
+    }
+
+    private static void splitRecursively(Spliterator<TilePosition> spliterator, List<Spliterator<TilePosition>> result) {
+        Spliterator<TilePosition> split;
+        while (result.size() < 256 && (split = spliterator.trySplit()) != null)
+            splitRecursively(split, result);
+        result.add(spliterator);
+    }
+
+    private static Spliterator<TilePosition> spliterator(TreeSet<TilePosition> items) {
+        GridItemBounds bounds = new GridItemBounds(items.first().x(), items.last().x(), items.size());
+        return new GridItemSpliterator(loader(items), bounds);
+    }
+
+    /**
+     * A page-loader working like the keyset-paginated sql-query
+     */
+    private static GridItemSpliterator.PageLoader loader(TreeSet<TilePosition> items) {
+        return (after, maxX, count) -> items.tailSet(after, false).stream()
+                .takeWhile(position -> position.x() <= maxX)
+                .limit(count)
+                .toArray(TilePosition[]::new);
+    }
+
+    private static TreeSet<TilePosition> grid(int minX, int maxX, int minZ, int maxZ, int step) {
+        TreeSet<TilePosition> items = new TreeSet<>(ORDER);
+        for (int x = minX; x <= maxX; x += step) {
+            for (int z = minZ; z <= maxZ; z += step) {
+                items.add(new TilePosition(x, z));
+            }
+        }
+        return items;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Hash64Test {
+
+    @Test
+    public void testStableValues() {
+        // hashes are persisted, so they must never change between versions
+        assertEquals(0xd8a310150df90781L, new Hash64().get());
+        assertEquals(0xf876551edb49e682L, new Hash64()
+                .put(42L)
+                .put("minecraft:stone")
+                .put(new byte[]{ 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 })
+                .get());
+    }
+
+    @Test
+    public void testDeterministic() {
+        long[] longs = { 1, -2, Long.MAX_VALUE };
+        assertEquals(
+                new Hash64().put(longs).put(3).put(true).put(1.5f).get(),
+                new Hash64().put(longs.clone()).put(3).put(true).put(1.5f).get()
+        );
+    }
+
+    @Test
+    public void testSeed() {
+        assertNotEquals(new Hash64(0).put(1).get(), new Hash64(1).put(1).get());
+        assertEquals(new Hash64().put(1).get(), new Hash64(0).put(1).get());
+    }
+
+    @Test
+    public void testOrder() {
+        assertNotEquals(new Hash64().put(1).put(2).get(), new Hash64().put(2).put(1).get());
+    }
+
+    @Test
+    public void testTypesAreEqualForEqualValues() {
+        assertEquals(new Hash64().put(5L).get(), new Hash64().put(5).get());
+        assertEquals(new Hash64().put(1L).get(), new Hash64().put(true).get());
+    }
+
+    @Test
+    public void testArrays() {
+        long empty = new Hash64().put(new int[0]).get();
+        long nullArray = new Hash64().put((int[]) null).get();
+        assertNotEquals(empty, nullArray);
+        assertNotEquals(empty, new Hash64().get());
+
+        // arrays are length-prefixed, so the boundaries between arrays change the hash
+        assertNotEquals(
+                new Hash64().put(new int[]{ 1, 2 }).put(new int[]{ 3 }).get(),
+                new Hash64().put(new int[]{ 1 }).put(new int[]{ 2, 3 }).get()
+        );
+    }
+
+    @Test
+    public void testByteArrays() {
+        byte[] data = new byte[21];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        long hash = new Hash64().put(data).get();
+
+        // every byte changes the hash, including the ones after the last full 8-byte block
+        for (int i = 0; i < data.length; i++) {
+            byte[] changed = data.clone();
+            changed[i]++;
+            assertNotEquals(hash, new Hash64().put(changed).get(), "byte " + i + " did not change the hash");
+        }
+
+        // trailing zero-bytes are not ignored
+        assertNotEquals(
+                new Hash64().put(new byte[]{ 1, 2, 3 }).get(),
+                new Hash64().put(new byte[]{ 1, 2, 3, 0 }).get()
+        );
+    }
+
+    @Test
+    public void testByteArrayRange() {
+        byte[] data = new byte[30];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 7);
+
+        assertEquals(new Hash64().put(data).get(), new Hash64().put(data, 0, data.length).get());
+        assertEquals(
+                new Hash64().put(Arrays.copyOfRange(data, 3, 22)).get(),
+                new Hash64().put(data, 3, 19).get()
+        );
+    }
+
+    @Test
+    public void testGetInt() {
+        Hash64 hash = new Hash64().put("test");
+        long h = hash.get();
+        assertEquals((int) (h ^ (h >>> 32)), hash.getInt());
+    }
+
+}
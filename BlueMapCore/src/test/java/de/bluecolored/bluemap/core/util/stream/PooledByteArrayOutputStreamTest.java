@@ -0,0 +1,77 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.util.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PooledByteArrayOutputStreamTest {
+
+    @Test
+    public void testSmallDataHoldsSmallBuffer() throws IOException {
+        PooledByteArrayOutputStream out = new PooledByteArrayOutputStream();
+        out.write(new byte[100]);
+        assertEquals(100, out.size());
+        assertTrue(out.capacity() <= 4 * 1024);
+        out.release();
+    }
+
+    @Test
+    public void testGrowingKeepsData() throws IOException {
+        byte[] data = new byte[1024 * 1024];
+        new Random(42).nextBytes(data);
+
+        PooledByteArrayOutputStream out = new PooledByteArrayOutputStream();
+        for (int i = 0; i < data.length; i += 1000) {
+            int len = Math.min(1000, data.length - i);
+            if (len % 2 == 0) out.write(data, i, len);
+            else for (int j = 0; j < len; j++) out.write(data[i + j]);
+        }
+
+        assertEquals(data.length, out.size());
+        assertTrue(out.capacity() >= data.length);
+        assertArrayEquals(data, out.toByteArray());
+        assertArrayEquals(data, Arrays.copyOf(out.getBuffer(), out.size()));
+        assertArrayEquals(data, out.toInputStream().readAllBytes());
+
+        out.release();
+        assertEquals(0, out.size());
+        assertEquals(0, out.capacity());
+    }
+
+    @Test
+    public void testCapacityFollowsSize() throws IOException {
+        PooledByteArrayOutputStream out = new PooledByteArrayOutputStream();
+        out.write(new byte[20 * 1024]);
+        assertEquals(64 * 1024, out.capacity());
+        out.release();
+    }
+
+}
@@ -38,14 +38,17 @@
 import de.bluecolored.bluemap.common.rendermanager.MapUpdateTask;
 import de.bluecolored.bluemap.common.rendermanager.RenderManager;
 import de.bluecolored.bluemap.common.rendermanager.RenderTask;
+import de.bluecolored.bluemap.common.rendermanager.StorageMigrationTask;
 import de.bluecolored.bluemap.common.rendermanager.TileUpdateStrategy;
 import de.bluecolored.bluemap.common.web.*;
 import de.bluecolored.bluemap.common.web.http.HttpRequestHandler;
 import de.bluecolored.bluemap.common.web.http.HttpServer;
 import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.logger.AsyncLogger;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
 import de.bluecolored.bluemap.core.storage.MapStorage;
+import de.bluecolored.bluemap.core.storage.Storage;
 import de.bluecolored.bluemap.core.util.FileHelper;
 import org.apache.commons.cli.*;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -64,7 +67,7 @@
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class BlueMapCLI {
 
@@ -114,18 +117,16 @@ public void renderMaps(BlueMapService blueMap, boolean watch, TileUpdateStrategy
         }
 
         //update all maps
-        int totalRegions = 0;
         for (BmMap map : maps.values()) {
             MapUpdateTask updateTask = new MapUpdateTask(map, force);
             renderManager.scheduleRenderTask(updateTask);
-            totalRegions += updateTask.getRegions().size();
         }
 
         // enable api
         BlueMapAPIImpl api = new BlueMapAPIImpl(blueMap, null);
         api.register();
 
-        Logger.global.logInfo("Start updating " + maps.size() + " maps (" + totalRegions + " regions, ~" + totalRegions * 1024L + " chunks)...");
+        Logger.global.logInfo("Start updating " + maps.size() + " maps...");
 
         // start rendering
         renderManager.start(blueMap.getConfig().getCoreConfig().resolveRenderThreadCount());
@@ -221,7 +222,96 @@ public void run() {
         }
     }
 
-    public void startWebserver(BlueMapService blueMap, boolean verbose) throws IOException, ConfigurationException, InterruptedException {
+    public void migrateMaps(BlueMapService blueMap, String sourceStorageId, String targetStorageId,
+                            @Nullable String mapsToMigrate) throws ConfigurationException, IOException, InterruptedException {
+
+        Storage source = blueMap.getOrLoadStorage(sourceStorageId);
+        Storage target = blueMap.getOrLoadStorage(targetStorageId);
+        if (source == target) throw new ConfigurationException("The source- and target-storage of a migration can not be the same!");
+
+        Predicate<String> mapFilter = mapId -> true;
+        if (mapsToMigrate != null) {
+            Set<String> mapsToMigrateSet = Set.of(mapsToMigrate.split(","));
+            mapFilter = mapsToMigrateSet::contains;
+        }
+
+        List<String> mapIds;
+        try (Stream<String> mapIdStream = source.mapIds()) {
+            mapIds = mapIdStream.filter(mapFilter).toList();
+        }
+
+        Path checkpointFolder = blueMap.getConfig().getCoreConfig().getData().resolve("migration");
+        RenderManager renderManager = new RenderManager();
+        List<StorageMigrationTask> tasks = new ArrayList<>();
+        for (String mapId : mapIds) {
+            StorageMigrationTask task = new StorageMigrationTask(
+                    source.map(mapId),
+                    target.map(mapId),
+                    mapId,
+                    checkpointFolder.resolve(sourceStorageId + "-" + targetStorageId + "-" + mapId + ".properties")
+            );
+            tasks.add(task);
+            renderManager.scheduleRenderTask(task);
+        }
+
+        Logger.global.logInfo("Start migrating " + mapIds.size() + " maps from storage '" + sourceStorageId +
+                "' to storage '" + targetStorageId + "'...");
+
+        renderManager.start(blueMap.getConfig().getCoreConfig().resolveRenderThreadCount());
+
+        Timer timer = new Timer("BlueMap-CLI-Timer", true);
+        TimerTask updateInfoTask = new TimerTask() {
+            @Override
+            public void run() {
+                RenderTask task = renderManager.getCurrentRenderTask();
+                if (task == null) return;
+
+                double progress = task.estimateProgress();
+                Logger.global.logInfo(task.getDescription() + ": " + (Math.round(progress * 100000) / 1000.0) + "%" +
+                        task.getDetail().map(detail -> " (" + detail + ")").orElse(""));
+            }
+        };
+        timer.scheduleAtFixedRate(updateInfoTask, TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(10));
+
+        Thread shutdownHook = new Thread(() -> {
+            shutdownInProgress = true;
+            Logger.global.logInfo("Stopping... (the migration will continue from the last checkpoint on the next start)");
+            updateInfoTask.cancel();
+            renderManager.removeAllRenderTasks();
+            renderManager.stop();
+            try {
+                renderManager.awaitShutdown();
+            } catch (InterruptedException e) {
+                Logger.global.logError("Unexpected interruption: ", e);
+            }
+
+            // make sure everything that has been copied so far is persisted
+            try {
+                target.close();
+            } catch (IOException e) {
+                Logger.global.logError("Failed to close the target-storage: ", e);
+            }
+        }, "BlueMap-CLI-ShutdownHook");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        renderManager.awaitIdle();
+        if (shutdownInProgress) return;
+
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        updateInfoTask.cancel();
+        renderManager.stop();
+        renderManager.awaitShutdown();
+
+        for (StorageMigrationTask task : tasks)
+            Logger.global.logInfo(task.getDescription() + ": " + task.getThroughput());
+
+        Logger.global.logInfo("Migration complete!");
+    }
+
+    /**
+     * @param rendering whether the maps are also rendered by this process, otherwise the tile-index can not be used
+     */
+    public void startWebserver(BlueMapService blueMap, boolean verbose, boolean rendering) throws IOException, ConfigurationException, InterruptedException {
         Logger.global.logInfo("Starting webserver ...");
 
         WebserverConfig config = blueMap.getConfig().getWebserverConfig();
@@ -230,17 +320,24 @@ public void startWebserver(BlueMapService blueMap, boolean verbose) throws IOExc
         RoutingRequestHandler routingRequestHandler = new RoutingRequestHandler();
 
         // default route
-        routingRequestHandler.register(".*", new FileRequestHandler(config.getWebroot()));
+        routingRequestHandler.registerPrefix("", new FileRequestHandler(config.getWebroot()));
+
+        // tile-cache
+        TileResponseCache tileCache = config.getTileCacheSize() > 0 ?
+                new TileResponseCache(config.getTileCacheSize() * 1024L * 1024L) : null;
+
+        // tile-index
+        TileExistenceIndex tileIndex = rendering && config.isTileExistenceIndex() ?
+                new TileExistenceIndex() : null;
 
         // map route
         for (var mapConfigEntry : blueMap.getConfig().getMapConfigs().entrySet()) {
             MapStorage storage = blueMap.getOrLoadStorage(mapConfigEntry.getValue().getStorage())
                     .map(mapConfigEntry.getKey());
 
-            routingRequestHandler.register(
-                    "maps/" + Pattern.quote(mapConfigEntry.getKey()) + "/(.*)",
-                    "$1",
-                    new MapRequestHandler(storage)
+            routingRequestHandler.registerPrefix(
+                    "maps/" + mapConfigEntry.getKey() + "/",
+                    new MapRequestHandler(storage, tileCache, tileIndex)
             );
         }
 
@@ -258,12 +355,12 @@ public void startWebserver(BlueMapService blueMap, boolean verbose) throws IOExc
         handler = new LoggingRequestHandler(
                 handler,
                 config.getLog().getFormat(),
-                Logger.combine(webLoggerList)
+                new AsyncLogger(Logger.combine(webLoggerList))
         );
 
         try {
             //noinspection resource
-            HttpServer webServer = new HttpServer(handler);
+            HttpServer webServer = new HttpServer(handler, config.getWorkerThreads(), config.getIoThreads());
             webServer.bind(new InetSocketAddress(
                     config.resolveIp(),
                     config.getPort()
@@ -364,10 +461,18 @@ public static void main(String[] args) {
             if (cmd.hasOption("w")) {
                 noActions = false;
 
-                cli.startWebserver(blueMap, cmd.hasOption("b"));
+                cli.startWebserver(blueMap, cmd.hasOption("b"), cmd.hasOption("r"));
                 Thread.sleep(1000); //wait a second to let the webserver start, looks nicer in the log if anything comes after that
             }
 
+            if (cmd.hasOption("migrate")) {
+                noActions = false;
+
+                String[] storageIds = cmd.getOptionValues("migrate");
+                String mapsToMigrate = cmd.getOptionValue("m", null);
+                cli.migrateMaps(blueMap, storageIds[0], storageIds[1], mapsToMigrate);
+            }
+
             if (cmd.hasOption("r")) {
                 noActions = false;
 
@@ -485,6 +590,15 @@ private static Options createOptions() {
         options.addOption("f", "force-render", false, "Forces rendering everything, instead of only rendering chunks that have been modified since the last render");
         options.addOption("m", "maps", true, "A comma-separated list of map-id's that should be rendered. Example: 'world,nether'");
 
+        options.addOption(
+                Option.builder()
+                .longOpt("migrate")
+                .numberOfArgs(2)
+                .argName("source-storage> <target-storage")
+                .desc("Copies all maps (or only the maps given with -m) from one storage to another. An interrupted migration continues where it stopped.")
+                .build()
+        );
+
         options.addOption("u", "watch", false, "Watches for file-changes after rendering and updates the map");
 
         options.addOption("V", "version", false, "Print the current BlueMap version");
@@ -508,6 +622,8 @@ private static void printHelp() {
         footer.append("Start only the webserver without doing anything else\n\n");
         footer.append(command).append(" -ru\n");
         footer.append("Render the configured maps and then keeps watching the world-files and updates the map once something changed.\n\n");
+        footer.append(command).append(" --migrate file sql\n");
+        footer.append("Copy all maps from the storage 'file' to the storage 'sql'\n\n");
 
         formatter.printHelp(command + " [options]", "\nOptions:", createOptions(), "\n" + footer);
     }